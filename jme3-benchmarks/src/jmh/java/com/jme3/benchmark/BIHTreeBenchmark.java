@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.CollisionResults;
+import com.jme3.collision.bih.BIHTree;
+import com.jme3.math.matrix.Matrix4f;
+import com.jme3.math.shape.Ray;
+import com.jme3.math.vector.Vector3f;
+import com.jme3.scene.shape.Sphere;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures ray picking against a {@link BIHTree}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BIHTreeBenchmark {
+
+    private static final int RAY_COUNT = 64;
+
+    /**
+     * Number of samples used for both the z and radial axis of the sphere.
+     */
+    @Param({"32", "128"})
+    public int samples;
+
+    private Sphere mesh;
+    private BIHTree tree;
+    private BoundingVolume worldBound;
+    private Ray[] rays;
+    private final CollisionResults results = new CollisionResults();
+
+    @Setup
+    public void setUp() {
+        mesh = new Sphere(samples, samples, 1f);
+        mesh.updateBound();
+        worldBound = mesh.getBound();
+        tree = new BIHTree(mesh);
+        tree.construct();
+
+        Random random = new Random(42);
+        rays = new Ray[RAY_COUNT];
+        for (int i = 0; i < rays.length; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat() - 0.5f,
+                                           random.nextFloat() - 0.5f,
+                                           5f);
+            rays[i] = new Ray(origin, new Vector3f(0, 0, -1));
+        }
+    }
+
+    @Benchmark
+    public int collideWithRay() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            results.clear();
+            hits += tree.collideWith(ray, Matrix4f.IDENTITY, worldBound, results);
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public BIHTree construct() {
+        BIHTree t = new BIHTree(mesh);
+        t.construct();
+        return t;
+    }
+}
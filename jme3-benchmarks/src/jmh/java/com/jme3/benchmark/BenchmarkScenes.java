@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.vector.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.NullRenderer;
+import java.util.List;
+
+/**
+ * Shared fixtures for the benchmarks.
+ * <p>
+ * All benchmarks run headless, the {@link RenderManager} created here
+ * is backed by a {@link NullRenderer} so no GL context is needed.
+ */
+public final class BenchmarkScenes {
+
+    private BenchmarkScenes() {
+    }
+
+    /**
+     * Creates an asset manager that can load the materials and shaders
+     * found on the classpath.
+     */
+    public static AssetManager createAssetManager() {
+        return new DesktopAssetManager(DesktopAssetManager.class.getResource("/com/jme3/asset/General.cfg"));
+    }
+
+    /**
+     * Creates a render manager backed by a {@link NullRenderer}.
+     */
+    public static RenderManager createRenderManager() {
+        NullRenderer renderer = new NullRenderer();
+        renderer.initialize();
+        return new RenderManager(renderer);
+    }
+
+    /**
+     * Creates a viewport with a 1280x720 camera looking down the negative
+     * Z axis.
+     */
+    public static ViewPort createViewPort(RenderManager rm) {
+        Camera cam = new Camera(1280, 720);
+        cam.setFrustumPerspective(45f, 1280f / 720f, 1f, 1000f);
+        cam.setLocation(new Vector3f(0, 0, 10));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        cam.update();
+        return rm.createMainView("Benchmark", cam);
+    }
+
+    /**
+     * Builds a scene graph of the given depth where each node has
+     * <code>branching</code> children. The leaves are box geometries
+     * sharing one mesh.
+     *
+     * @param depth number of node levels
+     * @param branching number of children per node
+     * @param material material used for the leaves, may be null
+     * @param leaves if not null, the created geometries are added to it
+     */
+    public static Node createSceneGraph(int depth, int branching, Material material, List<Geometry> leaves) {
+        Mesh mesh = new Box(0.5f, 0.5f, 0.5f);
+        Node root = new Node("Root");
+        populate(root, depth, branching, mesh, material, leaves);
+        return root;
+    }
+
+    private static void populate(Node parent, int depth, int branching, Mesh mesh,
+                                 Material material, List<Geometry> leaves) {
+        for (int i = 0; i < branching; i++) {
+            if (depth > 1) {
+                Node child = new Node(parent.getName() + "-" + i);
+                child.setLocalTranslation(i * 2f, 0, 0);
+                parent.attachChild(child);
+                populate(child, depth - 1, branching, mesh, material, leaves);
+            } else {
+                Geometry geom = new Geometry(parent.getName() + "-" + i, mesh);
+                geom.setLocalTranslation(0, i * 2f, -i);
+                if (material != null) {
+                    geom.setMaterial(material);
+                }
+                parent.attachChild(geom);
+                if (leaves != null) {
+                    leaves.add(geom);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.math.utility.FastMath;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.GeometryComparator;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.TransparentComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures sorting a large transparent bucket with the comparator, with the
+ * camera distances cached by {@link TransparentComparator} versus recomputed
+ * on every comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DistanceCacheBenchmark {
+
+    @Param({"5000", "20000"})
+    public int geometries;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private Geometry[] shuffled;
+    private GeometryList list;
+    private Camera cam;
+
+    @Setup
+    public void setUp() {
+        RenderManager rm = BenchmarkScenes.createRenderManager();
+        ViewPort vp = BenchmarkScenes.createViewPort(rm);
+        cam = vp.getCamera();
+
+        int branching = (int) FastMath.ceil(FastMath.sqrt(geometries));
+        List<Geometry> leaves = new ArrayList<Geometry>();
+        Node root = BenchmarkScenes.createSceneGraph(2, branching, null, leaves);
+        root.updateGeometricState();
+
+        Collections.shuffle(leaves, new Random(42));
+        shuffled = leaves.subList(0, geometries).toArray(new Geometry[geometries]);
+
+        GeometryComparator comp = cached
+                ? new TransparentComparator()
+                : new UncachedTransparentComparator();
+        list = new GeometryList(comp);
+        // measure the comparator itself, not the key sort
+        list.setKeySortEnabled(false);
+        list.setCamera(cam);
+    }
+
+    @Benchmark
+    public GeometryList fillAndSort() {
+        list.clear();
+        for (Geometry geom : shuffled) {
+            list.add(geom);
+        }
+        list.setCamera(cam);
+        list.sort();
+        return list;
+    }
+
+    /**
+     * The back-to-front ordering of {@link TransparentComparator}, computing
+     * the distance to the camera on every comparison.
+     */
+    private static class UncachedTransparentComparator implements GeometryComparator {
+
+        private Camera cam;
+
+        public void setCamera(Camera cam) {
+            this.cam = cam;
+        }
+
+        public int compare(Geometry o1, Geometry o2) {
+            float d1 = o1.getWorldBound().distanceToEdge(cam.getLocation());
+            float d2 = o2.getWorldBound().distanceToEdge(cam.getLocation());
+            if (d1 == d2) {
+                return 0;
+            } else if (d1 < d2) {
+                return 1;
+            } else {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.material.TechniqueDef;
+import com.jme3.math.utility.FastMath;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.GeometryComparator;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.TransparentComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures filling and sorting a {@link GeometryList} the way
+ * the {@link com.jme3.renderer.queue.RenderQueue} does every frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeometryListSortBenchmark {
+
+    private static final String[] MATERIAL_DEFS = {
+        "Common/MatDefs/Misc/Unshaded.j3md",
+        "Common/MatDefs/Light/Lighting.j3md",
+        "Common/MatDefs/Misc/ShowNormals.j3md"
+    };
+
+    @Param({"1000", "20000"})
+    public int geometries;
+
+    @Param({"opaque", "transparent"})
+    public String comparator;
+
+    /**
+     * Whether the list sorts by {@link com.jme3.renderer.queue.SortKeyComparator}
+     * keys or with the comparator itself.
+     */
+    @Param({"true", "false"})
+    public boolean keySort;
+
+    private Geometry[] shuffled;
+    private GeometryList list;
+    private Camera cam;
+
+    @Setup
+    public void setUp() {
+        AssetManager assetManager = BenchmarkScenes.createAssetManager();
+        RenderManager rm = BenchmarkScenes.createRenderManager();
+        ViewPort vp = BenchmarkScenes.createViewPort(rm);
+        cam = vp.getCamera();
+
+        List<Material> materials = new ArrayList<Material>();
+        for (String defName : MATERIAL_DEFS) {
+            for (int i = 0; i < 4; i++) {
+                Material mat = new Material(assetManager, defName);
+                if (mat.getMaterialDef().getMaterialParam("VertexColor") != null) {
+                    mat.setBoolean("VertexColor", (i & 1) != 0);
+                }
+                mat.selectTechnique(TechniqueDef.DEFAULT_TECHNIQUE_NAME, rm);
+                materials.add(mat);
+            }
+        }
+
+        int branching = (int) FastMath.ceil(FastMath.sqrt(geometries));
+        List<Geometry> leaves = new ArrayList<Geometry>();
+        Node root = BenchmarkScenes.createSceneGraph(2, branching, null, leaves);
+        Random random = new Random(42);
+        for (Geometry geom : leaves) {
+            geom.setMaterial(materials.get(random.nextInt(materials.size())));
+        }
+        root.updateGeometricState();
+
+        Collections.shuffle(leaves, random);
+        shuffled = leaves.subList(0, geometries).toArray(new Geometry[geometries]);
+
+        GeometryComparator comp = "opaque".equals(comparator)
+                ? new OpaqueComparator()
+                : new TransparentComparator();
+        list = new GeometryList(comp);
+        list.setCamera(cam);
+        list.setKeySortEnabled(keySort);
+    }
+
+    @Benchmark
+    public GeometryList fillAndSort() {
+        list.clear();
+        for (Geometry geom : shuffled) {
+            list.add(geom);
+        }
+        // like the render queue, set the camera every frame, which also
+        // invalidates the cached distances
+        list.setCamera(cam);
+        list.sort();
+        return list;
+    }
+}
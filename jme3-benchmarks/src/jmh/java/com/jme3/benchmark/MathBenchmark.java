@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.math.matrix.Matrix4f;
+import com.jme3.math.vector.Quaternion;
+import com.jme3.math.vector.Vector3f;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Micro benchmarks for the math classes used on every frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MathBenchmark {
+
+    private final Matrix4f m1 = new Matrix4f();
+    private final Matrix4f m2 = new Matrix4f();
+    private final Matrix4f mStore = new Matrix4f();
+
+    private final Quaternion q1 = new Quaternion();
+    private final Quaternion q2 = new Quaternion();
+    private final Quaternion qStore = new Quaternion();
+
+    private final Vector3f v1 = new Vector3f(1, 2, 3);
+    private final Vector3f v2 = new Vector3f(-3, 0.5f, 2);
+    private final Vector3f vStore = new Vector3f();
+
+    private float t = 0.25f;
+
+    @Setup
+    public void setUp() {
+        m1.setTranslation(1, 2, 3);
+        m1.setRotationQuaternion(new Quaternion().fromAngles(0.3f, 0.2f, 0.1f));
+        m2.setTranslation(-4, 0, 1);
+        m2.setRotationQuaternion(new Quaternion().fromAngles(-0.5f, 1.2f, 0f));
+        q1.fromAngles(0.1f, 0.7f, -0.3f);
+        q2.fromAngles(1.1f, -0.4f, 0.9f);
+    }
+
+    @Benchmark
+    public Matrix4f matrix4fMult() {
+        return m1.mult(m2, mStore);
+    }
+
+    @Benchmark
+    public Vector3f matrix4fMultVector() {
+        return m1.mult(v1, vStore);
+    }
+
+    @Benchmark
+    public Quaternion quaternionSlerp() {
+        t = t > 0.9f ? 0.1f : t + 0.01f;
+        return qStore.slerp(q1, q2, t);
+    }
+
+    @Benchmark
+    public Vector3f quaternionMultVector() {
+        return q1.mult(v1, vStore);
+    }
+
+    @Benchmark
+    public Vector3f vector3fCrossNormalize() {
+        return vStore.set(v1).crossLocal(v2).normalizeLocal();
+    }
+
+    @Benchmark
+    public float vector3fDistance() {
+        return v1.distance(v2);
+    }
+}
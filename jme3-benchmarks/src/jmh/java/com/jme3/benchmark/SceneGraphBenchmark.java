@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.math.vector.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures {@link Node#updateGeometricState()} on a scene where a
+ * fraction of the leaves move every frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SceneGraphBenchmark {
+
+    @Param({"4"})
+    public int depth;
+
+    @Param({"10"})
+    public int branching;
+
+    /**
+     * Every n-th leaf is moved before each update.
+     */
+    @Param({"1", "10", "100"})
+    public int moveEvery;
+
+    /**
+     * Number of threads used for the update, 0 updates on the
+     * benchmark thread.
+     */
+    @Param({"0", "4"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private Node root;
+    private Geometry[] moving;
+    private final Vector3f offset = new Vector3f();
+    private float time;
+
+    @Setup
+    public void setUp() {
+        List<Geometry> leaves = new ArrayList<Geometry>();
+        root = BenchmarkScenes.createSceneGraph(depth, branching, null, leaves);
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+            root.setParallelUpdatePool(pool);
+        }
+        root.updateGeometricState();
+
+        List<Geometry> selected = new ArrayList<Geometry>();
+        for (int i = 0; i < leaves.size(); i += moveEvery) {
+            selected.add(leaves.get(i));
+        }
+        moving = selected.toArray(new Geometry[selected.size()]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Node updateGeometricState() {
+        time += 0.016f;
+        offset.set(time % 1f, 0, 0);
+        for (Geometry geom : moving) {
+            geom.setLocalTranslation(offset);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    @Benchmark
+    public Node rotateRoot() {
+        root.rotate(0, 0.01f, 0);
+        root.updateGeometricState();
+        return root;
+    }
+}
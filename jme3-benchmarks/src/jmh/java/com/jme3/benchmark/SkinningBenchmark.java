@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.animation.Bone;
+import com.jme3.animation.Skeleton;
+import com.jme3.animation.SkeletonControl;
+import com.jme3.math.vector.Quaternion;
+import com.jme3.math.vector.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.shape.Sphere;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures software skinning done by {@link SkeletonControl} on a
+ * sphere bound to a two bone skeleton.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SkinningBenchmark {
+
+    @Param({"32", "96"})
+    public int samples;
+
+    private RenderManager rm;
+    private ViewPort vp;
+    private Node model;
+    private SkeletonControl skeletonControl;
+    private Bone tip;
+    private final Quaternion rotation = new Quaternion();
+    private float angle;
+
+    @Setup
+    public void setUp() {
+        rm = BenchmarkScenes.createRenderManager();
+        vp = BenchmarkScenes.createViewPort(rm);
+
+        Sphere mesh = new Sphere(samples, samples, 1f);
+        int vertexCount = mesh.getVertexCount();
+        byte[] indices = new byte[vertexCount * 4];
+        float[] weights = new float[vertexCount * 4];
+        for (int i = 0; i < vertexCount; i++) {
+            float w = (float) i / vertexCount;
+            indices[i * 4] = 0;
+            indices[i * 4 + 1] = 1;
+            weights[i * 4] = 1f - w;
+            weights[i * 4 + 1] = w;
+        }
+        mesh.setBuffer(Type.BoneIndex, 4, indices);
+        mesh.setBuffer(Type.BoneWeight, 4, weights);
+        mesh.setMaxNumWeights(2);
+        mesh.generateBindPose(true);
+
+        Bone root = new Bone("Root");
+        tip = new Bone("Tip");
+        root.addChild(tip);
+        tip.setBindTransforms(new Vector3f(0, 1, 0), new Quaternion(), Vector3f.UNIT_XYZ);
+        Skeleton skeleton = new Skeleton(new Bone[]{root, tip});
+        skeleton.setBindingPose();
+        tip.setUserControl(true);
+
+        model = new Node("Model");
+        model.attachChild(new Geometry("Skinned", mesh));
+        skeletonControl = new SkeletonControl(skeleton);
+        skeletonControl.setHardwareSkinningPreferred(false);
+        model.addControl(skeletonControl);
+        model.updateGeometricState();
+    }
+
+    @Benchmark
+    public Node softwareSkinning() {
+        angle += 0.01f;
+        rotation.fromAngles(angle, 0, 0);
+        tip.setUserTransforms(Vector3f.ZERO, rotation, Vector3f.UNIT_XYZ);
+        skeletonControl.getSkeleton().updateWorldVectors();
+
+        skeletonControl.update(0.016f);
+        skeletonControl.render(rm, vp);
+        return model;
+    }
+}
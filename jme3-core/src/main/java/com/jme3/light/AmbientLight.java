@@ -75,8 +75,13 @@ public class AmbientLight extends Light {
     
     @Override
     public void computeLastDistance(Spatial owner) {
+        lastDistance = computeDistance(owner);
+    }
+
+    @Override
+    protected float computeDistance(Spatial owner) {
         // ambient lights must always be before directional lights.
-        lastDistance = -2;
+        return -2;
     }
 
     @Override
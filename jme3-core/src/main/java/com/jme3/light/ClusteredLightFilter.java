@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.light;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.matrix.Matrix4f;
+import com.jme3.math.utility.FastMath;
+import com.jme3.math.vector.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Geometry;
+import com.jme3.util.TempVars;
+
+/**
+ * A {@link LightFilter} that assigns point and spot lights through a
+ * clustered view frustum instead of testing every light against every
+ * geometry.
+ * <p>
+ * The frustum of the camera is divided into a grid of clusters, with
+ * exponentially distributed depth slices. Each localized light is binned into
+ * the clusters its range overlaps the first time it is seen after
+ * {@link #setCamera(com.jme3.renderer.Camera)}. A geometry then only performs
+ * the exact intersection test against the lights found in the clusters its
+ * world bound overlaps, so the cost per geometry no longer grows with the
+ * number of lights in the scene. Directional and ambient lights, unbounded
+ * point and spot lights and light probes are handled like in
+ * {@link DefaultLightFilter}.
+ * <p>
+ * The lights returned for a geometry are the same as with
+ * {@link DefaultLightFilter}, only their order may differ.
+ */
+public final class ClusteredLightFilter implements LightFilter {
+
+    /**
+     * Stamps are only compared while the light is owned by this filter, see
+     * {@link Light#clusterOwner}, so each filter counts its own. A light that
+     * was last filtered by another filter is binned again.
+     */
+    private int nextStamp;
+
+    private final int clustersX;
+    private final int clustersY;
+    private final int clustersZ;
+    private final Light[][] clusterLights;
+    private final int[] clusterSizes;
+    private final int[] range = new int[6];
+    private final LightProbeBlendingStrategy probeBlendStrat;
+
+    private Camera camera;
+    private int cameraStamp;
+    private float near;
+    private float far;
+    private float logFarOverNear;
+
+    /**
+     * Creates a filter with a 16x9x24 cluster grid.
+     */
+    public ClusteredLightFilter() {
+        this(16, 9, 24, new BasicProbeBlendingStrategy());
+    }
+
+    /**
+     * Creates a filter with the given cluster grid.
+     *
+     * @param clustersX number of clusters across the width of the frustum
+     * @param clustersY number of clusters across the height of the frustum
+     * @param clustersZ number of depth slices between the near and far plane
+     * @param probeBlendStrat the strategy used to blend light probes
+     */
+    public ClusteredLightFilter(int clustersX, int clustersY, int clustersZ,
+            LightProbeBlendingStrategy probeBlendStrat) {
+        if (clustersX < 1 || clustersY < 1 || clustersZ < 1) {
+            throw new IllegalArgumentException("Cluster grid must have at least one cluster in each dimension");
+        }
+        this.clustersX = clustersX;
+        this.clustersY = clustersY;
+        this.clustersZ = clustersZ;
+        this.clusterLights = new Light[clustersX * clustersY * clustersZ][];
+        this.clusterSizes = new int[clusterLights.length];
+        this.probeBlendStrat = probeBlendStrat;
+    }
+
+    @Override
+    public void setCamera(Camera camera) {
+        this.camera = camera;
+        cameraStamp = ++nextStamp;
+        for (int i = 0; i < clusterSizes.length; i++) {
+            Light[] lights = clusterLights[i];
+            for (int j = 0; j < clusterSizes[i]; j++) {
+                lights[j] = null;
+            }
+            clusterSizes[i] = 0;
+        }
+        near = camera.getFrustumNear();
+        far = camera.getFrustumFar();
+        logFarOverNear = near > 0 ? (float) Math.log(far / near) : 0;
+    }
+
+    @Override
+    public void filterLights(Geometry geometry, LightList filteredLightList) {
+        TempVars vars = TempVars.get();
+        try {
+            LightList worldLights = geometry.getWorldLightList();
+            BoundingVolume bv = geometry.getWorldBound();
+
+            nextStamp += 2;
+            int inList = nextStamp - 1;
+            int added = nextStamp;
+
+            for (int i = 0; i < worldLights.size(); i++) {
+                Light light = worldLights.get(i);
+
+                // If this light is not enabled it will be ignored.
+                if (!light.isEnabled()) {
+                    continue;
+                }
+
+                boolean clustered = isClustered(light);
+                if (light.clusterOwner != this) {
+                    // the state was written by another filter
+                    light.clusterOwner = this;
+                    light.clusterStamp = 0;
+                    light.clusterMark = 0;
+                }
+                if (light.clusterStamp != cameraStamp && light.clusterStamp != -cameraStamp) {
+                    if (light.intersectsFrustum(camera, vars)) {
+                        light.clusterStamp = cameraStamp;
+                        if (clustered) {
+                            binLight(light, vars);
+                        }
+                    } else {
+                        light.clusterStamp = -cameraStamp;
+                    }
+                }
+
+                if (light.clusterStamp != cameraStamp) {
+                    continue;
+                }
+
+                if (clustered) {
+                    light.clusterMark = inList;
+                } else {
+                    addIfIntersecting(light, bv, filteredLightList, vars);
+                }
+            }
+
+            if (computeGeometryRange(bv, vars)) {
+                for (int z = range[4]; z <= range[5]; z++) {
+                    for (int y = range[2]; y <= range[3]; y++) {
+                        for (int x = range[0]; x <= range[1]; x++) {
+                            int cluster = (z * clustersY + y) * clustersX + x;
+                            Light[] lights = clusterLights[cluster];
+                            for (int j = 0; j < clusterSizes[cluster]; j++) {
+                                Light light = lights[j];
+                                if (light.clusterOwner == this && light.clusterMark == inList) {
+                                    light.clusterMark = added;
+                                    addIfIntersecting(light, bv, filteredLightList, vars);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            probeBlendStrat.populateProbes(geometry, filteredLightList);
+
+        } finally {
+            vars.release();
+        }
+    }
+
+    private static boolean isClustered(Light light) {
+        switch (light.getType()) {
+            case Point:
+                return ((PointLight) light).getRadius() > 0;
+            case Spot:
+                return ((SpotLight) light).getSpotRange() > 0;
+            default:
+                return false;
+        }
+    }
+
+    private void addIfIntersecting(Light light, BoundingVolume bv, LightList filteredLightList, TempVars vars) {
+        if (bv instanceof BoundingBox) {
+            if (!light.intersectsBox((BoundingBox) bv, vars)) {
+                return;
+            }
+        } else if (bv instanceof BoundingSphere) {
+            if (!Float.isInfinite(((BoundingSphere) bv).getRadius())) {
+                if (!light.intersectsSphere((BoundingSphere) bv, vars)) {
+                    return;
+                }
+            }
+        }
+
+        if (light.getType() == Light.Type.Probe) {
+            probeBlendStrat.registerProbe((LightProbe) light);
+        } else {
+            filteredLightList.add(light);
+        }
+    }
+
+    private void binLight(Light light, TempVars vars) {
+        boolean inside;
+        if (light.getType() == Light.Type.Point) {
+            PointLight pl = (PointLight) light;
+            inside = computeRange(pl.getPosition(), pl.getRadius(), vars);
+        } else {
+            SpotLight sl = (SpotLight) light;
+            inside = computeRange(sl.getPosition(), sl.getSpotRange(), vars);
+        }
+        if (!inside) {
+            return;
+        }
+
+        for (int z = range[4]; z <= range[5]; z++) {
+            for (int y = range[2]; y <= range[3]; y++) {
+                for (int x = range[0]; x <= range[1]; x++) {
+                    int cluster = (z * clustersY + y) * clustersX + x;
+                    Light[] lights = clusterLights[cluster];
+                    int size = clusterSizes[cluster];
+                    if (lights == null) {
+                        lights = new Light[8];
+                        clusterLights[cluster] = lights;
+                    } else if (size == lights.length) {
+                        Light[] grown = new Light[size * 2];
+                        System.arraycopy(lights, 0, grown, 0, size);
+                        lights = grown;
+                        clusterLights[cluster] = lights;
+                    }
+                    lights[size] = light;
+                    clusterSizes[cluster] = size + 1;
+                }
+            }
+        }
+    }
+
+    private boolean computeGeometryRange(BoundingVolume bv, TempVars vars) {
+        if (bv instanceof BoundingBox) {
+            BoundingBox box = (BoundingBox) bv;
+            Vector3f extent = box.getExtent(vars.vect2);
+            return computeRange(box.getCenter(), extent.length(), vars);
+        } else if (bv instanceof BoundingSphere) {
+            BoundingSphere sphere = (BoundingSphere) bv;
+            if (!Float.isInfinite(sphere.getRadius())) {
+                return computeRange(sphere.getCenter(), sphere.getRadius(), vars);
+            }
+        }
+
+        // Unknown or infinite bounds overlap every cluster.
+        range[0] = 0;
+        range[1] = clustersX - 1;
+        range[2] = 0;
+        range[3] = clustersY - 1;
+        range[4] = 0;
+        range[5] = clustersZ - 1;
+        return true;
+    }
+
+    /**
+     * Computes the range of clusters overlapped by the given world space
+     * sphere into {@link #range}.
+     *
+     * @return false if the sphere is entirely outside of the frustum.
+     */
+    private boolean computeRange(Vector3f center, float radius, TempVars vars) {
+        Matrix4f viewMatrix = camera.getViewMatrix();
+        Vector3f view = viewMatrix.mult(center, vars.vect1);
+
+        float depth = -view.z;
+        float minDepth = depth - radius;
+        float maxDepth = depth + radius;
+        if (maxDepth < near || minDepth > far) {
+            return false;
+        }
+        minDepth = Math.max(minDepth, near);
+        maxDepth = Math.min(maxDepth, far);
+
+        range[4] = getSlice(minDepth);
+        range[5] = getSlice(maxDepth);
+
+        boolean parallel = camera.isParallelProjection();
+        return computeAxisRange(view.x - radius, view.x + radius, minDepth, maxDepth, parallel,
+                camera.getFrustumLeft(), camera.getFrustumRight(), clustersX, 0)
+                && computeAxisRange(view.y - radius, view.y + radius, minDepth, maxDepth, parallel,
+                camera.getFrustumBottom(), camera.getFrustumTop(), clustersY, 2);
+    }
+
+    private boolean computeAxisRange(float min, float max, float minDepth, float maxDepth,
+            boolean parallel, float frustumMin, float frustumMax, int clusters, int index) {
+        if (!parallel) {
+            // Project onto the near plane, using whichever depth widens
+            // the range the most.
+            min = min * near / (min < 0 ? minDepth : maxDepth);
+            max = max * near / (max > 0 ? minDepth : maxDepth);
+        }
+        float scale = clusters / (frustumMax - frustumMin);
+        int first = (int) FastMath.floor((min - frustumMin) * scale);
+        int last = (int) FastMath.floor((max - frustumMin) * scale);
+        if (last < 0 || first >= clusters) {
+            return false;
+        }
+        range[index] = Math.max(first, 0);
+        range[index + 1] = Math.min(last, clusters - 1);
+        return true;
+    }
+
+    private int getSlice(float depth) {
+        int slice;
+        if (camera.isParallelProjection() || logFarOverNear <= 0) {
+            slice = (int) ((depth - near) / (far - near) * clustersZ);
+        } else {
+            slice = (int) ((float) Math.log(depth / near) / logFarOverNear * clustersZ);
+        }
+        return Math.min(Math.max(slice, 0), clustersZ - 1);
+    }
+}
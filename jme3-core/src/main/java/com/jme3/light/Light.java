@@ -110,6 +110,13 @@ public abstract class Light implements Savable, Cloneable {
      */
     protected transient float lastDistance = -1;
 
+    /**
+     * Incremented whenever the position of the light changes, so that
+     * {@link LightList#sort(boolean)} can tell whether the distances it
+     * cached are still valid.
+     */
+    transient int version;
+
     protected boolean enabled = true;
 
     /** 
@@ -120,6 +127,15 @@ public abstract class Light implements Savable, Cloneable {
     boolean frustumCheckNeeded = true;
     boolean intersectsFrustum  = false;
 
+    /**
+     * Used by {@link ClusteredLightFilter}: the filter that last binned this
+     * light, the camera stamp it was binned for (negated if it was outside of
+     * the frustum) and the stamp of the geometry it was last matched against.
+     */
+    transient ClusteredLightFilter clusterOwner;
+    transient int clusterStamp;
+    transient int clusterMark;
+
     protected Light() {
     }
 
@@ -253,6 +269,9 @@ public abstract class Light implements Savable, Cloneable {
         try {
             Light l = (Light) super.clone();
             l.color = color.clone();
+            l.clusterOwner = null;
+            l.clusterStamp = 0;
+            l.clusterMark = 0;
             return l;
         } catch (CloneNotSupportedException ex) {
             throw new AssertionError();
@@ -277,6 +296,25 @@ public abstract class Light implements Savable, Cloneable {
      * Used internally to compute the last distance value.
      */
     protected abstract void computeLastDistance(Spatial owner);
+
+    /**
+     * Computes the distance used by {@link LightList#sort(boolean)} to sort
+     * this light in the list of the owner. The same light may be sorted in
+     * the lists of several spatials at once, so implementations must not
+     * change the state of the light.
+     * <p>
+     * The default implementation calls {@link #computeLastDistance(com.jme3.scene.Spatial) }
+     * while holding the lock of the light.
+     *
+     * @param owner the spatial owning the light list
+     * @return the sort distance
+     */
+    protected float computeDistance(Spatial owner) {
+        synchronized (this) {
+            computeLastDistance(owner);
+            return lastDistance;
+        }
+    }
     
     /**
      * Returns the light type
@@ -48,25 +48,30 @@ import java.util.*;
 public final class LightList implements Iterable<Light>, Savable, Cloneable, JmeCloneable {
 
     private Light[] list, tlist;
-    private float[] distToOwner;
+    private float[] distToOwner, tdistToOwner;
     private int listSize;
     private Spatial owner;
 
-    private static final int DEFAULT_SIZE = 1;
+    /**
+     * Incremented whenever the lights in this list change.
+     */
+    private int version;
 
-    private static final Comparator<Light> c = new Comparator<Light>() {
-        /**
-         * This assumes lastDistance have been computed in a previous step.
-         */
-        public int compare(Light l1, Light l2) {
-            if (l1.lastDistance < l2.lastDistance)
-                return -1;
-            else if (l1.lastDistance > l2.lastDistance)
-                return 1;
-            else
-                return 0;
-        }
-    };
+    /**
+     * The inputs of the last {@link #update(com.jme3.light.LightList, com.jme3.light.LightList) }
+     * call, used to skip rebuilding the list if they did not change.
+     */
+    private LightList updateLocal, updateParent;
+    private int updateLocalVersion, updateParentVersion, updatedVersion = -1;
+
+    /**
+     * The state of the list when it was last sorted, used to skip sorting
+     * if neither the list nor the positions of its lights changed.
+     */
+    private int sortedVersion = -1;
+    private int sortedLightVersions;
+
+    private static final int DEFAULT_SIZE = 1;
 
     /**
      * Default constructor for serialization. Do not use
@@ -93,6 +98,17 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
      */
     public void setOwner(Spatial owner){
         this.owner = owner;
+        sortedVersion = -1;
+    }
+
+    /**
+     * Returns a counter that is incremented whenever lights are added to or
+     * removed from this list.
+     *
+     * @return the modification counter of this list.
+     */
+    public int getVersion() {
+        return version;
     }
 
     private void doubleSize(){
@@ -116,6 +132,7 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
         }
         list[listSize] = l;
         distToOwner[listSize++] = Float.NEGATIVE_INFINITY;
+        version++;
     }
 
     /**
@@ -127,6 +144,7 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
         if (index >= listSize || index < 0)
             throw new IndexOutOfBoundsException();
 
+        version++;
         listSize --;
         if (index == listSize){
             list[listSize] = null;
@@ -135,6 +153,7 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
 
         for (int i = index; i < listSize; i++){
             list[i] = list[i+1];
+            distToOwner[i] = distToOwner[i+1];
         }
         list[listSize] = null;
     }
@@ -185,6 +204,7 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
             Arrays.fill(tlist, null);
 
         listSize = 0;
+        version++;
     }
 
     /**
@@ -194,28 +214,93 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
      * the spatial changed.
      * Second, if the spatial itself moved, it means the distance from it to
      * the individual lights might have changed.
-     *
+     * <p>
+     * The first case is detected here, using a version counter that the
+     * lights increment when their position is set. If neither happened and
+     * the list was not modified since it was last sorted, the list is left
+     * as is.
      *
      * @param transformChanged Whether the spatial's transform has changed
      */
     public void sort(boolean transformChanged) {
         if (listSize > 1) {
-            // resize or populate our temporary array as necessary
+            int lightVersions = 0;
+            for (int i = 0; i < listSize; i++){
+                lightVersions += list[i].version;
+            }
+            if (!transformChanged && sortedVersion == version
+                    && sortedLightVersions == lightVersions) {
+                return;
+            }
+            sortedVersion = version;
+            sortedLightVersions = lightVersions;
+
+            // check distance of each light
+            // The same light is shared by many spatials which may be
+            // updated on different threads (see Node#setParallelUpdatePool),
+            // so the distances are kept in the list, not in the lights.
+            for (int i = 0; i < listSize; i++){
+                distToOwner[i] = list[i].computeDistance(owner);
+            }
+
+            // resize or populate our temporary arrays as necessary
             if (tlist == null || tlist.length != list.length) {
                 tlist = list.clone();
+                tdistToOwner = distToOwner.clone();
             } else {
                 System.arraycopy(list, 0, tlist, 0, list.length);
+                System.arraycopy(distToOwner, 0, tdistToOwner, 0, distToOwner.length);
             }
 
-            if (transformChanged){
-                // check distance of each light
-                for (int i = 0; i < listSize; i++){
-                    list[i].computeLastDistance(owner);
-                }
+            // now merge sort tlist into list
+            msort(tlist, tdistToOwner, list, distToOwner, 0, listSize - 1);
+        }
+    }
+
+    /**
+     * Merge sorts the lights by their distance to the owner, same as
+     * {@link SortUtil#msort(java.lang.Object[], java.lang.Object[], int, int, java.util.Comparator) }
+     * but keeping the distances next to the lights.
+     */
+    private static void msort(Light[] src, float[] srcDist, Light[] dest, float[] destDist,
+            int low, int high) {
+        if (low < high) {
+            int center = (low + high) / 2;
+            msort(src, srcDist, dest, destDist, low, center);
+            msort(src, srcDist, dest, destDist, center + 1, high);
+            merge(src, srcDist, dest, destDist, low, center + 1, high);
+        }
+    }
+
+    private static void merge(Light[] src, float[] srcDist, Light[] dest, float[] destDist,
+            int low, int middle, int high) {
+        int leftEnd = middle - 1;
+        int pos = low;
+        int numElements = high - low + 1;
+
+        while (low <= leftEnd && middle <= high) {
+            if (!(srcDist[low] > srcDist[middle])) {
+                destDist[pos] = srcDist[low];
+                dest[pos++] = src[low++];
+            } else {
+                destDist[pos] = srcDist[middle];
+                dest[pos++] = src[middle++];
             }
+        }
 
-            // now merge sort tlist into list
-            SortUtil.msort(tlist, list, 0, listSize - 1, c);
+        while (low <= leftEnd) {
+            destDist[pos] = srcDist[low];
+            dest[pos++] = src[low++];
+        }
+
+        while (middle <= high) {
+            destDist[pos] = srcDist[middle];
+            dest[pos++] = src[middle++];
+        }
+
+        for (int i = 0; i < numElements; i++, high--) {
+            src[high] = dest[high];
+            srcDist[high] = destDist[high];
         }
     }
 
@@ -227,6 +312,18 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
      * @param parent
      */
     public void update(LightList local, LightList parent){
+        if (version == updatedVersion
+                && local == updateLocal && local.version == updateLocalVersion
+                && parent == updateParent
+                && (parent == null || parent.version == updateParentVersion)) {
+            // neither input changed, the list is still up to date
+            return;
+        }
+        updateLocal = local;
+        updateLocalVersion = local.version;
+        updateParent = parent;
+        updateParentVersion = parent != null ? parent.version : 0;
+
         // clear the list as it will be reconstructed
         // using the arguments
         clear();
@@ -259,6 +356,7 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
         }else{
             listSize = local.listSize;
         }
+        updatedVersion = ++version;
     }
 
     /**
@@ -297,6 +395,10 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
             clone.list = list.clone();
             clone.distToOwner = distToOwner.clone();
             clone.tlist = null; // list used for sorting only
+            clone.tdistToOwner = null;
+            clone.updateLocal = null;
+            clone.updateParent = null;
+            clone.sortedVersion = -1;
 
             return clone;
         }catch (CloneNotSupportedException ex){
@@ -309,6 +411,10 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
         try{
             LightList clone = (LightList)super.clone();
             clone.tlist = null; // list used for sorting only
+            clone.tdistToOwner = null;
+            clone.updateLocal = null;
+            clone.updateParent = null;
+            clone.sortedVersion = -1;
             return clone;
         }catch (CloneNotSupportedException ex){
             throw new AssertionError();
@@ -350,6 +456,7 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
         }
 
         Arrays.fill(distToOwner, Float.NEGATIVE_INFINITY);
+        version++;
     }
 
 }
@@ -298,11 +298,16 @@ public class SpotLight extends Light {
     
     @Override
     protected void computeLastDistance(Spatial owner) {
+        lastDistance = computeDistance(owner);
+    }
+
+    @Override
+    protected float computeDistance(Spatial owner) {
         if (owner.getWorldBound() != null) {
             BoundingVolume bv = owner.getWorldBound();
-            lastDistance = bv.distanceSquaredTo(position);
+            return bv.distanceSquaredTo(position);
         } else {
-            lastDistance = owner.getWorldTranslation().distanceSquared(position);
+            return owner.getWorldTranslation().distanceSquared(position);
         }
     }
 
@@ -325,6 +330,7 @@ public class SpotLight extends Light {
 
     public final void setPosition(Vector3f position) {
         this.position.set(position);
+        version++;
     }
 
     public float getSpotRange() {
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material;
+
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Renderer;
+import com.jme3.shader.Shader;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Moves shader creation off the critical path of rendering.
+ * <p>
+ * When set on the {@link RenderManager}, a
+ * {@link TechniqueDef#getShader(com.jme3.asset.AssetManager, java.util.EnumSet, com.jme3.shader.DefineList, com.jme3.material.AsyncShaderLoader) shader permutation}
+ * that does not exist yet is generated by the executor instead of the
+ * render thread, and compiled by the renderer at the start of a later frame,
+ * a few shaders per frame within the {@link #setFrameBudget(long) frame budget}.
+ * Until then, geometries that need the shader are rendered with the
+ * {@link #setFallbackMaterial(com.jme3.material.Material) fallback material},
+ * or not at all.
+ * <p>
+ * {@link Material#preload(com.jme3.renderer.RenderManager)} and
+ * {@link RenderManager#preloadScene(com.jme3.scene.Spatial)} only queue
+ * the shaders while a loader is set, so a scene can be preloaded without
+ * stalling the render thread.
+ */
+public class AsyncShaderLoader {
+
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Shader> compileQueue = new ConcurrentLinkedQueue<Shader>();
+    private final Set<Shader> queuedShaders
+            = Collections.newSetFromMap(new ConcurrentHashMap<Shader, Boolean>());
+    private long frameBudget = 2000000L;
+    private Material fallbackMaterial;
+
+    /**
+     * Creates a loader that generates shader sources with the given executor.
+     *
+     * @param executor The executor to generate shader sources on, usually
+     * a thread pool.
+     */
+    public AsyncShaderLoader(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the time that may be spent compiling shaders each frame.
+     * At least one shader is compiled per frame regardless.
+     *
+     * @param frameBudget The budget in nanoseconds, 2 milliseconds by default.
+     */
+    public void setFrameBudget(long frameBudget) {
+        this.frameBudget = frameBudget;
+    }
+
+    /**
+     * @return The time that may be spent compiling shaders each frame, in
+     * nanoseconds.
+     */
+    public long getFrameBudget() {
+        return frameBudget;
+    }
+
+    /**
+     * Sets the material geometries are rendered with while their own shader
+     * is not ready yet.
+     *
+     * @param fallbackMaterial A cheap material, or null to skip rendering
+     * such geometries (the default).
+     */
+    public void setFallbackMaterial(Material fallbackMaterial) {
+        this.fallbackMaterial = fallbackMaterial;
+    }
+
+    /**
+     * @return The fallback material, or null.
+     * @see #setFallbackMaterial(com.jme3.material.Material)
+     */
+    public Material getFallbackMaterial() {
+        return fallbackMaterial;
+    }
+
+    /**
+     * @return The number of shaders waiting to be compiled.
+     */
+    public int getQueuedShaderCount() {
+        return compileQueue.size();
+    }
+
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Queues a shader for compilation on the render thread.
+     * May be called from any thread.
+     */
+    void queue(Shader shader) {
+        if (queuedShaders.add(shader)) {
+            compileQueue.add(shader);
+        }
+    }
+
+    /**
+     * Compiles queued shaders until the frame budget is used up.
+     * Called by the {@link RenderManager} at the start of a frame.
+     *
+     * @param renderer The renderer to compile the shaders with
+     */
+    public void compileQueued(Renderer renderer) {
+        long start = System.nanoTime();
+        Shader shader;
+        while ((shader = compileQueue.poll()) != null) {
+            queuedShaders.remove(shader);
+            if (shader.isUpdateNeeded()) {
+                renderer.setShader(shader);
+                if (System.nanoTime() - start >= frameBudget) {
+                    break;
+                }
+            }
+        }
+    }
+}
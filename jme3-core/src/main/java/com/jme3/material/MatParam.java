@@ -59,6 +59,11 @@ public class MatParam implements Savable, Cloneable {
     protected String prefixedName;
     protected Object value;
 
+    /**
+     * Handle of this parameter in its {@link MaterialDef}, -1 if unresolved.
+     */
+    transient int index = -1;
+
     /**
      * Create a new material parameter. For internal use only.
      */
@@ -79,6 +79,7 @@ import java.io.IOException;
 public final class MatParamOverride extends MatParam {
 
     private boolean enabled = true;
+    private int version;
 
     /**
      * Serialization only. Do not use.
@@ -132,7 +133,27 @@ public final class MatParamOverride extends MatParam {
      * @param enabled Whether to enable or disable this override.
      */
     public void setEnabled(boolean enabled) {
-        this.enabled = enabled;
+        if (this.enabled != enabled) {
+            this.enabled = enabled;
+            version++;
+        }
+    }
+
+    @Override
+    public void setValue(Object value) {
+        super.setValue(value);
+        version++;
+    }
+
+    /**
+     * Returns a counter that is incremented whenever the value or the
+     * enabled state of this override changes. Used by {@link Technique} to
+     * detect that its cached defines are stale.
+     *
+     * @return the modification counter of this override.
+     */
+    int getVersion() {
+        return version;
     }
 
     @Override
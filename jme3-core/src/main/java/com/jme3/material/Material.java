@@ -57,6 +57,8 @@ import com.jme3.shader.UniformBindingManager;
 import com.jme3.shader.VarType;
 import com.jme3.texture.Image;
 import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.TextureArrayAllocator;
 import com.jme3.texture.image.ColorSpace;
 import com.jme3.util.ListMap;
 import com.jme3.util.SafeArrayList;
@@ -87,6 +89,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
     private String name;
     private MaterialDef def;
     private ListMap<String, MatParam> paramValues = new ListMap<String, MatParam>();
+    private MatParam[] paramsByIndex;
     private Technique technique;
     private HashMap<String, Technique> techniques = new HashMap<String, Technique>();
     private RenderState additionalState = null;
@@ -94,6 +97,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
     private boolean transparent = false;
     private boolean receivesShadows = false;
     private int sortingId = -1;
+    private TextureArrayAllocator textureArrayAllocator;
 
     public Material(MaterialDef def) {
         if (def == null) {
@@ -212,6 +216,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
                 Map.Entry<String, MatParam> entry = paramValues.getEntry(i);
                 mat.paramValues.put(entry.getKey(), entry.getValue().clone());
             }
+            mat.paramsByIndex = null;
 
             mat.sortingId = -1;
             
@@ -417,6 +422,59 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         return paramValues.get(name);
     }
 
+    /**
+     * Returns the parameter set on this material with the given handle,
+     * returns <code>null</code> if the parameter is not set.
+     *
+     * @param index The parameter handle, see {@link #getParamIndex(java.lang.String) }.
+     * @return The MatParam if set, or null if not set.
+     */
+    public MatParam getParam(int index) {
+        return getParamsByIndex()[index];
+    }
+
+    /**
+     * Returns the handle of the parameter with the given name.
+     * <p>
+     * The handle is resolved by the {@link MaterialDef} and is the same for
+     * all materials sharing that definition, it can be looked up once and
+     * then used with the index based setters to avoid a name lookup on
+     * every change.
+     *
+     * @param name The parameter name to look up.
+     * @return The parameter handle.
+     *
+     * @throws IllegalArgumentException if the parameter is not defined.
+     */
+    public int getParamIndex(String name) {
+        int index = def.getMaterialParamIndex(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Material parameter is not defined: " + name);
+        }
+        return index;
+    }
+
+    private int getParamIndex(MatParam param) {
+        if (param.index < 0) {
+            param.index = def.getMaterialParamIndex(param.getName());
+        }
+        return param.index;
+    }
+
+    private MatParam[] getParamsByIndex() {
+        if (paramsByIndex == null) {
+            paramsByIndex = new MatParam[def.getMaterialParamCount()];
+            for (int i = 0; i < paramValues.size(); i++) {
+                MatParam param = paramValues.getValue(i);
+                int index = getParamIndex(param);
+                if (index >= 0) {
+                    paramsByIndex[index] = param;
+                }
+            }
+        }
+        return paramsByIndex;
+    }
+
     /**
      * Returns the texture parameter set on this material with the given name,
      * returns <code>null</code> if the parameter is not set.
@@ -486,7 +544,10 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             MatParam val = getParam(name);
             if (val == null) {
                 MatParam paramDef = def.getMaterialParam(name);
-                paramValues.put(name, new MatParam(type, name, value));
+                val = new MatParam(type, name, value);
+                val.index = paramDef.index;
+                paramValues.put(name, val);
+                paramsByIndex = null;
             } else {
                 val.setValue(value);
             }
@@ -509,6 +570,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         }
 
         paramValues.remove(name);
+        paramsByIndex = null;
         if (matParam instanceof MatParamTexture) {
             sortingId = -1;
         }
@@ -552,7 +614,10 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
                         + "Linear using texture.getImage.setColorSpace().",
                         new Object[]{value.getName(), value.getImage().getColorSpace().name(), name});
             }
-            paramValues.put(name, new MatParamTexture(type, name, value, null));
+            MatParamTexture param = new MatParamTexture(type, name, value, null);
+            param.index = paramDef.index;
+            paramValues.put(name, param);
+            paramsByIndex = null;
         } else {
             val.setTextureValue(value);
         }
@@ -573,6 +638,13 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
      * @param value the Texture object previously loaded by the asset manager
      */
     public void setTexture(String name, Texture value) {
+        if (textureArrayAllocator != null) {
+            if (value instanceof Texture2D && setTextureArraySlot(name, (Texture2D) value)) {
+                return;
+            }
+            clearTextureArraySlot(name);
+        }
+
         if (value == null) {
             // clear it
             clearParam(name);
@@ -600,6 +672,64 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         setTextureParam(name, paramType, value);
     }
 
+    /**
+     * Sets the allocator used to share 2D textures with other materials
+     * through texture arrays.
+     * <p>
+     * While an allocator is set, a 2D texture passed to
+     * {@link #setTexture(java.lang.String, com.jme3.texture.Texture) } is
+     * stored in a texture array if the material definition declares a
+     * <code>TextureArray</code> parameter named after the texture parameter
+     * with an <code>Array</code> suffix, and an <code>Int</code> parameter
+     * with a <code>Layer</code> suffix (e.g. <code>ColorMapArray</code> and
+     * <code>ColorMapLayer</code> for <code>ColorMap</code>). These two
+     * parameters are then set instead of the texture parameter, so
+     * materials sharing an array no longer cause texture switches.
+     *
+     * @param textureArrayAllocator the allocator to use, or null to always
+     * set the texture parameters directly.
+     */
+    public void setTextureArrayAllocator(TextureArrayAllocator textureArrayAllocator) {
+        this.textureArrayAllocator = textureArrayAllocator;
+    }
+
+    /**
+     * @return the allocator used to share textures through texture arrays,
+     * or null.
+     * @see #setTextureArrayAllocator(com.jme3.texture.TextureArrayAllocator)
+     */
+    public TextureArrayAllocator getTextureArrayAllocator() {
+        return textureArrayAllocator;
+    }
+
+    private boolean setTextureArraySlot(String name, Texture2D value) {
+        MatParam arrayParam = def.getMaterialParam(name + "Array");
+        MatParam layerParam = def.getMaterialParam(name + "Layer");
+        if (arrayParam == null || arrayParam.getVarType() != VarType.TextureArray
+                || layerParam == null || layerParam.getVarType() != VarType.Int) {
+            return false;
+        }
+
+        TextureArrayAllocator.Slot slot = textureArrayAllocator.allocate(value);
+        if (slot == null) {
+            return false;
+        }
+
+        clearParam(name);
+        setTextureParam(arrayParam.getName(), VarType.TextureArray, slot.getTextureArray());
+        setInt(layerParam.getName(), slot.getLayer());
+        return true;
+    }
+
+    private void clearTextureArraySlot(String name) {
+        MatParam arrayParam = def.getMaterialParam(name + "Array");
+        if (arrayParam != null && arrayParam.getVarType() == VarType.TextureArray
+                && def.getMaterialParam(name + "Layer") != null) {
+            clearParam(arrayParam.getName());
+            clearParam(name + "Layer");
+        }
+    }
+
     /**
      * Pass a Matrix4f to the material shader.
      *
@@ -691,6 +821,120 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         setParam(name, VarType.Vector4, value);
     }
 
+    /**
+     * Pass a parameter to the material shader by handle.
+     * <p>
+     * Same as {@link #setParam(java.lang.String, com.jme3.shader.VarType, java.lang.Object) }
+     * but the parameter is located through its handle instead of its name.
+     *
+     * @param index the parameter handle, see {@link #getParamIndex(java.lang.String) }
+     * @param type the type of the parameter {@link VarType}
+     * @param value the value of the parameter
+     */
+    public void setParam(int index, VarType type, Object value) {
+        MatParam paramDef = def.getMaterialParam(index);
+        if (type.isTextureType() || paramDef.getVarType() != type) {
+            // uncommon cases, let the name based path validate and log
+            setParam(paramDef.getName(), type, value);
+            return;
+        }
+
+        MatParam[] params = getParamsByIndex();
+        MatParam val = params[index];
+        if (val == null) {
+            val = new MatParam(type, paramDef.getName(), value);
+            val.index = index;
+            paramValues.put(val.getName(), val);
+            params[index] = val;
+        } else {
+            val.setValue(value);
+        }
+
+        if (technique != null) {
+            technique.notifyParamChanged(index, type, value);
+        }
+    }
+
+    /**
+     * Pass a Matrix4f to the material shader by handle.
+     *
+     * @param index the parameter handle, see {@link #getParamIndex(java.lang.String) }
+     * @param value the Matrix4f object
+     */
+    public void setMatrix4(int index, Matrix4f value) {
+        setParam(index, VarType.Matrix4, value);
+    }
+
+    /**
+     * Pass a boolean to the material shader by handle.
+     *
+     * @param index the parameter handle, see {@link #getParamIndex(java.lang.String) }
+     * @param value the boolean value
+     */
+    public void setBoolean(int index, boolean value) {
+        setParam(index, VarType.Boolean, value);
+    }
+
+    /**
+     * Pass a float to the material shader by handle.
+     *
+     * @param index the parameter handle, see {@link #getParamIndex(java.lang.String) }
+     * @param value the float value
+     */
+    public void setFloat(int index, float value) {
+        setParam(index, VarType.Float, value);
+    }
+
+    /**
+     * Pass an int to the material shader by handle.
+     *
+     * @param index the parameter handle, see {@link #getParamIndex(java.lang.String) }
+     * @param value the int value
+     */
+    public void setInt(int index, int value) {
+        setParam(index, VarType.Int, value);
+    }
+
+    /**
+     * Pass a Color to the material shader by handle.
+     *
+     * @param index the parameter handle, see {@link #getParamIndex(java.lang.String) }
+     * @param value the ColorRGBA value
+     */
+    public void setColor(int index, ColorRGBA value) {
+        setParam(index, VarType.Vector4, value);
+    }
+
+    /**
+     * Pass a Vector2f to the material shader by handle.
+     *
+     * @param index the parameter handle, see {@link #getParamIndex(java.lang.String) }
+     * @param value the Vector2f value
+     */
+    public void setVector2(int index, Vector2f value) {
+        setParam(index, VarType.Vector2, value);
+    }
+
+    /**
+     * Pass a Vector3f to the material shader by handle.
+     *
+     * @param index the parameter handle, see {@link #getParamIndex(java.lang.String) }
+     * @param value the Vector3f value
+     */
+    public void setVector3(int index, Vector3f value) {
+        setParam(index, VarType.Vector3, value);
+    }
+
+    /**
+     * Pass a Vector4f to the material shader by handle.
+     *
+     * @param index the parameter handle, see {@link #getParamIndex(java.lang.String) }
+     * @param value the Vector4f value
+     */
+    public void setVector4(int index, Vector4f value) {
+        setParam(index, VarType.Vector4, value);
+    }
+
     /**
      * Select the technique to use for rendering this material.
      * <p>
@@ -797,7 +1041,10 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         for (int i = 0; i < paramValues.size(); i++) {
             MatParam param = paramValues.getValue(i);
             VarType type = param.getVarType();
-            Uniform uniform = shader.getUniform(param.getPrefixedName());
+            int index = getParamIndex(param);
+            Uniform uniform = index >= 0
+                    ? shader.getUniform(def, index, param.getPrefixedName())
+                    : shader.getUniform(param.getPrefixedName());
 
             if (uniform.isSetByCurrentMaterial()) {
                 continue;
@@ -850,6 +1097,10 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         }
 
         Shader shader = technique.makeCurrent(renderManager, null, null, null, rendererCaps);
+        if (shader == null) {
+            // queued by the asynchronous shader loader
+            return;
+        }
         updateShaderMaterialParameters(renderer, shader, null, null);
         renderManager.getRenderer().setShader(shader);
     }
@@ -958,6 +1209,14 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
 
         // Select shader to use
         Shader shader = technique.makeCurrent(renderManager, overrides, renderManager.getForcedMatParams(), lights, rendererCaps);
+        if (shader == null) {
+            // Still being loaded by the asynchronous shader loader
+            Material fallback = renderManager.getAsyncShaderLoader().getFallbackMaterial();
+            if (fallback != null && fallback != this) {
+                fallback.render(geometry, lights, renderManager);
+            }
+            return;
+        }
         
         // Begin tracking which uniforms were changed by material.
         clearUniformsSetByCurrent(shader);
@@ -1056,6 +1315,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
 
         def = (MaterialDef) im.getAssetManager().loadAsset(new AssetKey(defName));
         paramValues = new ListMap<String, MatParam>();
+        paramsByIndex = null;
 
         // load the textures and update nextTexUnit
         for (Map.Entry<String, MatParam> entry : params.entrySet()) {
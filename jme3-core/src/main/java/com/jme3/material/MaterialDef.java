@@ -56,6 +56,8 @@ public class MaterialDef{
 
     private Map<String, List<TechniqueDef>> techniques;
     private Map<String, MatParam> matParams;
+    private Map<String, Integer> matParamIndices;
+    private List<MatParam> matParamList;
 
     /**
      * Serialization only. Do not use.
@@ -74,6 +76,8 @@ public class MaterialDef{
         this.name = name;
         techniques = new HashMap<String, List<TechniqueDef>>();
         matParams = new HashMap<String, MatParam>();
+        matParamIndices = new HashMap<String, Integer>();
+        matParamList = new ArrayList<MatParam>();
         logger.log(Level.FINE, "Loaded material definition: {0}", name);
     }
 
@@ -122,7 +126,7 @@ public class MaterialDef{
      * @param value Default value of the parameter
      */
     public void addMaterialParam(VarType type, String name, Object value) {
-        matParams.put(name, new MatParam(type, name, value));
+        putMaterialParam(new MatParam(type, name, value));
     }
     
     /**
@@ -136,7 +140,21 @@ public class MaterialDef{
      * @see ColorSpace
      */
     public void addMaterialParamTexture(VarType type, String name, ColorSpace colorSpace) {
-        matParams.put(name, new MatParamTexture(type, name, null, colorSpace));
+        putMaterialParam(new MatParamTexture(type, name, null, colorSpace));
+    }
+
+    private void putMaterialParam(MatParam param) {
+        String name = param.getName();
+        Integer index = matParamIndices.get(name);
+        if (index == null) {
+            index = matParamList.size();
+            matParamIndices.put(name, index);
+            matParamList.add(param);
+        } else {
+            matParamList.set(index, param);
+        }
+        param.index = index;
+        matParams.put(name, param);
     }
     
     /**
@@ -163,6 +181,42 @@ public class MaterialDef{
         return matParams.values();
     }
 
+    /**
+     * Returns the handle of the material parameter with the given name.
+     * <p>
+     * Handles are assigned in declaration order and stay valid for the
+     * lifetime of this definition, so they can be resolved once and then
+     * passed to the index based setters in {@link Material} to avoid
+     * looking up the parameter by name on every call.
+     *
+     * @param name The name of the parameter
+     *
+     * @return The parameter handle, or -1 if it does not exist.
+     */
+    public int getMaterialParamIndex(String name) {
+        Integer index = matParamIndices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the material parameter with the given handle.
+     *
+     * @param index The handle of the parameter,
+     * see {@link #getMaterialParamIndex(java.lang.String) }.
+     *
+     * @return The material parameter.
+     */
+    public MatParam getMaterialParam(int index) {
+        return matParamList.get(index);
+    }
+
+    /**
+     * @return The number of material parameters declared in this definition.
+     */
+    public int getMaterialParamCount() {
+        return matParamList.size();
+    }
+
     /**
      * Adds a new technique definition to this material definition.
      *
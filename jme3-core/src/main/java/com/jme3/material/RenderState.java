@@ -466,6 +466,12 @@ public class RenderState implements Cloneable, Savable {
     TestFunction frontStencilFunction = TestFunction.Always;
     TestFunction backStencilFunction = TestFunction.Always;
     int cachedHashCode = -1;
+    /**
+     * The immutable bundle of this state from a {@link RenderStateCache},
+     * only valid while <code>cachedHashCode</code> is. Any change to the state
+     * resets the hash code, and computing it again clears the bundle.
+     */
+    transient RenderState bundle;
     BlendFunc sfactorRGB=BlendFunc.One;
     BlendFunc dfactorRGB=BlendFunc.Zero;
     BlendFunc sfactorAlpha=BlendFunc.One;
@@ -1421,6 +1427,7 @@ public class RenderState implements Cloneable, Savable {
      */
     public int contentHashCode() {
         if (cachedHashCode == -1){
+            bundle = null;
             int hash = 7;
             hash = 79 * hash + (this.wireframe ? 1 : 0);
             hash = 79 * hash + (this.cullMode != null ? this.cullMode.hashCode() : 0);
@@ -1619,6 +1626,7 @@ public class RenderState implements Cloneable, Savable {
         dfactorRGB = state.dfactorRGB;
         sfactorAlpha = state.sfactorAlpha;
         dfactorAlpha = state.dfactorAlpha;
+        cachedHashCode = -1;
     }
 
     @Override
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material;
+
+import com.jme3.util.IntMap;
+
+/**
+ * <code>RenderStateCache</code> interns {@link RenderState}s into immutable
+ * bundles. All render states with the same content map to the same bundle, so
+ * a renderer can tell whether a state differs from the one it applied last
+ * with a single identity check.
+ * <p>
+ * The bundle is remembered by the render state until the state is modified,
+ * so looking up an unmodified state is a field read. Bundles are private
+ * copies and must not be modified.
+ */
+public final class RenderStateCache {
+
+    /**
+     * The number of bundles after which the cache is cleared, in case an
+     * application keeps creating distinct render states.
+     */
+    private static final int MAX_BUNDLES = 512;
+
+    private final IntMap<RenderState> bundles = new IntMap<RenderState>();
+
+    /**
+     * Returns the immutable bundle for the content of the given state.
+     *
+     * @param state The render state to look up
+     * @return The bundle, equal in content to <code>state</code>
+     */
+    public RenderState getBundle(RenderState state) {
+        RenderState bundle = state.bundle;
+        if (bundle != null && state.cachedHashCode != -1) {
+            return bundle;
+        }
+
+        int hash = state.contentHashCode();
+        bundle = bundles.get(hash);
+        if (bundle == null || !bundle.equals(state)) {
+            // new state, or a hash collision that replaces the old bundle
+            if (bundles.size() >= MAX_BUNDLES) {
+                bundles.clear();
+            }
+            bundle = state.clone();
+            bundle.bundle = bundle;
+            bundles.put(hash, bundle);
+        }
+        state.bundle = bundle;
+        return bundle;
+    }
+
+    /**
+     * Removes all bundles from the cache.
+     */
+    public void clear() {
+        bundles.clear();
+    }
+}
@@ -34,6 +34,8 @@ package com.jme3.material;
 import com.jme3.asset.AssetManager;
 import com.jme3.light.LightList;
 import com.jme3.material.TechniqueDef.LightMode;
+import com.jme3.material.logic.DefaultTechniqueDefLogic;
+import com.jme3.material.logic.MultiPassLightingLogic;
 import com.jme3.material.logic.TechniqueDefLogic;
 import com.jme3.renderer.Caps;
 import com.jme3.renderer.RenderManager;
@@ -54,6 +56,57 @@ public final class Technique {
     private final Material owner;
     private final DefineList paramDefines;
     private final DefineList dynamicDefines;
+    private final OverrideStamp worldOverridesStamp = new OverrideStamp();
+    private final OverrideStamp forcedOverridesStamp = new OverrideStamp();
+    private int paramDefinesVersion;
+    private int dynamicDefinesVersion = -1;
+    private Shader cachedShader;
+    private EnumSet<Caps> cachedShaderCaps;
+    private TechniqueDefLogic cachedShaderLogic;
+    private int[] paramDefineIds;
+
+    /**
+     * Remembers the overrides that were applied to the dynamic defines, so
+     * that they only need to be recomputed once an override was added,
+     * removed or modified.
+     */
+    private static final class OverrideStamp {
+
+        private MatParamOverride[] overrides;
+        private int[] versions = new int[0];
+
+        boolean update(SafeArrayList<MatParamOverride> list) {
+            MatParamOverride[] array = list != null ? list.getArray() : null;
+            int size = array != null ? array.length : 0;
+            boolean changed = versions.length != size;
+            if (!changed && array != overrides) {
+                for (int i = 0; i < size; i++) {
+                    if (array[i] != overrides[i]) {
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            if (!changed) {
+                for (int i = 0; i < size; i++) {
+                    if (array[i].getVersion() != versions[i]) {
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            if (changed) {
+                if (versions.length != size) {
+                    versions = new int[size];
+                }
+                for (int i = 0; i < size; i++) {
+                    versions[i] = array[i].getVersion();
+                }
+            }
+            overrides = array;
+            return changed;
+        }
+    }
 
     /**
      * Creates a new technique instance that implements the given
@@ -92,6 +145,32 @@ public final class Technique {
         }
 
         paramDefines.set(defineId, type, value);
+        paramDefinesVersion++;
+    }
+
+    /**
+     * Same as {@link #notifyParamChanged(java.lang.String, com.jme3.shader.VarType, java.lang.Object) }
+     * but the parameter is given by its {@link MaterialDef} handle.
+     */
+    final void notifyParamChanged(int paramIndex, VarType type, Object value) {
+        int[] defineIds = paramDefineIds;
+        if (defineIds == null) {
+            MaterialDef matDef = owner.getMaterialDef();
+            defineIds = new int[matDef.getMaterialParamCount()];
+            for (int i = 0; i < defineIds.length; i++) {
+                Integer defineId = def.getShaderParamDefineId(matDef.getMaterialParam(i).getName());
+                defineIds[i] = defineId != null ? defineId : -1;
+            }
+            paramDefineIds = defineIds;
+        }
+
+        int defineId = defineIds[paramIndex];
+        if (defineId < 0) {
+            return;
+        }
+
+        paramDefines.set(defineId, type, value);
+        paramDefinesVersion++;
     }
     
     /**
@@ -103,6 +182,7 @@ public final class Technique {
     final void notifyTechniqueSwitched() {
         ListMap<String, MatParam> paramMap = owner.getParamsMap();
         paramDefines.clear();
+        paramDefinesVersion++;
         for (int i = 0; i < paramMap.size(); i++) {
             MatParam param = paramMap.getValue(i);
             notifyParamChanged(param.getName(), param.getVarType(), param.getValue());
@@ -128,6 +208,12 @@ public final class Technique {
      * 
      * The {@link TechniqueDefLogic} is used to determine the shader to use
      * based on the {@link LightMode}.
+     * <p>
+     * The dynamic defines are only recomputed when a material parameter or
+     * one of the given overrides changed since the last call. For the logics
+     * that do not derive defines from the lights, the previously selected
+     * shader is then returned without consulting the logic at all, as long
+     * as the logic and the renderer capabilities are the same.
      * 
      * @param renderManager The render manager for which the shader is to be selected.
      * @param rendererCaps The renderer capabilities which the shader should support.
@@ -139,17 +225,55 @@ public final class Technique {
         TechniqueDefLogic logic = def.getLogic();
         AssetManager assetManager = owner.getMaterialDef().getAssetManager();
 
-        dynamicDefines.clear();
-        dynamicDefines.setAll(paramDefines);
+        // Evaluate both stamps so each records the current overrides.
+        boolean worldChanged = worldOverridesStamp.update(worldOverrides);
+        boolean forcedChanged = forcedOverridesStamp.update(forcedOverrides);
+        boolean changed = worldChanged || forcedChanged
+                || dynamicDefinesVersion != paramDefinesVersion;
+
+        if (changed) {
+            dynamicDefines.clear();
+            dynamicDefines.setAll(paramDefines);
+
+            if (worldOverrides != null) {
+                applyOverrides(dynamicDefines, worldOverrides);
+            }
+            if (forcedOverrides != null) {
+                applyOverrides(dynamicDefines, forcedOverrides);
+            }
+            dynamicDefinesVersion = paramDefinesVersion;
+            cachedShader = null;
+        }
 
-        if (worldOverrides != null) {
-            applyOverrides(dynamicDefines, worldOverrides);
+        if (renderManager != null) {
+            renderManager.getRenderer().getStatistics().onDefineListUse(changed);
         }
-        if (forcedOverrides != null) {
-            applyOverrides(dynamicDefines, forcedOverrides);
+
+        if (cachedShader != null && cachedShaderCaps == rendererCaps
+                && cachedShaderLogic == logic) {
+            return cachedShader;
         }
 
-        return logic.makeCurrent(assetManager, renderManager, rendererCaps, lights, dynamicDefines);
+        Shader shader = logic.makeCurrent(assetManager, renderManager, rendererCaps, lights, dynamicDefines);
+        if (isLightIndependent(logic)) {
+            cachedShader = shader;
+            cachedShaderCaps = rendererCaps;
+            cachedShaderLogic = logic;
+        } else {
+            cachedShader = null;
+        }
+        return shader;
+    }
+
+    /**
+     * Logics that do not derive any defines from the lights (or the render
+     * manager), so the selected shader only depends on the dynamic defines
+     * and the renderer capabilities. Subclasses may override makeCurrent, so
+     * only these exact classes qualify.
+     */
+    private static boolean isLightIndependent(TechniqueDefLogic logic) {
+        return logic.getClass() == DefaultTechniqueDefLogic.class
+                || logic.getClass() == MultiPassLightingLogic.class;
     }
     
     /**
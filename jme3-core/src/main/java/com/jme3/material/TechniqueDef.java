@@ -114,7 +114,24 @@ public class TechniqueDef implements Savable {
          * shaders used balloons because of the variations in the number of
          * lights used by objects.
          */
-        StaticPass
+        StaticPass,
+
+        /**
+         * Enable deferred light rendering.
+         * <p>
+         * The geometry is rendered once, without any lights, writing its
+         * surface attributes into the G-buffer of a
+         * {@link com.jme3.post.DeferredShadingProcessor}. The processor then
+         * applies the lights in screen space, so the cost of a light only
+         * depends on the pixels it covers.
+         * <p>
+         * Such techniques are named {@link com.jme3.post.DeferredShadingProcessor#DEFERRED_TECHNIQUE}
+         * and only used for the G-buffer pass, so the geometries that are
+         * not in the opaque bucket keep their forward technique. The pass is
+         * enabled with
+         * {@link com.jme3.renderer.RenderManager#setPreferredLightMode(com.jme3.material.TechniqueDef.LightMode) }.
+         */
+        Deferred
     }
 
     public enum ShadowMode {
@@ -144,6 +161,8 @@ public class TechniqueDef implements Savable {
     private ArrayList<VarType> defineTypes;
     private HashMap<String, Integer> paramToDefineId;
     private final HashMap<DefineList, Shader> definesToShaderMap;
+    private final HashSet<DefineList> pendingDefines;
+    private final HashMap<DefineList, RuntimeException> failedDefines;
     
     private boolean usesNodes = false;
     private List<ShaderNode> shaderNodes;
@@ -184,6 +203,8 @@ public class TechniqueDef implements Savable {
         defineTypes = new ArrayList<VarType>();
         paramToDefineId = new HashMap<String, Integer>();
         definesToShaderMap = new HashMap<DefineList, Shader>();
+        pendingDefines = new HashSet<DefineList>();
+        failedDefines = new HashMap<DefineList, RuntimeException>();
     }
     
     /**
@@ -517,13 +538,107 @@ public class TechniqueDef implements Savable {
     }
     
     public Shader getShader(AssetManager assetManager, EnumSet<Caps> rendererCaps, DefineList defines) {
-          Shader shader = definesToShaderMap.get(defines);
-          if (shader == null) {
-              shader = loadShader(assetManager, rendererCaps, defines);
-              definesToShaderMap.put(defines.deepClone(), shader);
-          }
-          return shader;
-     }
+        Shader shader;
+        synchronized (definesToShaderMap) {
+            shader = definesToShaderMap.get(defines);
+        }
+        if (shader == null) {
+            shader = loadShader(assetManager, rendererCaps, defines);
+            synchronized (definesToShaderMap) {
+                Shader loaded = definesToShaderMap.get(defines);
+                if (loaded != null) {
+                    // generated by an asynchronous loader in the meantime
+                    return loaded;
+                }
+                definesToShaderMap.put(defines.deepClone(), shader);
+            }
+        }
+        return shader;
+    }
+
+    /**
+     * Returns the shader for the given defines if it is ready for rendering.
+     * <p>
+     * If the shader does not exist yet, its sources are generated on the
+     * executor of the given loader, and it is queued for compilation once
+     * they are. Techniques using shader nodes generate their sources on
+     * the calling thread, as the shader generator is not thread safe.
+     *
+     * @param assetManager The asset manager to load the shader sources with
+     * @param rendererCaps The renderer capabilities
+     * @param defines The defines of the shader permutation
+     * @param loader The asynchronous loader, or null to create and return
+     * the shader right away as in
+     * {@link #getShader(com.jme3.asset.AssetManager, java.util.EnumSet, com.jme3.shader.DefineList) }.
+     * @return The shader, or null if it is not compiled yet.
+     */
+    public Shader getShader(final AssetManager assetManager, final EnumSet<Caps> rendererCaps,
+                            DefineList defines, final AsyncShaderLoader loader) {
+        if (loader == null) {
+            return getShader(assetManager, rendererCaps, defines);
+        }
+
+        Shader shader;
+        synchronized (definesToShaderMap) {
+            RuntimeException failure = failedDefines.remove(defines);
+            if (failure != null) {
+                // report on the render thread, like a synchronous load would
+                throw failure;
+            }
+            shader = definesToShaderMap.get(defines);
+            if (shader == null) {
+                if (pendingDefines.contains(defines)) {
+                    return null;
+                }
+                if (!isUsingShaderNodes()) {
+                    final DefineList key = defines.deepClone();
+                    pendingDefines.add(key);
+                    loader.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            loadShaderAsync(assetManager, rendererCaps, key, loader);
+                        }
+                    });
+                    return null;
+                }
+            }
+        }
+
+        if (shader == null) {
+            shader = getShader(assetManager, rendererCaps, defines);
+        }
+        if (shader.isUpdateNeeded()) {
+            loader.queue(shader);
+            return null;
+        }
+        return shader;
+    }
+
+    private void loadShaderAsync(AssetManager assetManager, EnumSet<Caps> rendererCaps,
+                                 DefineList defines, AsyncShaderLoader loader) {
+        Shader shader = null;
+        RuntimeException failure = null;
+        try {
+            shader = loadShader(assetManager, rendererCaps, defines);
+        } catch (RuntimeException ex) {
+            failure = ex;
+        }
+
+        synchronized (definesToShaderMap) {
+            pendingDefines.remove(defines);
+            if (failure != null) {
+                failedDefines.put(defines, failure);
+                return;
+            }
+            Shader loaded = definesToShaderMap.get(defines);
+            if (loaded != null) {
+                shader = loaded;
+            } else {
+                definesToShaderMap.put(defines, shader);
+            }
+        }
+        loader.queue(shader);
+    }
     
     /**
      * Sets the shaders that this technique definition will use.
@@ -56,7 +56,8 @@ public class DefaultTechniqueDefLogic implements TechniqueDefLogic {
     @Override
     public Shader makeCurrent(AssetManager assetManager, RenderManager renderManager,
             EnumSet<Caps> rendererCaps, LightList lights, DefineList defines) {
-        return techniqueDef.getShader(assetManager, rendererCaps, defines);
+        return techniqueDef.getShader(assetManager, rendererCaps, defines,
+                renderManager != null ? renderManager.getAsyncShaderLoader() : null);
     }
 
     public static void renderMeshFromGeometry(Renderer renderer, Geometry geom) {
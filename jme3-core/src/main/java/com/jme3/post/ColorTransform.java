@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.post;
+
+/**
+ * Per pixel color transforms that the {@link FilterPostProcessor} can chain
+ * in a single full screen pass.
+ * <p>
+ * A filter that only transforms the color of each pixel of the scene texture
+ * returns its transform from {@link Filter#getColorTransform() } and fills
+ * the parameters with {@link Filter#getColorTransformParams(com.jme3.math.vector.Vector4f) }.
+ * Consecutive filters doing so are rendered with one generated shader
+ * instead of one pass each, see {@link FilterPostProcessor#setFilterFusion(boolean) }.
+ */
+public enum ColorTransform {
+
+    /**
+     * color = color * params
+     */
+    Multiply(1),
+    /**
+     * color.rgb = pow(color.rgb, params.x), params.x being the inverse of
+     * the gamma
+     */
+    Gamma(2),
+    /**
+     * Posterization with params.x colors per channel, a gamma of params.y and
+     * a strength of params.z
+     */
+    Posterize(3),
+    /**
+     * Filmic tone mapping with params.xyz as white point
+     */
+    FilmicToneMap(4);
+
+    private final int id;
+
+    private ColorTransform(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the value of the transform in the shader of
+     * Common/MatDefs/Post/ColorTransforms.j3md
+     */
+    public int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.post;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.light.Light;
+import com.jme3.light.LightList;
+import com.jme3.light.PointLight;
+import com.jme3.light.SpotLight;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState.BlendMode;
+import com.jme3.material.RenderState.FaceCullMode;
+import com.jme3.material.TechniqueDef;
+import com.jme3.math.matrix.Matrix4f;
+import com.jme3.math.vector.ColorRGBA;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Renderer;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Quad;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.Texture2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Processor that implements the {@link TechniqueDef.LightMode#Deferred
+ * deferred} light mode.
+ * <p>
+ * It is only active while the preferred light mode of the render manager is
+ * Deferred, see {@link RenderManager#setPreferredLightMode(com.jme3.material.TechniqueDef.LightMode) }.
+ * Otherwise the view port is rendered forward as if it was not attached.
+ * <p>
+ * The opaque queue is rendered into a G-buffer holding the diffuse color,
+ * the normal and the specular color of every pixel. The lights of the
+ * scenes attached to the view port are then applied in screen space:
+ * ambient lights in one full screen pass, directional lights and lights
+ * without a range in one full screen pass each, and point and spot lights by
+ * drawing a sphere covering their range, so a light only costs the pixels it
+ * can reach. Finally the depth of the G-buffer is copied into the output, so
+ * the sky, transparent and translucent buckets are rendered forward on top
+ * of the lit scene as usual.
+ * <p>
+ * Materials write the G-buffer if they provide a technique named
+ * {@link #DEFERRED_TECHNIQUE}, which is forced for the opaque bucket only.
+ * Opaque geometries whose material has no such technique are rendered
+ * forward after the lighting pass. Only the lights attached to the root of the scenes are considered. The
+ * view port must cover its whole output and clear its color buffer.
+ */
+public class DeferredShadingProcessor implements SceneProcessor {
+
+    /**
+     * Name of the technique writing the G-buffer, see
+     * {@link TechniqueDef.LightMode#Deferred}.
+     */
+    public static final String DEFERRED_TECHNIQUE = "Deferred";
+
+    /**
+     * Scale applied to the light volumes, since the sphere mesh is inscribed
+     * in the sphere of the light range.
+     */
+    private static final float VOLUME_SCALE = 1.1f;
+
+    private RenderManager renderManager;
+    private ViewPort viewPort;
+    private FrameBuffer gBuffer;
+    private Texture2D diffuseData;
+    private Texture2D normalData;
+    private Texture2D specularData;
+    private Texture2D depthData;
+
+    private final Material ambientMaterial;
+    private final Material lightMaterial;
+    private final Material volumeMaterial;
+    private final Geometry ambientQuad;
+    private final Mesh quadMesh = new Quad(1, 1);
+    private final Mesh volumeMesh = new Sphere(12, 16, 1f);
+    private final List<Geometry> lightQuads = new ArrayList<Geometry>();
+    private final List<Geometry> lightVolumes = new ArrayList<Geometry>();
+    private final Matrix4f viewProjectionInverse = new Matrix4f();
+
+    /**
+     * Creates a deferred shading processor.
+     *
+     * @param assetManager the asset manager used to load the lighting
+     * material.
+     */
+    public DeferredShadingProcessor(AssetManager assetManager) {
+        ambientMaterial = createLightingMaterial(assetManager);
+        ambientMaterial.getAdditionalRenderState().setFaceCullMode(FaceCullMode.Off);
+
+        lightMaterial = createLightingMaterial(assetManager);
+        lightMaterial.getAdditionalRenderState().setFaceCullMode(FaceCullMode.Off);
+        lightMaterial.getAdditionalRenderState().setBlendMode(BlendMode.Additive);
+
+        // Render the back faces, so that the volume still covers the pixels
+        // when the camera is inside of it.
+        volumeMaterial = createLightingMaterial(assetManager);
+        volumeMaterial.setBoolean("LightVolume", true);
+        volumeMaterial.getAdditionalRenderState().setFaceCullMode(FaceCullMode.Front);
+        volumeMaterial.getAdditionalRenderState().setBlendMode(BlendMode.Additive);
+
+        ambientQuad = new Geometry("DeferredAmbient", quadMesh);
+        ambientQuad.setMaterial(ambientMaterial);
+    }
+
+    private static Material createLightingMaterial(AssetManager assetManager) {
+        Material material = new Material(assetManager, "Common/MatDefs/Light/Deferred.j3md");
+        material.getAdditionalRenderState().setDepthTest(false);
+        material.getAdditionalRenderState().setDepthWrite(false);
+        return material;
+    }
+
+    @Override
+    public void initialize(RenderManager rm, ViewPort vp) {
+        Renderer renderer = rm.getRenderer();
+        if (!renderer.getCaps().contains(Caps.FrameBufferMRT)
+                || !renderer.getCaps().contains(Caps.FrameBufferBlit)) {
+            throw new UnsupportedOperationException("Deferred shading requires "
+                    + Caps.FrameBufferMRT + " and " + Caps.FrameBufferBlit);
+        }
+        renderManager = rm;
+        viewPort = vp;
+        reshape(vp, vp.getCamera().getWidth(), vp.getCamera().getHeight());
+    }
+
+    @Override
+    public void reshape(ViewPort vp, int w, int h) {
+        disposeGBuffer();
+
+        Format normalFormat = renderManager.getRenderer().getCaps().contains(Caps.FloatColorBuffer)
+                ? Format.RGBA16F : Format.RGBA8;
+        diffuseData = new Texture2D(w, h, Format.RGBA8);
+        normalData = new Texture2D(w, h, normalFormat);
+        specularData = new Texture2D(w, h, Format.RGBA8);
+        depthData = new Texture2D(w, h, Format.Depth);
+
+        gBuffer = new FrameBuffer(w, h, 1);
+        gBuffer.setMultiTarget(true);
+        gBuffer.addColorTexture(diffuseData);
+        gBuffer.addColorTexture(normalData);
+        gBuffer.addColorTexture(specularData);
+        gBuffer.setDepthTexture(depthData);
+
+        for (Material material : new Material[]{ambientMaterial, lightMaterial, volumeMaterial}) {
+            material.setTexture("DiffuseData", diffuseData);
+            material.setTexture("NormalData", normalData);
+            material.setTexture("SpecularData", specularData);
+            material.setTexture("DepthData", depthData);
+        }
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return viewPort != null;
+    }
+
+    @Override
+    public void preFrame(float tpf) {
+    }
+
+    @Override
+    public void postQueue(RenderQueue rq) {
+        if (renderManager.getPreferredLightMode() != TechniqueDef.LightMode.Deferred) {
+            return;
+        }
+        Renderer renderer = renderManager.getRenderer();
+        Camera cam = viewPort.getCamera();
+        FrameBuffer output = viewPort.getOutputFrameBuffer();
+
+        // geometry pass
+        renderer.setFrameBuffer(gBuffer);
+        renderer.setBackgroundColor(ColorRGBA.BlackNoAlpha);
+        renderer.clearBuffers(true, true, true);
+        String forcedTechnique = renderManager.getForcedTechnique();
+        renderManager.setForcedTechnique(DEFERRED_TECHNIQUE);
+        rq.renderQueue(Bucket.Opaque, renderManager, cam, false);
+        renderManager.setForcedTechnique(forcedTechnique);
+
+        // the remaining buckets are depth tested against the G-buffer
+        renderer.copyFrameBuffer(gBuffer, output, true);
+        renderer.setFrameBuffer(output);
+        if (viewPort.isClearColor()) {
+            renderer.setBackgroundColor(viewPort.getBackgroundColor());
+            renderer.clearBuffers(true, false, false);
+        }
+
+        // lighting pass
+        cam.getViewProjectionMatrix().invert(viewProjectionInverse);
+        ambientMaterial.setMatrix4("ViewProjectionMatrixInverse", viewProjectionInverse);
+        lightMaterial.setMatrix4("ViewProjectionMatrixInverse", viewProjectionInverse);
+        volumeMaterial.setMatrix4("ViewProjectionMatrixInverse", viewProjectionInverse);
+
+        LightList ambientLights = ambientQuad.getLocalLightList();
+        ambientLights.clear();
+        int numQuads = 0;
+        int numVolumes = 0;
+        List<Spatial> scenes = viewPort.getScenes();
+        for (int i = 0; i < scenes.size(); i++) {
+            LightList lights = scenes.get(i).getWorldLightList();
+            for (int j = 0; j < lights.size(); j++) {
+                Light light = lights.get(j);
+                if (!light.isEnabled()) {
+                    continue;
+                }
+                switch (light.getType()) {
+                    case Ambient:
+                        ambientLights.add(light);
+                        break;
+                    case Point:
+                        PointLight pl = (PointLight) light;
+                        if (pl.getRadius() > 0) {
+                            setupLightVolume(numVolumes++, light, pl.getPosition().x, pl.getPosition().y,
+                                    pl.getPosition().z, pl.getRadius());
+                        } else {
+                            setupLightQuad(numQuads++, light);
+                        }
+                        break;
+                    case Spot:
+                        SpotLight sl = (SpotLight) light;
+                        if (sl.getSpotRange() > 0) {
+                            setupLightVolume(numVolumes++, light, sl.getPosition().x, sl.getPosition().y,
+                                    sl.getPosition().z, sl.getSpotRange());
+                        } else {
+                            setupLightQuad(numQuads++, light);
+                        }
+                        break;
+                    case Directional:
+                        setupLightQuad(numQuads++, light);
+                        break;
+                    default:
+                        // light probes only apply to image based lighting
+                        break;
+                }
+            }
+        }
+
+        // The ambient pass does not blend, it initializes the pixels covered
+        // by the G-buffer that the light passes then add to.
+        renderGeometry(ambientQuad);
+        for (int i = 0; i < numQuads; i++) {
+            renderGeometry(lightQuads.get(i));
+        }
+        for (int i = 0; i < numVolumes; i++) {
+            renderGeometry(lightVolumes.get(i));
+        }
+
+        // forward pass for the opaque geometries that are not in the G-buffer
+        GeometryList opaque = rq.getList(Bucket.Opaque);
+        for (int i = 0; i < opaque.size(); i++) {
+            Geometry geom = opaque.get(i);
+            if (geom.getMaterial().getMaterialDef().getTechniqueDefs(DEFERRED_TECHNIQUE) == null) {
+                renderManager.renderGeometry(geom);
+            }
+        }
+        opaque.clear();
+
+        // release the lights of the passes that were not used this frame
+        for (int i = numQuads; i < lightQuads.size(); i++) {
+            lightQuads.get(i).getLocalLightList().clear();
+        }
+        for (int i = numVolumes; i < lightVolumes.size(); i++) {
+            lightVolumes.get(i).getLocalLightList().clear();
+        }
+    }
+
+    private void setupLightQuad(int index, Light light) {
+        if (index == lightQuads.size()) {
+            Geometry quad = new Geometry("DeferredLight", quadMesh);
+            quad.setMaterial(lightMaterial);
+            lightQuads.add(quad);
+        }
+        Geometry quad = lightQuads.get(index);
+        setLight(quad, light);
+    }
+
+    private void setupLightVolume(int index, Light light, float x, float y, float z, float range) {
+        if (index == lightVolumes.size()) {
+            Geometry volume = new Geometry("DeferredLightVolume", volumeMesh);
+            volume.setMaterial(volumeMaterial);
+            lightVolumes.add(volume);
+        }
+        Geometry volume = lightVolumes.get(index);
+        volume.setLocalTranslation(x, y, z);
+        volume.setLocalScale(range * VOLUME_SCALE);
+        setLight(volume, light);
+    }
+
+    private static void setLight(Geometry geometry, Light light) {
+        LightList lights = geometry.getLocalLightList();
+        lights.clear();
+        lights.add(light);
+    }
+
+    private void renderGeometry(Geometry geometry) {
+        // the local light lists were modified directly
+        geometry.forceRefresh(false, false, true);
+        geometry.updateGeometricState();
+        renderManager.renderGeometry(geometry);
+    }
+
+    @Override
+    public void postFrame(FrameBuffer out) {
+    }
+
+    @Override
+    public void cleanup() {
+        disposeGBuffer();
+        viewPort = null;
+    }
+
+    private void disposeGBuffer() {
+        if (gBuffer != null) {
+            gBuffer.dispose();
+            diffuseData.getImage().dispose();
+            normalData.getImage().dispose();
+            specularData.getImage().dispose();
+            depthData.getImage().dispose();
+            gBuffer = null;
+        }
+    }
+
+    /**
+     * Returns the G-buffer the opaque queue is rendered into.
+     *
+     * @return the G-buffer, or null if the processor is not initialized.
+     */
+    public FrameBuffer getGBuffer() {
+        return gBuffer;
+    }
+}
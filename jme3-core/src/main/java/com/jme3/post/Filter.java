@@ -34,6 +34,7 @@ package com.jme3.post;
 import com.jme3.asset.AssetManager;
 import com.jme3.export.*;
 import com.jme3.material.Material;
+import com.jme3.math.vector.Vector4f;
 import com.jme3.renderer.Caps;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.Renderer;
@@ -55,7 +56,9 @@ import java.util.List;
  * This material uses a shader that applies the desired effect to the scene texture.<br>
  * <br>
  * This class is abstract, any Filter must extend it.<br>
- * Any filter holds a frameBuffer and a texture<br>
+ * Any filter is rendered in a frameBuffer and a texture, pooled by the FilterPostProcessor<br>
+ * unless it uses its own: the frameBuffer and texture of the default pass are only allocated<br>
+ * when set, or when getRenderFrameBuffer or getRenderedTexture is called<br>
  * The getMaterial must return a Material that use a GLSL shader implementing the desired effect<br>
  *
  * @author Rémy Bouquet aka Nehon
@@ -69,6 +72,9 @@ public abstract class Filter implements Savable {
     protected Material material;
     protected boolean enabled = true;
     protected FilterPostProcessor processor;
+    private Renderer renderer;
+    private int width;
+    private int height;
 
     public Filter(String name) {
         this.name = name;
@@ -191,8 +197,12 @@ public abstract class Filter implements Savable {
         }
 
         public void cleanup(Renderer r) {
-            renderFrameBuffer.dispose();
-            renderedTexture.getImage().dispose();
+            if (renderFrameBuffer != null) {
+                renderFrameBuffer.dispose();
+            }
+            if (renderedTexture != null) {
+                renderedTexture.getImage().dispose();
+            }
             if(depthTexture!=null){
                 depthTexture.getImage().dispose();
             }  
@@ -227,7 +237,10 @@ public abstract class Filter implements Savable {
     /**
      *
      * initialize this filter
-     * use InitFilter for overriding filter initialization
+     * use InitFilter for overriding filter initialization<br>
+     * The default pass has no frame buffer until one is set or requested,
+     * the FilterPostProcessor renders the filter in a pooled render target
+     * until then.
      * @param manager the assetManager
      * @param renderManager the renderManager
      * @param vp the viewport
@@ -237,7 +250,9 @@ public abstract class Filter implements Savable {
     protected final void init(AssetManager manager, RenderManager renderManager, ViewPort vp, int w, int h) {
         //  cleanup(renderManager.getRenderer());
         defaultPass = new Pass();
-        defaultPass.init(renderManager.getRenderer(), w, h, getDefaultPassTextureFormat(), getDefaultPassDepthFormat());
+        renderer = renderManager.getRenderer();
+        width = w;
+        height = h;
         initFilter(manager, renderManager, vp, w, h);
     }
 
@@ -247,6 +262,7 @@ public abstract class Filter implements Savable {
      */
     protected final void cleanup(Renderer r) {   
         processor = null;
+        renderer = null;
         if (defaultPass != null) {
             defaultPass.cleanup(r);
         }
@@ -360,13 +376,30 @@ public abstract class Filter implements Savable {
     }
 
     /**
-     * returns the default pass frame buffer
+     * returns the default pass frame buffer, allocating it on the first call.
+     * From then on the filter is rendered in it instead of a pooled render target
      * @return
      */
     protected FrameBuffer getRenderFrameBuffer() {
+        initDefaultPass();
+        return defaultPass.renderFrameBuffer;
+    }
+
+    /**
+     * returns the default pass frame buffer without allocating it
+     * @return the frame buffer, or null if it was neither set nor requested
+     */
+    FrameBuffer getAllocatedRenderFrameBuffer() {
         return defaultPass.renderFrameBuffer;
     }
 
+    private void initDefaultPass() {
+        if (defaultPass.renderFrameBuffer == null && defaultPass.renderedTexture == null
+                && renderer != null) {
+            defaultPass.init(renderer, width, height, getDefaultPassTextureFormat(), getDefaultPassDepthFormat());
+        }
+    }
+
     /**
      * sets the default pas frame buffer
      * @param renderFrameBuffer
@@ -376,10 +409,12 @@ public abstract class Filter implements Savable {
     }
 
     /**
-     * returns the rendered texture of this filter
+     * returns the rendered texture of this filter, allocating the default pass
+     * on the first call like {@link #getRenderFrameBuffer() }
      * @return
      */
     protected Texture2D getRenderedTexture() {
+        initDefaultPass();
         return defaultPass.renderedTexture;
     }
 
@@ -422,6 +457,30 @@ public abstract class Filter implements Savable {
         return false;
     }
     
+    /**
+     * Override this method and return the transform applied by this filter if
+     * it only transforms the color of each pixel of the scene texture.
+     * Consecutive filters doing so can be rendered in a single pass, see
+     * {@link FilterPostProcessor#setFilterFusion(boolean) }. The material of
+     * the filter is not rendered in that case, but {@link #postFrame } and
+     * {@link #postFilter } are still called on every filter of the group, in
+     * order.
+     *
+     * @return the transform of this filter, or null if it does not apply one
+     */
+    protected ColorTransform getColorTransform() {
+        return null;
+    }
+
+    /**
+     * Override this method along with {@link #getColorTransform() } to give
+     * the parameters of the transform.
+     *
+     * @param store the parameters, see {@link ColorTransform}
+     */
+    protected void getColorTransformParams(Vector4f store) {
+    }
+
     /**
      * returns the list of the postRender passes
      * @return
@@ -34,8 +34,10 @@ package com.jme3.post;
 import com.jme3.asset.AssetManager;
 import com.jme3.export.*;
 import com.jme3.material.Material;
+import com.jme3.math.vector.Vector4f;
 import com.jme3.renderer.*;
 import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.shader.VarType;
 import com.jme3.texture.FrameBuffer;
 import com.jme3.texture.Image.Format;
 import com.jme3.texture.Texture;
@@ -51,11 +53,18 @@ import java.util.List;
 
 /**
  * A FilterPostProcessor is a processor that can apply several {@link Filter}s to a rendered scene<br>
- * It manages a list of filters that will be applied in the order in which they've been added to the list
+ * It manages a list of filters that will be applied in the order in which they've been added to the list<br>
+ * The output of each filter is only kept until the next filter has read it, so filters share render targets
+ * of the same size and format, and consecutive color transform filters are rendered in a single pass
  * @author Rémy Bouquet aka Nehon
  */
 public class FilterPostProcessor implements SceneProcessor, Savable {
 
+    private static final int MAX_FUSED_FILTERS = 8;
+    private static final String[] FUSED_STAGE_PARAMS = {
+        "Stage0", "Stage1", "Stage2", "Stage3", "Stage4", "Stage5", "Stage6", "Stage7"
+    };
+
     private RenderManager renderManager;
     private Renderer renderer;
     private ViewPort viewPort;
@@ -82,12 +91,18 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
     private boolean multiView = false;
 
     private Format fbFormat = Format.RGB111110F;
+
+    private final RenderTargetPool renderTargets = new RenderTargetPool();
+    private boolean filterFusion = true;
+    private final List<Material> fusedMaterials = new ArrayList<Material>();
+    private final Vector4f[] fusedStageParams = new Vector4f[MAX_FUSED_FILTERS];
     
     /**
      * Create a FilterProcessor 
      * @param assetManager the assetManager
      */
     public FilterPostProcessor(AssetManager assetManager) {
+        this();
         this.assetManager = assetManager;
     }
 
@@ -96,6 +111,9 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
      * This constructor is used for serialization only
      */
     public FilterPostProcessor() {
+        for (int i = 0; i < MAX_FUSED_FILTERS; i++) {
+            fusedStageParams[i] = new Vector4f();
+        }
     }
 
     /**
@@ -241,22 +259,59 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
     private void renderFilterChain(Renderer r, FrameBuffer sceneFb) {
         Texture2D tex = filterTexture;
         FrameBuffer buff = sceneFb;
+        //the pooled target holding tex, null for the scene texture
+        RenderTargetPool.RenderTarget target = null;
+        int fusedPasses = 0;
         boolean msDepth = depthTexture != null && depthTexture.getImage().getMultiSamples() > 1;
         for (int i = 0; i < filters.size(); i++) {
             Filter filter = filters.get(i);
             if (filter.isEnabled()) {
+                int fusedEnd = filterFusion ? getFusedFilterEnd(i) : i;
+                if (fusedEnd > i) {
+                    Material mat = getFusedMaterial(fusedPasses++);
+                    int stage = 0;
+                    for (int j = i; j <= fusedEnd; j++) {
+                        Filter fused = filters.get(j);
+                        if (fused.isEnabled()) {
+                            fused.postFrame(renderManager, viewPort, buff, sceneFb);
+                            mat.setInt(FUSED_STAGE_PARAMS[stage], fused.getColorTransform().getId());
+                            fused.getColorTransformParams(fusedStageParams[stage]);
+                            stage++;
+                        }
+                    }
+                    for (; stage < MAX_FUSED_FILTERS; stage++) {
+                        mat.clearParam(FUSED_STAGE_PARAMS[stage]);
+                    }
+                    mat.setParam("StageParams", VarType.Vector4Array, fusedStageParams);
+                    int fusedStart = i;
+                    filter = filters.get(fusedEnd);
+                    i = fusedEnd;
+
+                    setSceneTexture(mat, tex);
+                    RenderTargetPool.RenderTarget previous = target;
+                    buff = outputBuffer;
+                    if (i != lastFilterIndex) {
+                        target = renderTargets.acquire(width, height, filter.getDefaultPassTextureFormat(), filter.getDefaultPassDepthFormat());
+                        buff = target.getFrameBuffer();
+                        tex = target.getTexture();
+                    }
+                    renderProcessing(r, buff, mat);
+                    renderTargets.release(previous);
+                    for (int j = fusedStart; j <= fusedEnd; j++) {
+                        Filter fused = filters.get(j);
+                        if (fused.isEnabled()) {
+                            fused.postFilter(r, buff);
+                        }
+                    }
+                    continue;
+                }
+
                 if (filter.getPostRenderPasses() != null) {
                     for (Iterator<Filter.Pass> it1 = filter.getPostRenderPasses().iterator(); it1.hasNext();) {
                         Filter.Pass pass = it1.next();
                         pass.beforeRender();
                         if (pass.requiresSceneAsTexture()) {
-                            pass.getPassMaterial().setTexture("Texture", tex);
-                            if (tex.getImage().getMultiSamples() > 1) {
-                                pass.getPassMaterial().setInt("NumSamples", tex.getImage().getMultiSamples());
-                            } else {
-                                pass.getPassMaterial().clearParam("NumSamples");
-
-                            }
+                            setSceneTexture(pass.getPassMaterial(), tex);
                         }
                         if (pass.requiresDepthAsTexture()) {
                             pass.getPassMaterial().setTexture("DepthTexture", depthTexture);
@@ -278,35 +333,108 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
                 }
 
                 if (filter.isRequiresSceneTexture()) {
-                    mat.setTexture("Texture", tex);
-                    if (tex.getImage().getMultiSamples() > 1) {
-                        mat.setInt("NumSamples", tex.getImage().getMultiSamples());
-                    } else {
-                        mat.clearParam("NumSamples");
-                    }
+                    setSceneTexture(mat, tex);
                 }
                 
                 boolean wantsBilinear = filter.isRequiresBilinear();
+                Texture2D inputTex = tex;
                 if (wantsBilinear) {
-                    tex.setMagFilter(Texture.MagFilter.Bilinear);
-                    tex.setMinFilter(Texture.MinFilter.BilinearNoMipMaps);
+                    inputTex.setMagFilter(Texture.MagFilter.Bilinear);
+                    inputTex.setMinFilter(Texture.MinFilter.BilinearNoMipMaps);
                 }
 
+                //the output of the previous filter is free once this filter is rendered
+                RenderTargetPool.RenderTarget previous = target;
                 buff = outputBuffer;
                 if (i != lastFilterIndex) {
-                    buff = filter.getRenderFrameBuffer();
-                    tex = filter.getRenderedTexture();
-
+                    if (filter.getAllocatedRenderFrameBuffer() != null) {
+                        buff = filter.getAllocatedRenderFrameBuffer();
+                        tex = filter.getRenderedTexture();
+                        target = null;
+                    } else {
+                        target = renderTargets.acquire(width, height, filter.getDefaultPassTextureFormat(), filter.getDefaultPassDepthFormat());
+                        buff = target.getFrameBuffer();
+                        tex = target.getTexture();
+                    }
                 }
                 renderProcessing(r, buff, mat);
+                renderTargets.release(previous);
                 filter.postFilter(r, buff);
                 
                 if (wantsBilinear) {
-                    tex.setMagFilter(Texture.MagFilter.Nearest);
-                    tex.setMinFilter(Texture.MinFilter.NearestNoMipMaps);
+                    inputTex.setMagFilter(Texture.MagFilter.Nearest);
+                    inputTex.setMinFilter(Texture.MinFilter.NearestNoMipMaps);
                 }
             }
         }
+        renderTargets.release(target);
+    }
+
+    /**
+     * sets the scene texture of a material
+     * @param mat
+     * @param tex 
+     */
+    private void setSceneTexture(Material mat, Texture2D tex) {
+        mat.setTexture("Texture", tex);
+        if (tex.getImage().getMultiSamples() > 1) {
+            mat.setInt("NumSamples", tex.getImage().getMultiSamples());
+        } else {
+            mat.clearParam("NumSamples");
+        }
+    }
+
+    /**
+     * returns true if the filter can be rendered in a fused pass
+     * @param filter
+     * @return 
+     */
+    private boolean isFusable(Filter filter) {
+        return filter.getColorTransform() != null
+                && filter.getPostRenderPasses() == null
+                && filter.getAllocatedRenderFrameBuffer() == null
+                && filter.isRequiresSceneTexture()
+                && !filter.isRequiresDepthTexture()
+                && !filter.isRequiresBilinear();
+    }
+
+    /**
+     * returns the index of the last filter rendered in the same fused pass
+     * as the given enabled filter, or the index of the filter itself if it is
+     * not fused with the next ones
+     * @param start
+     * @return 
+     */
+    private int getFusedFilterEnd(int start) {
+        if (!isFusable(filters.get(start))) {
+            return start;
+        }
+        int end = start;
+        int count = 1;
+        for (int i = start + 1; i < filters.size() && count < MAX_FUSED_FILTERS; i++) {
+            Filter filter = filters.get(i);
+            if (!filter.isEnabled()) {
+                continue;
+            }
+            if (!isFusable(filter)) {
+                break;
+            }
+            end = i;
+            count++;
+        }
+        return end;
+    }
+
+    /**
+     * returns the material of the given fused pass of the chain
+     * @param index
+     * @return 
+     */
+    private Material getFusedMaterial(int index) {
+        while (fusedMaterials.size() <= index) {
+            fusedMaterials.add(new Material(assetManager, "Common/MatDefs/Post/ColorTransforms.j3md"));
+        }
+        return fusedMaterials.get(index);
     }
 
     public void postFrame(FrameBuffer out) {
@@ -412,6 +540,7 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
             if(renderFrameBufferMS != null){
                renderFrameBufferMS.dispose();
             }
+            renderTargets.clear();
             for (Filter filter : filters.getArray()) {
                 filter.cleanup(renderer);
             }
@@ -448,6 +577,9 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
         cameraInit = true;
         computeDepth = false;
 
+        //targets of the previous size are not used anymore
+        renderTargets.clear();
+
         if (renderFrameBuffer == null && renderFrameBufferMS == null) {
             outputBuffer = viewPort.getOutputFrameBuffer();
         }
@@ -524,15 +656,39 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
         this.fbFormat = fbFormat;
     }
 
+    /**
+     * Enables rendering consecutive filters that only transform the color of
+     * each pixel in a single pass, default is true.<br>
+     * Up to 8 such filters are chained in a generated shader, which saves
+     * writing and reading back a full screen texture per filter.
+     *
+     * @param filterFusion true to fuse filters
+     * @see Filter#getColorTransform()
+     */
+    public void setFilterFusion(boolean filterFusion) {
+        this.filterFusion = filterFusion;
+    }
+
+    /**
+     * returns true if consecutive color transform filters are rendered in a
+     * single pass
+     * @return filterFusion
+     */
+    public boolean isFilterFusion() {
+        return filterFusion;
+    }
+
     public void write(JmeExporter ex) throws IOException {
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(numSamples, "numSamples", 0);
+        oc.write(filterFusion, "filterFusion", true);
         oc.writeSavableArrayList(new ArrayList(filters), "filters", null);
     }
 
     public void read(JmeImporter im) throws IOException {
         InputCapsule ic = im.getCapsule(this);
         numSamples = ic.readInt("numSamples", 0);
+        filterFusion = ic.readBoolean("filterFusion", true);
         filters = new SafeArrayList<Filter>(Filter.class, ic.readSavableArrayList("filters", null));
         for (Filter filter : filters.getArray()) {
             filter.setProcessor(this);
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.post;
+
+import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.Texture2D;
+import java.util.ArrayList;
+
+/**
+ * Render targets shared by the filters of a {@link FilterPostProcessor}.
+ * <p>
+ * The output of a filter is only read by the next filter of the chain, so a
+ * target is acquired when a filter is rendered and released once the next
+ * filter has read it. Targets of the same size and formats are reused, so a
+ * chain needs two of them instead of one per filter.
+ */
+class RenderTargetPool {
+
+    /**
+     * A color texture and its framebuffer.
+     */
+    static final class RenderTarget {
+
+        private final int width;
+        private final int height;
+        private final Format format;
+        private final Format depthFormat;
+        private final FrameBuffer frameBuffer;
+        private final Texture2D texture;
+        private boolean inUse;
+
+        private RenderTarget(int width, int height, Format format, Format depthFormat) {
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.depthFormat = depthFormat;
+            frameBuffer = new FrameBuffer(width, height, 1);
+            texture = new Texture2D(width, height, format);
+            frameBuffer.setDepthBuffer(depthFormat);
+            frameBuffer.setColorTexture(texture);
+        }
+
+        FrameBuffer getFrameBuffer() {
+            return frameBuffer;
+        }
+
+        Texture2D getTexture() {
+            return texture;
+        }
+    }
+
+    private final ArrayList<RenderTarget> targets = new ArrayList<RenderTarget>();
+
+    /**
+     * Returns a target that is not in use, creating one if needed.
+     *
+     * @param width the width of the target
+     * @param height the height of the target
+     * @param format the format of the color texture
+     * @param depthFormat the format of the depth buffer
+     * @return the target, in use until {@link #release(RenderTarget) }
+     */
+    RenderTarget acquire(int width, int height, Format format, Format depthFormat) {
+        for (int i = 0; i < targets.size(); i++) {
+            RenderTarget target = targets.get(i);
+            if (!target.inUse && target.width == width && target.height == height
+                    && target.format == format && target.depthFormat == depthFormat) {
+                target.inUse = true;
+                return target;
+            }
+        }
+        RenderTarget target = new RenderTarget(width, height, format, depthFormat);
+        target.inUse = true;
+        targets.add(target);
+        return target;
+    }
+
+    /**
+     * Makes a target available to the next {@link #acquire }.
+     *
+     * @param target the target, may be null
+     */
+    void release(RenderTarget target) {
+        if (target != null) {
+            target.inUse = false;
+        }
+    }
+
+    /**
+     * Deletes all the targets.
+     */
+    void clear() {
+        for (int i = 0; i < targets.size(); i++) {
+            RenderTarget target = targets.get(i);
+            target.frameBuffer.dispose();
+            target.texture.getImage().dispose();
+        }
+        targets.clear();
+    }
+}
@@ -195,6 +195,10 @@ public class Camera implements Savable, Cloneable {
      * children.
      */
     private int planeState;
+    /**
+     * Incremented each time the view frame changes, see {@link #getFrameStamp() }.
+     */
+    private int frameStamp;
     protected int width;
     protected int height;
     protected boolean viewportChanged = true;
@@ -892,6 +896,18 @@ public class Camera implements Savable, Cloneable {
         return planeState;
     }
 
+    /**
+     * <code>getFrameStamp</code> returns a counter that changes every time
+     * the view frame of this camera (its location, orientation or frustum)
+     * is updated. Values computed from the camera frame can be cached for as
+     * long as the stamp stays the same.
+     *
+     * @return the current frame stamp.
+     */
+    public int getFrameStamp() {
+        return frameStamp;
+    }
+
     /**
      * <code>setPlaneState</code> sets the state to keep track of tested
      * planes for culling.
@@ -1235,6 +1251,8 @@ public class Camera implements Savable, Cloneable {
      * <code>onFrameChange</code> updates the view frame of the camera.
      */
     public void onFrameChange() {
+        frameStamp++;
+
         TempVars vars = TempVars.get();
         
         Vector3f left = getLeft(vars.vect1);
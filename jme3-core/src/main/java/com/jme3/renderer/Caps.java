@@ -354,7 +354,13 @@ public enum Caps {
     /**
      * GPU can provide and accept binary shaders.
      */
-    BinaryShader;
+    BinaryShader,
+
+    /**
+     * Supports immutable buffer storage that stays mapped while it is used
+     * for rendering (GL_ARB_buffer_storage).
+     */
+    BufferStorage;
 
     /**
      * Returns true if given the renderer capabilities, the texture
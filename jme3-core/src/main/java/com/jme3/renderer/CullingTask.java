@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.NullComparator;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Culls a range of a node's children against a camera and collects the
+ * visible geometries, used by {@link RenderManager} when a
+ * {@link RenderManager#setParallelCullingPool(java.util.concurrent.ForkJoinPool) 
+ * culling pool} is set.
+ * <p>
+ * Large ranges are split in two and culled concurrently, each task using
+ * its own copy of the camera since the frustum plane state is kept there.
+ * Results are merged back in child order, so the render queue ends up
+ * with the same content in the same order as the serial traversal.
+ * Control render callbacks are not run by the task, the spatials that
+ * need them are collected instead so that the caller can run them on
+ * the render thread.
+ *
+ * @see RenderManager#renderScene(com.jme3.scene.Spatial, com.jme3.renderer.ViewPort)
+ */
+final class CullingTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Keep splitting while fewer tasks than this are waiting to be stolen.
+     */
+    private static final int MAX_SURPLUS_TASKS = 3;
+
+    private static final int BUCKET_COUNT = Bucket.Inherit.ordinal();
+
+    private final Camera cam;
+    private final List<Spatial> spatials;
+    private final int from;
+    private final int to;
+    private final int planeState;
+
+    private final GeometryList[] buckets = new GeometryList[BUCKET_COUNT];
+    private final ArrayList<Spatial> controlSpatials = new ArrayList<Spatial>();
+
+    /**
+     * Creates a task culling <code>spatials[from, to)</code>.
+     *
+     * @param cam the camera to cull against, owned by this task.
+     * @param spatials the spatials to cull, siblings in the scene graph.
+     * @param from index of the first spatial to cull.
+     * @param to index after the last spatial to cull.
+     * @param planeState the camera plane state of the spatials' parent.
+     */
+    CullingTask(Camera cam, List<Spatial> spatials, int from, int to, int planeState) {
+        this.cam = cam;
+        this.spatials = spatials;
+        this.from = from;
+        this.to = to;
+        this.planeState = planeState;
+    }
+
+    private static boolean shouldSplit(int count) {
+        return count > 1 && getSurplusQueuedTaskCount() < MAX_SURPLUS_TASKS;
+    }
+
+    @Override
+    protected void compute() {
+        if (shouldSplit(to - from)) {
+            int middle = (from + to) >>> 1;
+            CullingTask left = new CullingTask(cam, spatials, from, middle, planeState);
+            CullingTask right = new CullingTask(cam.clone(), spatials, middle, to, planeState);
+            invokeAll(left, right);
+            merge(left);
+            merge(right);
+        } else {
+            cullRange(spatials, from, to, planeState);
+        }
+    }
+
+    private void cullRange(List<Spatial> list, int start, int end, int state) {
+        for (int i = start; i < end; i++) {
+            // Restoring cam state before proceeding children recursively
+            cam.setPlaneState(state);
+            cull(list.get(i));
+        }
+    }
+
+    private void cull(Spatial scene) {
+        if (!scene.checkCulling(cam)) {
+            return;
+        }
+
+        if (scene.getNumControls() > 0) {
+            controlSpatials.add(scene);
+        }
+        if (scene instanceof Node) {
+            List<Spatial> children = ((Node) scene).getChildren();
+            // Saving cam state for culling
+            int camState = cam.getPlaneState();
+            if (shouldSplit(children.size())) {
+                CullingTask sub = new CullingTask(cam, children, 0, children.size(), camState);
+                sub.compute();
+                merge(sub);
+            } else {
+                cullRange(children, 0, children.size(), camState);
+            }
+        } else if (scene instanceof Geometry) {
+            Geometry gm = (Geometry) scene;
+            if (gm.getMaterial() == null) {
+                throw new IllegalStateException("No material is set for Geometry: " + gm.getName());
+            }
+            getBucket(scene.getQueueBucket()).add(gm);
+        }
+    }
+
+    private GeometryList getBucket(Bucket bucket) {
+        GeometryList list = buckets[bucket.ordinal()];
+        if (list == null) {
+            list = new GeometryList(new NullComparator());
+            buckets[bucket.ordinal()] = list;
+        }
+        return list;
+    }
+
+    private void merge(CullingTask other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (other.buckets[i] != null) {
+                getBucket(Bucket.values()[i]).addAll(other.buckets[i]);
+            }
+        }
+        controlSpatials.addAll(other.controlSpatials);
+    }
+
+    /**
+     * Adds the visible geometries to the given queue.
+     */
+    void flushTo(RenderQueue queue) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (buckets[i] != null) {
+                queue.addToQueue(buckets[i], Bucket.values()[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the visible spatials that have controls, in traversal order.
+     */
+    List<Spatial> getControlSpatials() {
+        return controlSpatials;
+    }
+}
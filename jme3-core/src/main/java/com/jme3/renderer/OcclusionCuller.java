@@ -0,0 +1,767 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState;
+import com.jme3.material.RenderState.BlendMode;
+import com.jme3.material.Technique;
+import com.jme3.math.matrix.Matrix4f;
+import com.jme3.math.vector.Vector3f;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.NullComparator;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Removes geometries hidden behind large occluders from the queue of a
+ * {@link ViewPort}.
+ * <p>
+ * When set with {@link ViewPort#setOcclusionCuller(com.jme3.renderer.OcclusionCuller) },
+ * the {@link RenderManager} calls {@link #beginFrame(com.jme3.renderer.ViewPort) }
+ * before the scenes of the viewport are culled and queued, and
+ * {@link #cull(com.jme3.renderer.queue.RenderQueue) } once the queue is
+ * filled, before the scene processors and the queue are rendered.
+ * <p>
+ * The occluders are rasterized into a low resolution depth buffer, on the
+ * executor while the render thread traverses the scene. A hierarchy of
+ * maximum depths is built on top of it, and the screen rectangle of the
+ * world bound of every geometry in the opaque and transparent buckets is
+ * tested against it. Occluders are the geometries given to
+ * {@link #addOccluder(com.jme3.scene.Geometry) } and the opaque geometries
+ * that covered the largest part of the screen in the previous frame.
+ * Geometries with blending or an alpha discard threshold are never picked,
+ * as they may be seen through.
+ * <p>
+ * Occluders are sampled at texel centers, and the depth buffer is then
+ * eroded by one texel so that a texel only occludes when it is entirely
+ * covered by occluders, at its farthest depth.
+ * <p>
+ * Occluder meshes are read while the scene is traversed, so they should
+ * not be modified by controls during rendering. Only meshes in
+ * {@link Mesh.Mode#Triangles} mode with 3 float position components are
+ * used as occluders.
+ */
+public class OcclusionCuller {
+
+    private static final float NEAR_EPSILON = 1e-5f;
+
+    /**
+     * Keeps geometries from being occluded by their own surface, which lies
+     * on their bound for box shaped meshes.
+     */
+    private static final float DEPTH_BIAS = 1e-6f;
+
+    private final ExecutorService executor;
+    private final int width;
+    private final int height;
+    private final float[][] levels;
+    private final float[] erodeBuffer;
+    private final int[] levelWidths;
+    private final int[] levelHeights;
+
+    private final ArrayList<Geometry> occluders = new ArrayList<Geometry>();
+    private Geometry[] autoOccluders = new Geometry[0];
+    private float[] autoOccluderSizes = new float[0];
+    private int autoOccluderCount;
+    private int maxAutoOccluders = 16;
+    private float minOccluderScreenSize = 0.05f;
+    private int maxOccluderTriangles = 4096;
+
+    private final ArrayList<OccluderMesh> frameOccluders = new ArrayList<OccluderMesh>();
+    private int frameOccluderCount;
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Runnable rasterizeTask = new Runnable() {
+        @Override
+        public void run() {
+            rasterizeOccluders();
+        }
+    };
+    private Future<?> pendingTask;
+    private boolean rasterized;
+    private final GeometryList visible = new GeometryList(new NullComparator());
+    private float[] clipCoords = new float[4 * 64];
+    private final float[] clipPolygon = new float[4 * 4];
+    private final float[] rect = new float[5];
+    private int occludedCount;
+
+    /**
+     * A snapshot of an occluder, taken on the render thread.
+     */
+    private static final class OccluderMesh {
+
+        final Matrix4f worldViewProjection = new Matrix4f();
+        FloatBuffer positions;
+        IndexBuffer indices;
+        int vertexCount;
+        int indexCount;
+    }
+
+    /**
+     * Creates an occlusion culler.
+     *
+     * @param width The width of the depth buffer in pixels, 256 is usually
+     * enough
+     * @param height The height of the depth buffer in pixels
+     * @param executor The executor to rasterize the occluders on, or null
+     * to rasterize them on the render thread
+     */
+    public OcclusionCuller(int width, int height, ExecutorService executor) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.executor = executor;
+
+        int count = 1;
+        for (int w = width, h = height; w > 1 || h > 1; w = (w + 1) / 2, h = (h + 1) / 2) {
+            count++;
+        }
+        levels = new float[count][];
+        levelWidths = new int[count];
+        levelHeights = new int[count];
+        for (int i = 0, w = width, h = height; i < count; i++, w = (w + 1) / 2, h = (h + 1) / 2) {
+            levels[i] = new float[w * h];
+            levelWidths[i] = w;
+            levelHeights[i] = h;
+        }
+        erodeBuffer = new float[width * height];
+    }
+
+    /**
+     * @return The width of the depth buffer.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the depth buffer.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Flags a geometry as occluder. It is rasterized every frame in which
+     * it is attached to a scene of the viewport and its world bound is
+     * inside the camera frustum.
+     *
+     * @param geometry The occluder, usually large and static geometry like
+     * buildings or terrain.
+     */
+    public void addOccluder(Geometry geometry) {
+        if (!occluders.contains(geometry)) {
+            occluders.add(geometry);
+        }
+    }
+
+    /**
+     * Removes a geometry added with {@link #addOccluder(com.jme3.scene.Geometry) }.
+     *
+     * @param geometry The occluder to remove
+     */
+    public void removeOccluder(Geometry geometry) {
+        occluders.remove(geometry);
+    }
+
+    /**
+     * Sets how many geometries of the previous frame are picked as
+     * occluders in addition to the flagged ones.
+     *
+     * @param maxAutoOccluders The number of occluders, 0 to only use the
+     * flagged occluders. 16 by default.
+     */
+    public void setMaxAutoOccluders(int maxAutoOccluders) {
+        this.maxAutoOccluders = maxAutoOccluders;
+    }
+
+    /**
+     * @return The number of geometries picked as occluders.
+     * @see #setMaxAutoOccluders(int)
+     */
+    public int getMaxAutoOccluders() {
+        return maxAutoOccluders;
+    }
+
+    /**
+     * Sets the part of the screen area the bound of a geometry must cover
+     * for the geometry to be picked as occluder.
+     *
+     * @param minOccluderScreenSize The fraction of the screen area, 0.05 by
+     * default.
+     */
+    public void setMinOccluderScreenSize(float minOccluderScreenSize) {
+        this.minOccluderScreenSize = minOccluderScreenSize;
+    }
+
+    /**
+     * @return The part of the screen area an occluder must cover.
+     * @see #setMinOccluderScreenSize(float)
+     */
+    public float getMinOccluderScreenSize() {
+        return minOccluderScreenSize;
+    }
+
+    /**
+     * Sets the maximum number of triangles of an occluder mesh. Geometries
+     * with more triangles are not rasterized.
+     *
+     * @param maxOccluderTriangles The triangle count, 4096 by default.
+     */
+    public void setMaxOccluderTriangles(int maxOccluderTriangles) {
+        this.maxOccluderTriangles = maxOccluderTriangles;
+    }
+
+    /**
+     * @return The maximum number of triangles of an occluder mesh.
+     * @see #setMaxOccluderTriangles(int)
+     */
+    public int getMaxOccluderTriangles() {
+        return maxOccluderTriangles;
+    }
+
+    /**
+     * @return The number of geometries rasterized as occluders in the last
+     * frame.
+     */
+    public int getOccluderCount() {
+        return frameOccluderCount;
+    }
+
+    /**
+     * @return The number of geometries removed from the queue in the last
+     * frame.
+     */
+    public int getOccludedCount() {
+        return occludedCount;
+    }
+
+    /**
+     * Starts rasterizing the occluders as seen from the camera of the
+     * viewport. Called by the {@link RenderManager} before the scenes are
+     * queued.
+     *
+     * @param vp The viewport
+     */
+    public void beginFrame(ViewPort vp) {
+        rasterized = false;
+        if (!finishRasterizing()) {
+            // the previous task still writes the depth buffer
+            Arrays.fill(autoOccluders, 0, autoOccluderCount, null);
+            autoOccluderCount = 0;
+            frameOccluderCount = 0;
+            return;
+        }
+        Camera cam = vp.getCamera();
+        List<Spatial> scenes = vp.getScenes();
+        viewProjection.set(cam.getViewProjectionMatrix());
+
+        frameOccluderCount = 0;
+        for (int i = 0; i < occluders.size(); i++) {
+            Geometry geom = occluders.get(i);
+            if (!isAttached(geom, scenes)) {
+                continue;
+            }
+            cam.setPlaneState(0);
+            if (cam.contains(geom.getWorldBound()) != Camera.FrustumIntersect.Outside) {
+                addFrameOccluder(geom);
+            }
+        }
+        for (int i = 0; i < autoOccluderCount; i++) {
+            // picked in the previous frame, it may have been detached since
+            if (!occluders.contains(autoOccluders[i]) && isAttached(autoOccluders[i], scenes)) {
+                addFrameOccluder(autoOccluders[i]);
+            }
+            autoOccluders[i] = null;
+        }
+        autoOccluderCount = 0;
+        cam.setPlaneState(0);
+
+        if (executor != null) {
+            pendingTask = executor.submit(rasterizeTask);
+        } else {
+            rasterizeOccluders();
+        }
+        rasterized = true;
+    }
+
+    /**
+     * Removes the geometries hidden by the occluders from the opaque and
+     * transparent buckets of the queue. Called by the {@link RenderManager}
+     * once the queue is filled.
+     *
+     * @param queue The queue of the viewport
+     */
+    public void cull(RenderQueue queue) {
+        occludedCount = 0;
+        if (!rasterized || !finishRasterizing()) {
+            // no complete depth buffer for this frame, nothing is culled
+            return;
+        }
+        if (maxAutoOccluders > autoOccluders.length) {
+            autoOccluders = new Geometry[maxAutoOccluders];
+            autoOccluderSizes = new float[maxAutoOccluders];
+        }
+        cullList(queue.getList(Bucket.Opaque), true);
+        cullList(queue.getList(Bucket.Transparent), false);
+    }
+
+    /**
+     * Waits for the rasterization task of the frame.
+     *
+     * @return False if the thread was interrupted while waiting. The task
+     * may then still be writing the depth buffer, it is waited for again on
+     * the next call.
+     */
+    private boolean finishRasterizing() {
+        Future<?> task = pendingTask;
+        if (task == null) {
+            return true;
+        }
+        try {
+            task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ex) {
+            pendingTask = null;
+            throw new RuntimeException("Failed to rasterize occluders", ex.getCause());
+        }
+        pendingTask = null;
+        return true;
+    }
+
+    private static boolean isAttached(Geometry geom, List<Spatial> scenes) {
+        Spatial root = geom;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        return scenes.contains(root);
+    }
+
+    private void addFrameOccluder(Geometry geom) {
+        Mesh mesh = geom.getMesh();
+        if (mesh.getMode() != Mesh.Mode.Triangles || mesh.getInstanceCount() > 1
+                || mesh.getTriangleCount() > maxOccluderTriangles) {
+            return;
+        }
+        VertexBuffer pos = mesh.getBuffer(VertexBuffer.Type.Position);
+        if (pos == null || pos.getFormat() != VertexBuffer.Format.Float
+                || pos.getNumComponents() != 3) {
+            return;
+        }
+
+        if (frameOccluderCount == frameOccluders.size()) {
+            frameOccluders.add(new OccluderMesh());
+        }
+        OccluderMesh occluder = frameOccluders.get(frameOccluderCount++);
+        viewProjection.mult(geom.getWorldMatrix(), occluder.worldViewProjection);
+        occluder.positions = (FloatBuffer) pos.getData();
+        occluder.vertexCount = mesh.getVertexCount();
+        occluder.indices = mesh.getIndicesAsList();
+        occluder.indexCount = occluder.indices.size();
+    }
+
+    private void rasterizeOccluders() {
+        float[] depth = levels[0];
+        Arrays.fill(depth, 1f);
+
+        for (int i = 0; i < frameOccluderCount; i++) {
+            OccluderMesh occluder = frameOccluders.get(i);
+            rasterizeMesh(occluder);
+            occluder.positions = null;
+            occluder.indices = null;
+        }
+        erodeDepth();
+
+        // each texel of a level holds the farthest depth of the four
+        // texels it covers in the level below
+        for (int l = 1; l < levels.length; l++) {
+            float[] src = levels[l - 1];
+            float[] dst = levels[l];
+            int srcW = levelWidths[l - 1];
+            int srcH = levelHeights[l - 1];
+            int dstW = levelWidths[l];
+            int dstH = levelHeights[l];
+            for (int y = 0; y < dstH; y++) {
+                int y0 = y * 2;
+                int y1 = Math.min(y0 + 1, srcH - 1);
+                for (int x = 0; x < dstW; x++) {
+                    int x0 = x * 2;
+                    int x1 = Math.min(x0 + 1, srcW - 1);
+                    float d = Math.max(Math.max(src[y0 * srcW + x0], src[y0 * srcW + x1]),
+                            Math.max(src[y1 * srcW + x0], src[y1 * srcW + x1]));
+                    dst[y * dstW + x] = d;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces every texel of the depth buffer with the farthest depth of
+     * its 3x3 neighbourhood. Texels on the silhouette of the occluders are
+     * only partly covered, and the depth of a plane varies across a texel,
+     * so the texel centers alone would occlude too much.
+     */
+    private void erodeDepth() {
+        float[] depth = levels[0];
+        float[] tmp = erodeBuffer;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                float d = depth[row + x];
+                if (x > 0) {
+                    d = Math.max(d, depth[row + x - 1]);
+                }
+                if (x < width - 1) {
+                    d = Math.max(d, depth[row + x + 1]);
+                }
+                tmp[row + x] = d;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int above = y > 0 ? row - width : row;
+            int below = y < height - 1 ? row + width : row;
+            for (int x = 0; x < width; x++) {
+                depth[row + x] = Math.max(tmp[row + x],
+                        Math.max(tmp[above + x], tmp[below + x]));
+            }
+        }
+    }
+
+    private void rasterizeMesh(OccluderMesh occluder) {
+        Matrix4f m = occluder.worldViewProjection;
+        FloatBuffer positions = occluder.positions;
+        int vertexCount = occluder.vertexCount;
+
+        if (clipCoords.length < vertexCount * 4) {
+            clipCoords = new float[vertexCount * 4];
+        }
+        float[] clip = clipCoords;
+        for (int i = 0; i < vertexCount; i++) {
+            float x = positions.get(i * 3);
+            float y = positions.get(i * 3 + 1);
+            float z = positions.get(i * 3 + 2);
+            clip[i * 4] = m.m00 * x + m.m01 * y + m.m02 * z + m.m03;
+            clip[i * 4 + 1] = m.m10 * x + m.m11 * y + m.m12 * z + m.m13;
+            clip[i * 4 + 2] = m.m20 * x + m.m21 * y + m.m22 * z + m.m23;
+            clip[i * 4 + 3] = m.m30 * x + m.m31 * y + m.m32 * z + m.m33;
+        }
+
+        IndexBuffer indices = occluder.indices;
+        float[] poly = clipPolygon;
+        for (int i = 0; i + 2 < occluder.indexCount; i += 3) {
+            int a = indices.get(i) * 4;
+            int b = indices.get(i + 1) * 4;
+            int c = indices.get(i + 2) * 4;
+
+            // trivially reject triangles outside of a side plane
+            if ((clip[a] > clip[a + 3] && clip[b] > clip[b + 3] && clip[c] > clip[c + 3])
+                    || (clip[a] < -clip[a + 3] && clip[b] < -clip[b + 3] && clip[c] < -clip[c + 3])
+                    || (clip[a + 1] > clip[a + 3] && clip[b + 1] > clip[b + 3] && clip[c + 1] > clip[c + 3])
+                    || (clip[a + 1] < -clip[a + 3] && clip[b + 1] < -clip[b + 3] && clip[c + 1] < -clip[c + 3])) {
+                continue;
+            }
+
+            int count = clipNear(clip, a, b, c, poly);
+            if (count < 3) {
+                continue;
+            }
+            rasterizeTriangle(poly, 0, 4, 8);
+            if (count == 4) {
+                rasterizeTriangle(poly, 0, 8, 12);
+            }
+        }
+    }
+
+    /**
+     * Clips a triangle against the near plane, writes the resulting
+     * polygon (3 or 4 vertices) to poly.
+     *
+     * @return The number of vertices of the polygon.
+     */
+    private static int clipNear(float[] clip, int a, int b, int c, float[] poly) {
+        int count = 0;
+        for (int i = 0; i < 3; i++) {
+            int p = i == 0 ? a : (i == 1 ? b : c);
+            int q = i == 0 ? b : (i == 1 ? c : a);
+            float dp = clip[p + 2] + clip[p + 3];
+            float dq = clip[q + 2] + clip[q + 3];
+            if (dp >= 0) {
+                System.arraycopy(clip, p, poly, count * 4, 4);
+                count++;
+            }
+            if ((dp >= 0) != (dq >= 0)) {
+                float t = dp / (dp - dq);
+                for (int k = 0; k < 4; k++) {
+                    poly[count * 4 + k] = clip[p + k] + (clip[q + k] - clip[p + k]) * t;
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void rasterizeTriangle(float[] poly, int a, int b, int c) {
+        float wa = poly[a + 3], wb = poly[b + 3], wc = poly[c + 3];
+        if (wa < NEAR_EPSILON || wb < NEAR_EPSILON || wc < NEAR_EPSILON) {
+            return;
+        }
+        float ax = (poly[a] / wa * 0.5f + 0.5f) * width;
+        float ay = (poly[a + 1] / wa * 0.5f + 0.5f) * height;
+        float az = poly[a + 2] / wa;
+        float bx = (poly[b] / wb * 0.5f + 0.5f) * width;
+        float by = (poly[b + 1] / wb * 0.5f + 0.5f) * height;
+        float bz = poly[b + 2] / wb;
+        float cx = (poly[c] / wc * 0.5f + 0.5f) * width;
+        float cy = (poly[c + 1] / wc * 0.5f + 0.5f) * height;
+        float cz = poly[c + 2] / wc;
+
+        float area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        if (area == 0f) {
+            return;
+        }
+        if (area < 0f) {
+            // both windings are rasterized
+            float tx = bx, ty = by, tz = bz;
+            bx = cx; by = cy; bz = cz;
+            cx = tx; cy = ty; cz = tz;
+            area = -area;
+        }
+
+        int minX = Math.max(0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+        int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))));
+        int minY = Math.max(0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+        int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        // edge functions, evaluated at pixel centers
+        float invArea = 1f / area;
+        float e0dx = (by - cy), e0dy = (cx - bx);
+        float e1dx = (cy - ay), e1dy = (ax - cx);
+        float e2dx = (ay - by), e2dy = (bx - ax);
+        float px = minX + 0.5f, py = minY + 0.5f;
+        float e0row = (px - bx) * e0dx + (py - by) * e0dy;
+        float e1row = (px - cx) * e1dx + (py - cy) * e1dy;
+        float e2row = (px - ax) * e2dx + (py - ay) * e2dy;
+
+        float[] depth = levels[0];
+        for (int y = minY; y <= maxY; y++) {
+            float e0 = e0row, e1 = e1row, e2 = e2row;
+            int row = y * width;
+            for (int x = minX; x <= maxX; x++) {
+                if (e0 >= 0f && e1 >= 0f && e2 >= 0f) {
+                    float z = (e0 * az + e1 * bz + e2 * cz) * invArea;
+                    if (z < depth[row + x]) {
+                        depth[row + x] = z;
+                    }
+                }
+                e0 += e0dx;
+                e1 += e1dx;
+                e2 += e2dx;
+            }
+            e0row += e0dy;
+            e1row += e1dy;
+            e2row += e2dy;
+        }
+    }
+
+    private void cullList(GeometryList list, boolean pickOccluders) {
+        int size = list.size();
+        if (size == 0) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            Geometry geom = list.get(i);
+            float screenSize = projectBound(geom.getWorldBound());
+            if (screenSize >= 0 && isOccluded()) {
+                occludedCount++;
+                continue;
+            }
+            visible.add(geom);
+            if (pickOccluders) {
+                pickOccluder(geom, screenSize < 0 ? 1f : screenSize);
+            }
+        }
+        if (visible.size() != size) {
+            list.clear();
+            list.addAll(visible);
+        }
+        visible.clear();
+    }
+
+    /**
+     * Projects the corners of the bound to the depth buffer, stores the
+     * pixel rectangle and the nearest depth in {@link #rect}.
+     *
+     * @return The part of the screen covered by the bound, or -1 if the
+     * bound crosses the near plane or could not be projected.
+     */
+    private float projectBound(BoundingVolume bound) {
+        float ex, ey, ez;
+        if (bound instanceof BoundingBox) {
+            BoundingBox box = (BoundingBox) bound;
+            ex = box.getXExtent();
+            ey = box.getYExtent();
+            ez = box.getZExtent();
+        } else if (bound instanceof BoundingSphere) {
+            ex = ey = ez = ((BoundingSphere) bound).getRadius();
+        } else {
+            return -1;
+        }
+        Vector3f center = bound.getCenter();
+        Matrix4f m = viewProjection;
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        float minZ = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < 8; i++) {
+            float x = center.x + ((i & 1) == 0 ? -ex : ex);
+            float y = center.y + ((i & 2) == 0 ? -ey : ey);
+            float z = center.z + ((i & 4) == 0 ? -ez : ez);
+            float cz = m.m20 * x + m.m21 * y + m.m22 * z + m.m23;
+            float cw = m.m30 * x + m.m31 * y + m.m32 * z + m.m33;
+            if (cw < NEAR_EPSILON || cz < -cw) {
+                return -1;
+            }
+            float cx = m.m00 * x + m.m01 * y + m.m02 * z + m.m03;
+            float cy = m.m10 * x + m.m11 * y + m.m12 * z + m.m13;
+            float invW = 1f / cw;
+            minX = Math.min(minX, cx * invW);
+            maxX = Math.max(maxX, cx * invW);
+            minY = Math.min(minY, cy * invW);
+            maxY = Math.max(maxY, cy * invW);
+            minZ = Math.min(minZ, cz * invW);
+        }
+
+        rect[0] = (minX * 0.5f + 0.5f) * width;
+        rect[1] = (minY * 0.5f + 0.5f) * height;
+        rect[2] = (maxX * 0.5f + 0.5f) * width;
+        rect[3] = (maxY * 0.5f + 0.5f) * height;
+        rect[4] = minZ;
+        float sizeX = Math.min(maxX, 1f) - Math.max(minX, -1f);
+        float sizeY = Math.min(maxY, 1f) - Math.max(minY, -1f);
+        return sizeX > 0 && sizeY > 0 ? sizeX * sizeY * 0.25f : 0f;
+    }
+
+    private boolean isOccluded() {
+        int x0 = Math.max(0, (int) Math.floor(rect[0]));
+        int y0 = Math.max(0, (int) Math.floor(rect[1]));
+        int x1 = Math.min(width - 1, (int) Math.floor(rect[2]));
+        int y1 = Math.min(height - 1, (int) Math.floor(rect[3]));
+        if (x0 > x1 || y0 > y1) {
+            // off screen, left to frustum culling
+            return false;
+        }
+        float minZ = rect[4];
+
+        // use the first level where the rectangle covers at most 4x4 texels
+        int level = 0;
+        while (level < levels.length - 1 && ((x1 >> level) - (x0 >> level) > 3
+                || (y1 >> level) - (y0 >> level) > 3)) {
+            level++;
+        }
+        float[] depth = levels[level];
+        int levelWidth = levelWidths[level];
+        for (int y = y0 >> level; y <= (y1 >> level); y++) {
+            for (int x = x0 >> level; x <= (x1 >> level); x++) {
+                if (depth[y * levelWidth + x] >= minZ - DEPTH_BIAS) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void pickOccluder(Geometry geom, float screenSize) {
+        if (screenSize < minOccluderScreenSize || maxAutoOccluders == 0
+                || !isOpaque(geom.getMaterial())) {
+            return;
+        }
+        // keep the largest ones, sorted by decreasing size
+        int i = autoOccluderCount;
+        if (i == maxAutoOccluders) {
+            if (autoOccluderSizes[i - 1] >= screenSize) {
+                return;
+            }
+            i--;
+        } else {
+            autoOccluderCount++;
+        }
+        while (i > 0 && autoOccluderSizes[i - 1] < screenSize) {
+            autoOccluders[i] = autoOccluders[i - 1];
+            autoOccluderSizes[i] = autoOccluderSizes[i - 1];
+            i--;
+        }
+        autoOccluders[i] = geom;
+        autoOccluderSizes[i] = screenSize;
+    }
+
+    /**
+     * @return False if the material may let the geometry behind it show
+     * through: blended, flagged transparent or using alpha discard.
+     */
+    private static boolean isOpaque(Material mat) {
+        if (mat == null || mat.isTransparent() || mat.getParam("AlphaDiscardThreshold") != null
+                || mat.getAdditionalRenderState().getBlendMode() != BlendMode.Off) {
+            return false;
+        }
+        Technique technique = mat.getActiveTechnique();
+        if (technique != null) {
+            RenderState state = technique.getDef().getRenderState();
+            if (state != null && state.getBlendMode() != BlendMode.Off) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
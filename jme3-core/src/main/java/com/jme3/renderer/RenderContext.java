@@ -245,6 +245,14 @@ public class RenderContext {
      */
     public RenderState.TestFunction alphaFunc = RenderState.TestFunction.Greater;
 
+    /**
+     * The render state bundle that was applied last, or null if the state
+     * has been changed otherwise since.
+     *
+     * @see com.jme3.material.RenderStateCache
+     */
+    public RenderState renderState;
+
     public int initialDrawBuf;
     public int initialReadBuf;
     
@@ -254,6 +262,7 @@ public class RenderContext {
      * Reset the RenderContext to default GL state
      */
     public void reset(){
+        renderState = null;
         cullMode = RenderState.FaceCullMode.Off;
         depthTestEnabled = false;
         depthWriteEnabled = false;
@@ -34,6 +34,7 @@ package com.jme3.renderer;
 import com.jme3.light.DefaultLightFilter;
 import com.jme3.light.LightFilter;
 import com.jme3.light.LightList;
+import com.jme3.material.AsyncShaderLoader;
 import com.jme3.material.MatParamOverride;
 import com.jme3.material.Material;
 import com.jme3.material.MaterialDef;
@@ -46,11 +47,13 @@ import com.jme3.post.SceneProcessor;
 import com.jme3.profile.AppProfiler;
 import com.jme3.profile.AppStep;
 import com.jme3.profile.VpStep;
+import com.jme3.renderer.opengl.GLRenderer;
 import com.jme3.renderer.queue.GeometryList;
 import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.renderer.queue.RenderQueue.Bucket;
 import com.jme3.renderer.queue.RenderQueue.ShadowMode;
 import com.jme3.scene.*;
+import com.jme3.scene.instancing.InstancedBatch;
 import com.jme3.shader.Shader;
 import com.jme3.shader.UniformBinding;
 import com.jme3.shader.UniformBindingManager;
@@ -60,6 +63,7 @@ import com.jme3.util.SafeArrayList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 /**
@@ -93,6 +97,11 @@ public class RenderManager {
     private LightFilter lightFilter = new DefaultLightFilter();
     private TechniqueDef.LightMode preferredLightMode = TechniqueDef.LightMode.MultiPass;
     private int singlePassLightBatchSize = 1;
+    private ForkJoinPool parallelCullingPool = null;
+    private static final String USE_INSTANCING = "UseInstancing";
+    private boolean dynamicInstancing = false;
+    private InstancedBatch instancedBatch = null;
+    private AsyncShaderLoader asyncShaderLoader = null;
 
 
     /**
@@ -102,6 +111,9 @@ public class RenderManager {
      */
     public RenderManager(Renderer renderer) {
         this.renderer = renderer;
+        if (renderer instanceof GLRenderer) {
+            ((GLRenderer) renderer).setUniformBlocks(uniformBindingManager.getUniformBlocks());
+        }
     }
 
     /**
@@ -630,8 +642,77 @@ public class RenderManager {
      * @see #renderGeometry(com.jme3.scene.Geometry) 
      */
     public void renderGeometryList(GeometryList gl) {
-        for (int i = 0; i < gl.size(); i++) {
-            renderGeometry(gl.get(i));
+        if (!dynamicInstancing || forcedMaterial != null || forcedTechnique != null
+                || !renderer.getCaps().contains(Caps.MeshInstancing)) {
+            for (int i = 0; i < gl.size(); i++) {
+                renderGeometry(gl.get(i));
+            }
+            return;
+        }
+
+        int size = gl.size();
+        int start = 0;
+        while (start < size) {
+            Geometry first = gl.get(start);
+            int end = start + 1;
+            if (isInstanceable(first)) {
+                while (end < size && canInstanceWith(first, gl.get(end))) {
+                    end++;
+                }
+            }
+
+            if (end - start > 1) {
+                renderInstanced(gl, start, end);
+            } else {
+                renderGeometry(first);
+            }
+            start = end;
+        }
+    }
+
+    private boolean isInstanceable(Geometry geom) {
+        if (geom.getClass() != Geometry.class || geom.isIgnoreTransform()
+                || !geom.getWorldMatParamOverrides().isEmpty()) {
+            return false;
+        }
+        Material material = geom.getMaterial();
+        Technique technique = material.getActiveTechnique();
+        return technique != null
+                && technique.getDef().getShaderParamDefine(USE_INSTANCING) != null
+                && material.getParam(USE_INSTANCING) == null;
+    }
+
+    private static boolean canInstanceWith(Geometry first, Geometry geom) {
+        if (geom.getClass() != Geometry.class
+                || geom.getMesh() != first.getMesh()
+                || geom.getMaterial() != first.getMaterial()
+                || geom.getLodLevel() != first.getLodLevel()
+                || geom.isIgnoreTransform()
+                || !geom.getWorldMatParamOverrides().isEmpty()) {
+            return false;
+        }
+        LightList lights = geom.getWorldLightList();
+        LightList firstLights = first.getWorldLightList();
+        if (lights.size() != firstLights.size()) {
+            return false;
+        }
+        for (int i = 0; i < lights.size(); i++) {
+            if (lights.get(i) != firstLights.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void renderInstanced(GeometryList gl, int start, int end) {
+        if (instancedBatch == null) {
+            instancedBatch = new InstancedBatch();
+        }
+        instancedBatch.setGeometries(gl, start, end);
+        try {
+            renderGeometry(instancedBatch);
+        } finally {
+            instancedBatch.clear();
         }
     }
 
@@ -710,7 +791,24 @@ public class RenderManager {
         //reset of the camera plane state for proper culling (must be 0 for the first note of the scene to be rendered)
         vp.getCamera().setPlaneState(0);
         //rendering the scene
-        renderSubScene(scene, vp);
+        if (parallelCullingPool != null) {
+            renderSubSceneParallel(scene, vp);
+        } else {
+            renderSubScene(scene, vp);
+        }
+    }
+
+    private void renderSubSceneParallel(Spatial scene, ViewPort vp) {
+        CullingTask task = new CullingTask(vp.getCamera(),
+                Collections.singletonList(scene), 0, 1, 0);
+        parallelCullingPool.invoke(task);
+
+        // controls may touch the renderer, run them on this thread
+        List<Spatial> controlSpatials = task.getControlSpatials();
+        for (int i = 0; i < controlSpatials.size(); i++) {
+            controlSpatials.get(i).runControlRender(this, vp);
+        }
+        task.flushTo(vp.getQueue());
     }
     
     // recursively renders the scene
@@ -815,8 +913,99 @@ public class RenderManager {
         return this.lightFilter;
     }
 
+    /**
+     * Sets the pool used to cull the scene graph in
+     * {@link #renderScene(com.jme3.scene.Spatial, com.jme3.renderer.ViewPort) }.
+     * <p>
+     * When set, the scene traversal and the {@link Camera#contains(com.jme3.bounding.BoundingVolume) }
+     * checks are split across the threads of the pool, each worker filling
+     * its own lists that are merged into the viewport's queue in scene graph
+     * order. The queue content is the same as with serial culling.
+     * <p>
+     * {@link com.jme3.scene.control.Control#render(com.jme3.renderer.RenderManager, com.jme3.renderer.ViewPort) }
+     * is still called on the render thread for every visible spatial, in
+     * scene graph order, but only once its subtree was culled. Controls that
+     * change transforms or bounds while rendering (e.g. 
+     * {@link com.jme3.scene.control.BillboardControl}) are thus culled 
+     * with their state from before that call.
+     *
+     * @param pool the pool to use, or null to cull on the render thread
+     * (the default).
+     */
+    public void setParallelCullingPool(ForkJoinPool pool) {
+        this.parallelCullingPool = pool;
+    }
+
+    /**
+     * @return the pool used to cull the scene graph, or null if culling
+     * happens on the render thread.
+     * @see #setParallelCullingPool(java.util.concurrent.ForkJoinPool)
+     */
+    public ForkJoinPool getParallelCullingPool() {
+        return parallelCullingPool;
+    }
+
+    /**
+     * Enables dynamic instancing in
+     * {@link #renderGeometryList(com.jme3.renderer.queue.GeometryList) }.
+     * <p>
+     * When enabled, consecutive geometries of a sorted list that share the
+     * same mesh, material, LOD level and world lights are rendered with a
+     * single instanced draw call, with their world transforms packed into a
+     * per-instance buffer. This only applies to materials whose technique
+     * supports the <code>UseInstancing</code> parameter (and which do not
+     * set it themselves), requires {@link Caps#MeshInstancing} and is
+     * skipped while a forced material or technique is set. Everything else
+     * is rendered one geometry at a time as usual.
+     * <p>
+     * Light filtering is done once for the merged bounds of a batch, so a
+     * geometry may receive lights that would have been filtered out for it
+     * alone.
+     *
+     * @param dynamicInstancing true to batch compatible geometries, false
+     * to render every geometry separately (the default).
+     */
+    public void setDynamicInstancing(boolean dynamicInstancing) {
+        this.dynamicInstancing = dynamicInstancing;
+    }
+
+    /**
+     * @return true if dynamic instancing is enabled.
+     * @see #setDynamicInstancing(boolean)
+     */
+    public boolean isDynamicInstancing() {
+        return dynamicInstancing;
+    }
+
+    /**
+     * Sets the loader that creates missing shader permutations in the
+     * background instead of stalling the frame that first needs them.
+     *
+     * @param asyncShaderLoader The loader, or null to create shaders on the
+     * render thread when they are first needed (the default).
+     * @see AsyncShaderLoader
+     */
+    public void setAsyncShaderLoader(AsyncShaderLoader asyncShaderLoader) {
+        this.asyncShaderLoader = asyncShaderLoader;
+    }
+
+    /**
+     * @return The asynchronous shader loader, or null if none is set.
+     * @see #setAsyncShaderLoader(com.jme3.material.AsyncShaderLoader)
+     */
+    public AsyncShaderLoader getAsyncShaderLoader() {
+        return asyncShaderLoader;
+    }
+
     /**
      * Defines what light mode will be selected when a technique offers several light modes.
+     * <p>
+     * {@link TechniqueDef.LightMode#Deferred} enables the
+     * {@link com.jme3.post.DeferredShadingProcessor}s of the view ports: they
+     * render the opaque bucket with the deferred technique of its materials
+     * and light it in screen space. Without a processor the view port is
+     * rendered forward, with the last default technique supported by the
+     * renderer, as for every bucket that is not opaque.
      * @param preferredLightMode The light mode to use.
      */
     public void setPreferredLightMode(TechniqueDef.LightMode preferredLightMode) {
@@ -1090,12 +1279,21 @@ public class RenderManager {
                     vp.isClearStencil());
         }
 
+        OcclusionCuller occlusionCuller = vp.getOcclusionCuller();
+        if (occlusionCuller != null) {
+            occlusionCuller.beginFrame(vp);
+        }
+
         if (prof!=null) prof.vpStep(VpStep.RenderScene, vp, null);
         List<Spatial> scenes = vp.getScenes();
         for (int i = scenes.size() - 1; i >= 0; i--) {            
             renderScene(scenes.get(i), vp);
         }
 
+        if (occlusionCuller != null) {
+            occlusionCuller.cull(vp.getQueue());
+        }
+
         if (processors != null) {
             if (prof!=null) prof.vpStep(VpStep.PostQueue, vp, null);
             for (SceneProcessor proc : processors.getArray()) {
@@ -1140,6 +1338,10 @@ public class RenderManager {
 
         uniformBindingManager.newFrame();        
 
+        if (asyncShaderLoader != null) {
+            asyncShaderLoader.compileQueued(renderer);
+        }
+
         if (prof!=null) prof.appStep(AppStep.RenderPreviewViewPorts);        
         for (int i = 0; i < preViewPorts.size(); i++) {
             ViewPort vp = preViewPorts.get(i);
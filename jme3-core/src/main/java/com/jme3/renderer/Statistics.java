@@ -55,10 +55,18 @@ public class Statistics {
     protected int numTextureBinds;
     protected int numFboSwitches;
     protected int numUniformsSet;
+    protected int numRenderStateSwitches;
+    protected int numRenderStateSwitchesAvoided;
+    protected int numVertexArrayUpdates;
+    protected int numVertexArrayHits;
+    protected int numDefineListUpdates;
+    protected int numDefineListHits;
+    protected int numUniformsSkipped;
 
     protected int memoryShaders;
     protected int memoryFrameBuffers;
     protected int memoryTextures;
+    protected int memoryVertexBuffers;
 
     protected IntMap<Void> shadersUsed = new IntMap<Void>();
     protected IntMap<Void> texturesUsed = new IntMap<Void>();
@@ -90,7 +98,20 @@ public class Statistics {
 
                              "FrameBuffers (S)",
                              "FrameBuffers (F)",
-                             "FrameBuffers (M)" };
+                             "FrameBuffers (M)",
+
+                             "RenderStates (S)",
+                             "RenderStates (A)",
+
+                             "VertexArrays (U)",
+                             "VertexArrays (C)",
+
+                             "DefineLists (U)",
+                             "DefineLists (C)",
+
+                             "Uniforms (A)",
+
+                             "VertexBuffers (M)" };
 
     }
 
@@ -118,6 +139,19 @@ public class Statistics {
         data[10] = numFboSwitches;
         data[11] = fbosUsed.size();
         data[12] = memoryFrameBuffers;
+
+        data[13] = numRenderStateSwitches;
+        data[14] = numRenderStateSwitchesAvoided;
+
+        data[15] = numVertexArrayUpdates;
+        data[16] = numVertexArrayHits;
+
+        data[17] = numDefineListUpdates;
+        data[18] = numDefineListHits;
+
+        data[19] = numUniformsSkipped;
+
+        data[20] = memoryVertexBuffers;
     }
 
     /**
@@ -164,13 +198,77 @@ public class Statistics {
             numShaderSwitches++;
     }
 
+    /**
+     * Called by the Renderer when a render state has been applied.
+     * 
+     * @param wasSwitched If true, the render state differed from the
+     * one applied before and the GL state had to be updated, otherwise the
+     * state change was avoided
+     */
+    public void onRenderStateUse(boolean wasSwitched){
+        if( !enabled )
+            return;
+
+        if (wasSwitched)
+            numRenderStateSwitches++;
+        else
+            numRenderStateSwitchesAvoided++;
+    }
+
+    /**
+     * Called by the Renderer when a mesh was drawn with a vertex array object.
+     * 
+     * @param wasUpdated If true, the attribute bindings of the vertex array
+     * had to be specified again, otherwise the cached vertex array was bound
+     * as is
+     */
+    public void onVertexArrayUse(boolean wasUpdated){
+        if( !enabled )
+            return;
+
+        if (wasUpdated)
+            numVertexArrayUpdates++;
+        else
+            numVertexArrayHits++;
+    }
+
+    /**
+     * Called by a technique when it selected its shader.
+     *
+     * @param wasUpdated If true, the dynamic defines had to be recomputed,
+     * otherwise the cached defines were reused.
+     */
+    public void onDefineListUse(boolean wasUpdated){
+        if( !enabled )
+            return;
+
+        if (wasUpdated)
+            numDefineListUpdates++;
+        else
+            numDefineListHits++;
+    }
+
     /**
      * Called by the Renderer when a uniform was set.
      */
     public void onUniformSet(){
+        onUniformSet(true);
+    }
+
+    /**
+     * Called by the Renderer when a uniform was set.
+     *
+     * @param wasUploaded If true, the value was uploaded, otherwise it was
+     * identical to the last uploaded value and the upload was avoided
+     */
+    public void onUniformSet(boolean wasUploaded){
         if( !enabled )
             return;
-        numUniformsSet ++;
+
+        if (wasUploaded)
+            numUniformsSet++;
+        else
+            numUniformsSkipped++;
     }
 
     /**
@@ -228,6 +326,13 @@ public class Statistics {
         numTextureBinds = 0;
         numFboSwitches = 0;
         numUniformsSet = 0;
+        numRenderStateSwitches = 0;
+        numRenderStateSwitchesAvoided = 0;
+        numVertexArrayUpdates = 0;
+        numVertexArrayHits = 0;
+        numDefineListUpdates = 0;
+        numDefineListHits = 0;
+        numUniformsSkipped = 0;
         
         lastShader = -1;
     }
@@ -259,6 +364,15 @@ public class Statistics {
         memoryFrameBuffers ++;
     }
 
+    /**
+     * Called by the Renderer when it creates a new vertex buffer
+     */
+    public void onNewVertexBuffer(){
+        if( !enabled )
+            return;
+        memoryVertexBuffers ++;
+    }
+
     /**
      * Called by the Renderer when it deletes a shader
      */
@@ -286,6 +400,15 @@ public class Statistics {
         memoryFrameBuffers --;
     }
 
+    /**
+     * Called by the Renderer when it deletes a vertex buffer
+     */
+    public void onDeleteVertexBuffer(){
+        if( !enabled )
+            return;
+        memoryVertexBuffers --;
+    }
+
     /**
      * Called when video memory is cleared.
      */
@@ -293,6 +416,7 @@ public class Statistics {
         memoryFrameBuffers = 0;
         memoryShaders = 0;
         memoryTextures = 0;
+        memoryVertexBuffers = 0;
     }
 
     public void setEnabled( boolean f ) {
@@ -75,6 +75,7 @@ public class ViewPort {
     protected final ColorRGBA backColor = new ColorRGBA(0,0,0,0);
     protected boolean clearDepth = false, clearColor = false, clearStencil = false;
     private boolean enabled = true;
+    private OcclusionCuller occlusionCuller;
 
     /**
      * Create a new viewport. User code should generally use these methods instead:<br>
@@ -391,4 +392,25 @@ public class ViewPort {
         return enabled;
     }
 
+    /**
+     * Sets the occlusion culler used to remove hidden geometries from the
+     * queue of this viewport once the scenes are queued.
+     * <p>
+     * By default no occlusion culling is done, geometries are only culled
+     * against the camera frustum.
+     *
+     * @param occlusionCuller The culler, or null to disable occlusion culling
+     */
+    public void setOcclusionCuller(OcclusionCuller occlusionCuller) {
+        this.occlusionCuller = occlusionCuller;
+    }
+
+    /**
+     * @return The occlusion culler of this viewport, or null.
+     * @see #setOcclusionCuller(com.jme3.renderer.OcclusionCuller)
+     */
+    public OcclusionCuller getOcclusionCuller() {
+        return occlusionCuller;
+    }
+
 }
@@ -82,11 +82,17 @@ public interface GL3 extends GL2 {
     public static final int GL_RG_INTEGER = 33320;
     public static final int GL_RGB_INTEGER = 36248;
     public static final int GL_RGBA_INTEGER = 36249;
+    public static final int GL_UNIFORM_BUFFER = 0x8A11;
+    public static final int GL_INVALID_INDEX = 0xFFFFFFFF;
     
+    public void glBindBufferBase(int target, int index, int buffer); /// GL3+
     public void glBindFragDataLocation(int param1, int param2, String param3); /// GL3+
     public void glBindVertexArray(int param1); /// GL3+
     public void glDeleteVertexArrays(IntBuffer arrays); /// GL3+
+    public void glFramebufferTexture(int target, int attachment, int texture, int level); /// GL3.2+
     public void glFramebufferTextureLayer(int param1, int param2, int param3, int param4, int param5); /// GL3+
     public void glGenVertexArrays(IntBuffer param1); /// GL3+
     public String glGetString(int param1, int param2); /// GL3+
+    public int glGetUniformBlockIndex(int program, String uniformBlockName); /// GL3.1+
+    public void glUniformBlockBinding(int program, int uniformBlockIndex, int uniformBlockBinding); /// GL3.1+
 }
@@ -31,7 +31,7 @@
  */
 package com.jme3.renderer.opengl;
 
-import java.nio.IntBuffer;
+import java.nio.ByteBuffer;
 
 /**
  * GL functions only available on vanilla desktop OpenGL 4.0.
@@ -42,5 +42,11 @@ public interface GL4 extends GL3 {
     public static final int GL_TESS_CONTROL_SHADER=0x8E88;
     public static final int GL_TESS_EVALUATION_SHADER=0x8E87;
     public static final int GL_PATCHES=0xE;
+    public static final int GL_MAP_WRITE_BIT = 0x0002;
+    public static final int GL_MAP_PERSISTENT_BIT = 0x0040;
+    public static final int GL_MAP_COHERENT_BIT = 0x0080;
+
+    public void glBufferStorage(int target, long size, int flags); /// GL4.4+
+    public ByteBuffer glMapBufferRange(int target, long offset, long length, int access); /// GL4.4+
     public void glPatchParameter(int count);
 }
@@ -61,6 +61,11 @@ public class GLDebugDesktop extends GLDebugES implements GL2, GL3, GL4 {
         checkError();
     }
 
+    public void glBindBufferBase(int target, int index, int buffer) {
+        gl3.glBindBufferBase(target, index, buffer);
+        checkError();
+    }
+
     public void glBindFragDataLocation(int param1, int param2, String param3) {
         gl3.glBindFragDataLocation(param1, param2, param3);
         checkError();
@@ -83,18 +88,46 @@ public class GLDebugDesktop extends GLDebugES implements GL2, GL3, GL4 {
         return result;
     }
 
+    public int glGetUniformBlockIndex(int program, String uniformBlockName) {
+        int result = gl3.glGetUniformBlockIndex(program, uniformBlockName);
+        checkError();
+        return result;
+    }
+
+    public void glUniformBlockBinding(int program, int uniformBlockIndex, int uniformBlockBinding) {
+        gl3.glUniformBlockBinding(program, uniformBlockIndex, uniformBlockBinding);
+        checkError();
+    }
+
     @Override
     public void glDeleteVertexArrays(IntBuffer arrays) {
         gl3.glDeleteVertexArrays(arrays);
         checkError();
     }
 
+    public void glBufferStorage(int target, long size, int flags) {
+        gl4.glBufferStorage(target, size, flags);
+        checkError();
+    }
+
+    public ByteBuffer glMapBufferRange(int target, long offset, long length, int access) {
+        ByteBuffer result = gl4.glMapBufferRange(target, offset, length, access);
+        checkError();
+        return result;
+    }
+
     @Override
     public void glPatchParameter(int count) {
         gl4.glPatchParameter(count);
         checkError();
     }
 
+    @Override
+    public void glFramebufferTexture(int target, int attachment, int texture, int level) {
+        gl3.glFramebufferTexture(target, attachment, texture, level);
+        checkError();
+    }
+
     @Override
     public void glFramebufferTextureLayer(int param1, int param2, int param3, int param4, int param5) {
         gl3.glFramebufferTextureLayer(param1, param2, param3, param4, param5);
@@ -567,6 +567,21 @@ public class GLDebugES extends GLDebug implements GL, GLFbo, GLExt {
         return sync;
     }
 
+    public void glGetProgramBinary(int program, IntBuffer length, IntBuffer binaryFormat, ByteBuffer binary) {
+        glext.glGetProgramBinary(program, length, binaryFormat, binary);
+        checkError();
+    }
+
+    public void glProgramBinary(int program, int binaryFormat, ByteBuffer binary) {
+        glext.glProgramBinary(program, binaryFormat, binary);
+        checkError();
+    }
+
+    public void glProgramParameteri(int program, int pname, int value) {
+        glext.glProgramParameteri(program, pname, value);
+        checkError();
+    }
+
     public void glBlendEquationSeparate(int colorMode, int alphaMode) {
         gl.glBlendEquationSeparate(colorMode, alphaMode);
         checkError();
@@ -31,6 +31,7 @@
  */
 package com.jme3.renderer.opengl;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
@@ -73,6 +74,8 @@ public interface GLExt {
         public static final int GL_NUM_PROGRAM_BINARY_FORMATS = 0x87FE;
         public static final int GL_PIXEL_PACK_BUFFER_ARB = 0x88EB;
         public static final int GL_PIXEL_UNPACK_BUFFER_ARB = 0x88EC;
+        public static final int GL_PROGRAM_BINARY_LENGTH = 0x8741;
+        public static final int GL_PROGRAM_BINARY_RETRIEVABLE_HINT = 0x8257;
 	public static final int GL_R11F_G11F_B10F_EXT = 0x8C3A;
         public static final int GL_RGBA8 = 0x8058;
 	public static final int GL_RGB16F_ARB = 0x881B;
@@ -110,6 +113,9 @@ public interface GLExt {
 	public void glDrawElementsInstancedARB(int mode, int indices_count, int type, long indices_buffer_offset, int primcount);
         public Object glFenceSync(int condition, int flags);
 	public void glGetMultisample(int pname, int index, FloatBuffer val);
+        public void glGetProgramBinary(int program, IntBuffer length, IntBuffer binaryFormat, ByteBuffer binary);
+        public void glProgramBinary(int program, int binaryFormat, ByteBuffer binary);
+        public void glProgramParameteri(int program, int pname, int value);
 	public void glTexImage2DMultisample(int target, int samples, int internalformat, int width, int height, boolean fixedsamplelocations);
 	public void glVertexAttribDivisorARB(int index, int divisor);
 }
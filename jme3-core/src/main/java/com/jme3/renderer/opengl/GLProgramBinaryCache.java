@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.shader.Shader;
+import com.jme3.shader.ShaderSource;
+import com.jme3.util.BufferUtils;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores linked shader programs on disk, so that they can be loaded with
+ * <code>glProgramBinary</code> instead of being compiled again the next
+ * time the application starts.
+ * <p>
+ * Programs are keyed by a hash of their shader sources and of the
+ * renderer they were linked with, a driver update therefore simply misses
+ * the cache. Binaries that the driver rejects anyway are deleted and the
+ * program is compiled from source.
+ *
+ * @see GLRenderer#setProgramBinaryCache(com.jme3.renderer.opengl.GLProgramBinaryCache)
+ */
+public final class GLProgramBinaryCache {
+
+    private static final Logger logger = Logger.getLogger(GLProgramBinaryCache.class.getName());
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String EXTENSION = ".bin";
+
+    private final File directory;
+
+    /**
+     * Creates a cache that stores program binaries in the given directory.
+     * The directory is created when the first binary is stored.
+     *
+     * @param directory The cache directory
+     */
+    public GLProgramBinaryCache(File directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * @return The directory the program binaries are stored in.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Computes the cache key of a shader.
+     *
+     * @param shader The shader
+     * @param rendererInfo Everything about the renderer that affects the
+     * compiled program, such as the driver version and capabilities.
+     * @return The cache key
+     */
+    public String getKey(Shader shader, String rendererInfo) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new UnsupportedOperationException("SHA-1 is not supported", ex);
+        }
+        update(digest, rendererInfo);
+        for (ShaderSource source : shader.getSources()) {
+            update(digest, source.getType().name());
+            update(digest, source.getLanguage());
+            update(digest, source.getDefines());
+            update(digest, source.getSource());
+        }
+
+        StringBuilder sb = new StringBuilder(40);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(UTF8));
+        }
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Loads a program binary.
+     *
+     * @param key The cache key
+     * @return A direct buffer holding the binary format as an int followed
+     * by the binary, or null if the program is not cached.
+     */
+    public ByteBuffer load(String key) {
+        File file = new File(directory, key + EXTENSION);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        byte[] data = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(data);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot read program binary " + file, ex);
+            return null;
+        }
+        ByteBuffer buffer = BufferUtils.createByteBuffer(data.length);
+        buffer.put(data).flip();
+        // the format is written by DataOutputStream
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Stores a program binary.
+     *
+     * @param key The cache key
+     * @param format The binary format returned by the driver
+     * @param binary The binary, from its position to its limit
+     */
+    public void store(String key, int format, ByteBuffer binary) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            logger.log(Level.WARNING, "Cannot create shader cache directory {0}", directory);
+            return;
+        }
+
+        File file = new File(directory, key + EXTENSION);
+        byte[] data = new byte[binary.remaining()];
+        binary.duplicate().get(data);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(format);
+            out.write(data);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot write program binary " + file, ex);
+            file.delete();
+        }
+    }
+
+    /**
+     * Removes a program binary, e.g. because the driver rejected it.
+     *
+     * @param key The cache key
+     */
+    public void remove(String key) {
+        File file = new File(directory, key + EXTENSION);
+        if (file.isFile() && !file.delete()) {
+            logger.log(Level.WARNING, "Cannot delete program binary {0}", file);
+        }
+    }
+}
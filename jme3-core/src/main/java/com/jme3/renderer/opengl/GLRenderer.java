@@ -31,7 +31,11 @@
  */
 package com.jme3.renderer.opengl;
 
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
@@ -46,6 +50,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.jme3.material.RenderState;
+import com.jme3.material.RenderStateCache;
 import com.jme3.material.RenderState.BlendFunc;
 import com.jme3.material.RenderState.StencilOperation;
 import com.jme3.material.RenderState.TestFunction;
@@ -74,6 +79,7 @@ import com.jme3.shader.Shader;
 import com.jme3.shader.ShaderSource;
 import com.jme3.shader.ShaderType;
 import com.jme3.shader.Uniform;
+import com.jme3.shader.UniformBlock;
 import com.jme3.texture.FrameBuffer;
 import com.jme3.texture.FrameBuffer.RenderBuffer;
 import com.jme3.texture.Image;
@@ -82,14 +88,20 @@ import com.jme3.texture.Texture.ShadowCompareMode;
 import com.jme3.texture.Texture.WrapAxis;
 import com.jme3.texture.image.LastTextureState;
 import com.jme3.util.BufferUtils;
+import com.jme3.util.IntMap;
 import com.jme3.util.ListMap;
 import com.jme3.util.MipMapGenerator;
+import com.jme3.util.NativeObject;
 import com.jme3.util.NativeObjectManager;
 
 public final class GLRenderer implements Renderer {
 
     private static final Logger logger = Logger.getLogger(GLRenderer.class.getName());
     private static final boolean VALIDATE_SHADER = false;
+    private static final int MAX_VERTEX_ARRAYS_PER_MESH = 4;
+    private static final int STREAM_BUFFER_REGIONS = 3;
+    private static final int STREAM_BUFFER_ALIGNMENT = 256;
+    private static final long STREAM_BUFFER_TIMEOUT = 1000000000L;
     private static final Pattern GLVERSION_PATTERN = Pattern.compile(".*?(\\d+)\\.(\\d+).*");
 
     private final ByteBuffer nameBuf = BufferUtils.createByteBuffer(250);
@@ -98,6 +110,7 @@ public final class GLRenderer implements Renderer {
     private final IntBuffer intBuf16 = BufferUtils.createIntBuffer(16);
     private final FloatBuffer floatBuf16 = BufferUtils.createFloatBuffer(16);
     private final RenderContext context = new RenderContext();
+    private final RenderStateCache renderStateCache = new RenderStateCache();
     private final NativeObjectManager objManager = new NativeObjectManager();
     private final EnumSet<Caps> caps = EnumSet.noneOf(Caps.class);
     private final EnumMap<Limits, Integer> limits = new EnumMap<Limits, Integer>(Limits.class);
@@ -109,6 +122,14 @@ public final class GLRenderer implements Renderer {
     private int defaultAnisotropicFilter = 1;
     private boolean linearizeSrgbImages;
     private HashSet<String> extensions;
+    private UniformBlock[] uniformBlocks;
+    private boolean vertexArrayCache;
+    private int defaultVertexArray;
+    private int defaultElementArrayVBO;
+    private GLVertexArray boundVertexArrayObject;
+    private final IntMap<GLStreamBuffer> streamBuffers = new IntMap<GLStreamBuffer>();
+    private GLProgramBinaryCache programBinaryCache;
+    private String driverInfo = "";
 
     private final GL gl;
     private final GL2 gl2;
@@ -372,6 +393,10 @@ public final class GLRenderer implements Renderer {
             caps.add(Caps.VertexBufferArray);
         }
 
+        if (gl4 != null && hasExtension("GL_ARB_buffer_storage")) {
+            caps.add(Caps.BufferStorage);
+        }
+
         if (hasExtension("GL_ARB_texture_non_power_of_two") ||
                 hasExtension("GL_OES_texture_npot") ||
                 caps.contains(Caps.OpenGL30)) {
@@ -468,6 +493,11 @@ public final class GLRenderer implements Renderer {
             }
         }
 
+        driverInfo = gl.glGetString(GL.GL_VENDOR) + "\n"
+                + gl.glGetString(GL.GL_RENDERER) + "\n"
+                + gl.glGetString(GL.GL_VERSION) + "\n"
+                + gl.glGetString(GL.GL_SHADING_LANGUAGE_VERSION);
+
         // Print context information
         logger.log(Level.INFO, "OpenGL Renderer Information\n" +
                         " * Vendor: {0}\n" +
@@ -545,7 +575,10 @@ public final class GLRenderer implements Renderer {
             gl3.glGenVertexArrays(intBuf16);
             int vaoId = intBuf16.get(0);
             gl3.glBindVertexArray(vaoId);
+            defaultVertexArray = vaoId;
+            context.boundVertexArray = vaoId;
         }
+        vertexArrayCache = gl3 != null && caps.contains(Caps.VertexBufferArray);
         if (gl2 != null) {
             gl2.glEnable(GL2.GL_VERTEX_PROGRAM_POINT_SIZE);
             if (!caps.contains(Caps.CoreProfile)) {
@@ -556,6 +589,9 @@ public final class GLRenderer implements Renderer {
 
     public void invalidateState() {
         context.reset();
+        // the bound vertex array is unknown until the next draw binds one
+        context.boundVertexArray = -1;
+        boundVertexArrayObject = null;
         if (gl2 != null) {
             context.initialDrawBuf = getInteger(GL2.GL_DRAW_BUFFER);
             context.initialReadBuf = getInteger(GL2.GL_READ_BUFFER);
@@ -565,6 +601,13 @@ public final class GLRenderer implements Renderer {
     public void resetGLObjects() {
         logger.log(Level.FINE, "Reseting objects and invalidating state");
         objManager.resetObjects();
+        streamBuffers.clear();
+        if (uniformBlocks != null) {
+            for (UniformBlock block : uniformBlocks) {
+                block.setId(-1);
+                block.setUpdateNeeded();
+            }
+        }
         statistics.clearMemory();
         invalidateState();
     }
@@ -573,6 +616,7 @@ public final class GLRenderer implements Renderer {
         logger.log(Level.FINE, "Deleting objects and invalidating state");
         objManager.deleteAllObjects(this);
         OpenCLObjectManager.getInstance().deleteAllObjects();
+        deleteUniformBlocks();
         statistics.clearMemory();
         invalidateState();
     }
@@ -591,6 +635,7 @@ public final class GLRenderer implements Renderer {
             if (context.colorWriteEnabled == false) {
                 gl.glColorMask(true, true, true, true);
                 context.colorWriteEnabled = true;
+                context.renderState = null;
             }
             bits = GL.GL_COLOR_BUFFER_BIT;
         }
@@ -602,6 +647,7 @@ public final class GLRenderer implements Renderer {
             if (context.depthWriteEnabled == false) {
                 gl.glDepthMask(true);
                 context.depthWriteEnabled = true;
+                context.renderState = null;
             }
             bits |= GL.GL_DEPTH_BUFFER_BIT;
         }
@@ -641,6 +687,16 @@ public final class GLRenderer implements Renderer {
     }
 
     public void applyRenderState(RenderState state) {
+        // states with the same content share a bundle, so if the bundle
+        // was applied last, nothing needs to change
+        RenderState bundle = renderStateCache.getBundle(state);
+        if (bundle == context.renderState) {
+            statistics.onRenderStateUse(false);
+            return;
+        }
+        statistics.onRenderStateUse(true);
+        context.renderState = bundle;
+
         if (gl2 != null) {
             if (state.isWireframe() && !context.wireframe) {
                 gl2.glPolygonMode(GL.GL_FRONT_AND_BACK, GL2.GL_LINE);
@@ -1049,9 +1105,15 @@ public final class GLRenderer implements Renderer {
         if (uniform.getVarType() == null) {
             return; // value not set yet..
         }
-        statistics.onUniformSet();
 
         uniform.clearUpdateNeeded();
+        if (!shader.updateUniformShadow(uniform)) {
+            // same value as the last upload, GL still has it
+            statistics.onUniformSet(false);
+            return;
+        }
+        statistics.onUniformSet(true);
+
         FloatBuffer fb;
         IntBuffer ib;
         switch (uniform.getVarType()) {
@@ -1137,6 +1199,89 @@ public final class GLRenderer implements Renderer {
         }
     }
 
+    /**
+     * Sets the uniform blocks that shaders may declare. When a shader that
+     * declares one of the blocks is set, the block data is uploaded if it
+     * changed and the uniforms of the block are not set individually.
+     * <p>
+     * The blocks are ignored without uniform buffer support
+     * ({@link Caps#OpenGL31}).
+     *
+     * @param blocks The uniform blocks, indexed by their binding point.
+     */
+    public void setUniformBlocks(UniformBlock[] blocks) {
+        deleteUniformBlocks();
+        this.uniformBlocks = blocks;
+    }
+
+    /**
+     * Looks up the uniform blocks declared by the given, freshly linked
+     * shader and assigns them their binding points.
+     */
+    protected void updateUniformBlockBindings(Shader shader) {
+        int mask = 0;
+        if (uniformBlocks != null && gl3 != null && caps.contains(Caps.OpenGL31)) {
+            for (UniformBlock block : uniformBlocks) {
+                int index = gl3.glGetUniformBlockIndex(shader.getId(), block.getName());
+                if (index != GL3.GL_INVALID_INDEX) {
+                    gl3.glUniformBlockBinding(shader.getId(), index, block.getBinding());
+                    mask |= 1 << block.getBinding();
+                }
+            }
+        }
+        shader.setUniformBlocks(mask);
+    }
+
+    /**
+     * Uploads the data of the uniform blocks used by the shader if it
+     * changed since the last upload.
+     */
+    protected void updateUniformBlocks(Shader shader) {
+        int mask = shader.getUniformBlocks();
+        for (UniformBlock block : uniformBlocks) {
+            if ((mask & (1 << block.getBinding())) == 0) {
+                continue;
+            }
+
+            int bufId = block.getId();
+            if (bufId == -1) {
+                intBuf1.clear();
+                gl.glGenBuffers(intBuf1);
+                bufId = intBuf1.get(0);
+                block.setId(bufId);
+                // the storage is allocated once, the binding point keeps
+                // referring to the buffer and only its contents change
+                gl.glBindBuffer(GL3.GL_UNIFORM_BUFFER, bufId);
+                gl.glBufferData(GL3.GL_UNIFORM_BUFFER, block.getData().capacity() * 4L, GL.GL_DYNAMIC_DRAW);
+                gl3.glBindBufferBase(GL3.GL_UNIFORM_BUFFER, block.getBinding(), bufId);
+                block.setUpdateNeeded();
+            }
+
+            if (block.isUpdateNeeded()) {
+                FloatBuffer data = block.getData();
+                data.clear();
+                gl.glBindBuffer(GL3.GL_UNIFORM_BUFFER, bufId);
+                gl.glBufferSubData(GL3.GL_UNIFORM_BUFFER, 0, data);
+                block.clearUpdateNeeded();
+            }
+        }
+    }
+
+    private void deleteUniformBlocks() {
+        if (uniformBlocks == null) {
+            return;
+        }
+        for (UniformBlock block : uniformBlocks) {
+            if (block.getId() != -1) {
+                intBuf1.clear();
+                intBuf1.put(0, block.getId());
+                gl.glDeleteBuffers(intBuf1);
+                block.setId(-1);
+            }
+            block.setUpdateNeeded();
+        }
+    }
+
     protected void resetUniformLocations(Shader shader) {
         ListMap<String, Uniform> uniforms = shader.getUniformMap();
         for (int i = 0; i < uniforms.size(); i++) {
@@ -1274,44 +1419,61 @@ public final class GLRenderer implements Renderer {
             needRegister = true;
         }
 
-        // If using GLSL 1.5, we bind the outputs for the user
-        // For versions 3.3 and up, user should use layout qualifiers instead.
-        boolean bindFragDataRequired = false;
+        String binaryKey = null;
+        if (needRegister && programBinaryCache != null && caps.contains(Caps.BinaryShader)) {
+            binaryKey = programBinaryCache.getKey(shader, getProgramBinaryInfo());
+        }
 
-        for (ShaderSource source : shader.getSources()) {
-            if (source.isUpdateNeeded()) {
-                updateShaderSourceData(source);
+        boolean linkOK = binaryKey != null && loadProgramBinary(id, binaryKey);
+        String infoLog = null;
+
+        if (!linkOK) {
+            // If using GLSL 1.5, we bind the outputs for the user
+            // For versions 3.3 and up, user should use layout qualifiers instead.
+            boolean bindFragDataRequired = false;
+
+            for (ShaderSource source : shader.getSources()) {
+                if (source.isUpdateNeeded()) {
+                    updateShaderSourceData(source);
+                }
+                if (source.getType() == ShaderType.Fragment
+                        && source.getLanguage().equals("GLSL150")) {
+                    bindFragDataRequired = true;
+                }
+                gl.glAttachShader(id, source.getId());
             }
-            if (source.getType() == ShaderType.Fragment
-                    && source.getLanguage().equals("GLSL150")) {
-                bindFragDataRequired = true;
+
+            if (bindFragDataRequired) {
+                // Check if GLSL version is 1.5 for shader
+                gl3.glBindFragDataLocation(id, 0, "outFragColor");
+                // For MRT
+                for (int i = 0; i < limits.get(Limits.FrameBufferMrtAttachments); i++) {
+                    gl3.glBindFragDataLocation(id, i, "outFragData[" + i + "]");
+                }
             }
-            gl.glAttachShader(id, source.getId());
-        }
 
-        if (bindFragDataRequired) {
-            // Check if GLSL version is 1.5 for shader
-            gl3.glBindFragDataLocation(id, 0, "outFragColor");
-            // For MRT
-            for (int i = 0; i < limits.get(Limits.FrameBufferMrtAttachments); i++) {
-                gl3.glBindFragDataLocation(id, i, "outFragData[" + i + "]");
+            if (binaryKey != null) {
+                glext.glProgramParameteri(id, GLExt.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL.GL_TRUE);
             }
-        }
 
-        // Link shaders to program
-        gl.glLinkProgram(id);
+            // Link shaders to program
+            gl.glLinkProgram(id);
 
-        // Check link status
-        gl.glGetProgram(id, GL.GL_LINK_STATUS, intBuf1);
-        boolean linkOK = intBuf1.get(0) == GL.GL_TRUE;
-        String infoLog = null;
+            // Check link status
+            gl.glGetProgram(id, GL.GL_LINK_STATUS, intBuf1);
+            linkOK = intBuf1.get(0) == GL.GL_TRUE;
 
-        if (VALIDATE_SHADER || !linkOK) {
-            gl.glGetProgram(id, GL.GL_INFO_LOG_LENGTH, intBuf1);
-            int length = intBuf1.get(0);
-            if (length > 3) {
-                // get infos
-                infoLog = gl.glGetProgramInfoLog(id, length);
+            if (VALIDATE_SHADER || !linkOK) {
+                gl.glGetProgram(id, GL.GL_INFO_LOG_LENGTH, intBuf1);
+                int length = intBuf1.get(0);
+                if (length > 3) {
+                    // get infos
+                    infoLog = gl.glGetProgramInfoLog(id, length);
+                }
+            }
+
+            if (linkOK && binaryKey != null) {
+                storeProgramBinary(id, binaryKey);
             }
         }
 
@@ -1322,6 +1484,7 @@ public final class GLRenderer implements Renderer {
                 logger.fine("Shader linked successfully.");
             }
             shader.clearUpdateNeeded();
+            updateUniformBlockBindings(shader);
             if (needRegister) {
                 // Register shader for clean up if it was created in this method.
                 objManager.registerObject(shader);
@@ -1339,6 +1502,80 @@ public final class GLRenderer implements Renderer {
         }
     }
 
+    /**
+     * Describes everything besides the shader sources that affects a linked
+     * program, used to key the program binary cache.
+     */
+    private String getProgramBinaryInfo() {
+        return driverInfo + "\n" + caps + "\n" + linearizeSrgbImages
+                + "\n" + limits.get(Limits.FrameBufferMrtAttachments);
+    }
+
+    private boolean loadProgramBinary(int id, String key) {
+        ByteBuffer data = programBinaryCache.load(key);
+        if (data == null || data.remaining() <= 4) {
+            return false;
+        }
+
+        int format = data.getInt();
+        boolean linkOK;
+        try {
+            glext.glProgramBinary(id, format, data.slice());
+            gl.glGetProgram(id, GL.GL_LINK_STATUS, intBuf1);
+            linkOK = intBuf1.get(0) == GL.GL_TRUE;
+        } catch (RendererException ex) {
+            // unsupported binary format
+            linkOK = false;
+        }
+
+        if (linkOK) {
+            logger.log(Level.FINE, "Shader loaded from program binary {0}", key);
+        } else {
+            logger.log(Level.FINE, "Program binary {0} was rejected, compiling shader", key);
+            programBinaryCache.remove(key);
+        }
+        return linkOK;
+    }
+
+    private void storeProgramBinary(int id, String key) {
+        gl.glGetProgram(id, GLExt.GL_PROGRAM_BINARY_LENGTH, intBuf1);
+        int length = intBuf1.get(0);
+        if (length <= 0) {
+            return;
+        }
+
+        ByteBuffer binary = BufferUtils.createByteBuffer(length);
+        intBuf1.clear();
+        intBuf16.clear();
+        glext.glGetProgramBinary(id, intBuf1, intBuf16, binary);
+        binary.clear();
+        binary.limit(intBuf1.get(0));
+        programBinaryCache.store(key, intBuf16.get(0), binary);
+    }
+
+    /**
+     * Sets the cache that linked shader programs are stored in.
+     * <p>
+     * When set and the video hardware supports program binaries, new
+     * shaders are loaded from the cache instead of being compiled, and
+     * shaders compiled from source are added to it. The cache is only
+     * consulted when a program is first created.
+     *
+     * @param programBinaryCache The cache to use, or null to always
+     * compile shaders from source (the default).
+     */
+    public void setProgramBinaryCache(GLProgramBinaryCache programBinaryCache) {
+        this.programBinaryCache = programBinaryCache;
+    }
+
+    /**
+     * @return The program binary cache, or null if none is used.
+     * @see #setProgramBinaryCache(com.jme3.renderer.opengl.GLProgramBinaryCache)
+     */
+    public GLProgramBinaryCache getProgramBinaryCache() {
+        return programBinaryCache;
+    }
+
     public void setShader(Shader shader) {
         if (shader == null) {
             throw new IllegalArgumentException("Shader cannot be null");
@@ -1353,6 +1590,9 @@ public final class GLRenderer implements Renderer {
             assert shader.getId() > 0;
 
             updateShaderUniforms(shader);
+            if (shader.getUniformBlocks() != 0) {
+                updateUniformBlocks(shader);
+            }
             bindProgram(shader);
         }
     }
@@ -1561,7 +1801,12 @@ public final class GLRenderer implements Renderer {
             setupTextureParams(0, tex);
         }
 
-        if (rb.getLayer() < 0){
+        if (rb.isLayered()) {
+            gl3.glFramebufferTexture(GLFbo.GL_FRAMEBUFFER_EXT,
+                    convertAttachmentSlot(rb.getSlot()),
+                    image.getId(),
+                    0);
+        } else if (rb.getLayer() < 0){
             glfbo.glFramebufferTexture2DEXT(GLFbo.GL_FRAMEBUFFER_EXT,
                     convertAttachmentSlot(rb.getSlot()),
                     convertTextureType(tex.getType(), image.getMultiSamples(), rb.getFace()),
@@ -2257,7 +2502,10 @@ public final class GLRenderer implements Renderer {
             for (int i = 0; i < data.size(); i++) {
                 // upload each slice of 2D array in turn
                 // this time with the appropriate index
-                texUtil.uploadTexture(imageForUpload, target, i, linearizeSrgbImages);
+                // (slices without data, e.g. of render targets, only need storage)
+                if (data.get(i) != null) {
+                    texUtil.uploadTexture(imageForUpload, target, i, linearizeSrgbImages);
+                }
             }
         } else {
             texUtil.uploadTexture(imageForUpload, target, 0, linearizeSrgbImages);
@@ -2366,6 +2614,14 @@ public final class GLRenderer implements Renderer {
     }
 
     public void updateBufferData(VertexBuffer vb) {
+        if (vb.getUsage() == Usage.Stream
+                && vb.getBufferType() != Type.Index
+                && vb.getBufferType() != Type.InterleavedData
+                && caps.contains(Caps.BufferStorage)) {
+            updateStreamBuffer(vb);
+            return;
+        }
+
         int bufId = vb.getId();
         boolean created = false;
         if (bufId == -1) {
@@ -2375,7 +2631,7 @@ public final class GLRenderer implements Renderer {
             vb.setId(bufId);
             objManager.registerObject(vb);
 
-            //statistics.onNewVertexBuffer();
+            statistics.onNewVertexBuffer();
 
             created = true;
         }
@@ -2428,8 +2684,127 @@ public final class GLRenderer implements Renderer {
         vb.clearUpdateNeeded();
     }
 
+    /**
+     * Writes the data of a stream buffer into the next region of its
+     * persistently mapped storage.
+     * <p>
+     * The buffer object of the vertex buffer itself has no storage, the
+     * attributes are sourced from the storage returned by
+     * {@link #getStreamBuffer(com.jme3.scene.VertexBuffer) } instead.
+     */
+    private void updateStreamBuffer(VertexBuffer vb) {
+        int bufId = vb.getId();
+        if (bufId == -1) {
+            gl.glGenBuffers(intBuf1);
+            bufId = intBuf1.get(0);
+            vb.setId(bufId);
+            objManager.registerObject(vb);
+
+            statistics.onNewVertexBuffer();
+        }
+
+        Buffer data = vb.getData();
+        int size = data.capacity() * vb.getFormat().getComponentSize();
+        GLStreamBuffer streamBuffer = streamBuffers.get(bufId);
+        if (streamBuffer == null || streamBuffer.regionSize < size) {
+            if (streamBuffer != null) {
+                deleteStreamBuffer(streamBuffer);
+            }
+            streamBuffer = createStreamBuffer(size);
+            streamBuffers.put(bufId, streamBuffer);
+        } else {
+            // Fence the draws reading the current region, then wait until
+            // the GPU is done with the region that is written next.
+            Object[] fences = streamBuffer.fences;
+            fences[streamBuffer.region] = glext.glFenceSync(GLExt.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            streamBuffer.region = (streamBuffer.region + 1) % fences.length;
+            Object fence = fences[streamBuffer.region];
+            if (fence != null) {
+                while (glext.glClientWaitSync(fence, GLExt.GL_SYNC_FLUSH_COMMANDS_BIT,
+                        STREAM_BUFFER_TIMEOUT) == GLExt.GL_TIMEOUT_EXPIRED) {
+                    logger.log(Level.FINE, "Waiting for stream buffer region");
+                }
+                glext.glDeleteSync(fence);
+                fences[streamBuffer.region] = null;
+            }
+        }
+
+        ByteBuffer mapped = streamBuffer.mapped;
+        mapped.clear();
+        mapped.position((int) streamBuffer.getOffset());
+        data.rewind();
+        switch (vb.getFormat()) {
+            case Byte:
+            case UnsignedByte:
+                mapped.put((ByteBuffer) data);
+                break;
+            case Short:
+            case UnsignedShort:
+                mapped.asShortBuffer().put((ShortBuffer) data);
+                break;
+            case Int:
+            case UnsignedInt:
+                mapped.asIntBuffer().put((IntBuffer) data);
+                break;
+            case Float:
+                mapped.asFloatBuffer().put((FloatBuffer) data);
+                break;
+            case Double:
+                mapped.asDoubleBuffer().put((DoubleBuffer) data);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown buffer format.");
+        }
+        data.rewind();
+
+        vb.clearUpdateNeeded();
+    }
+
+    private GLStreamBuffer createStreamBuffer(int size) {
+        int regionSize = (size + STREAM_BUFFER_ALIGNMENT - 1) & ~(STREAM_BUFFER_ALIGNMENT - 1);
+        long storageSize = (long) regionSize * STREAM_BUFFER_REGIONS;
+        int flags = GL4.GL_MAP_WRITE_BIT | GL4.GL_MAP_PERSISTENT_BIT | GL4.GL_MAP_COHERENT_BIT;
+
+        gl.glGenBuffers(intBuf1);
+        int bufferId = intBuf1.get(0);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, bufferId);
+        context.boundArrayVBO = bufferId;
+        gl4.glBufferStorage(GL.GL_ARRAY_BUFFER, storageSize, flags);
+        ByteBuffer mapped = gl4.glMapBufferRange(GL.GL_ARRAY_BUFFER, 0, storageSize, flags);
+        mapped.order(ByteOrder.nativeOrder());
+        return new GLStreamBuffer(bufferId, regionSize, STREAM_BUFFER_REGIONS, mapped);
+    }
+
+    private void deleteStreamBuffer(GLStreamBuffer streamBuffer) {
+        for (Object fence : streamBuffer.fences) {
+            if (fence != null) {
+                glext.glDeleteSync(fence);
+            }
+        }
+        if (context.boundArrayVBO == streamBuffer.bufferId) {
+            context.boundArrayVBO = 0;
+        }
+        // deleting the buffer unmaps it
+        intBuf1.put(0, streamBuffer.bufferId);
+        intBuf1.position(0).limit(1);
+        gl.glDeleteBuffers(intBuf1);
+    }
+
+    private GLStreamBuffer getStreamBuffer(VertexBuffer vb) {
+        if (vb.getUsage() != Usage.Stream || streamBuffers.size() == 0) {
+            return null;
+        }
+        return streamBuffers.get(vb.getId());
+    }
+
     public void deleteBuffer(VertexBuffer vb) {
         int bufId = vb.getId();
+        if (bufId != -1 && streamBuffers.size() > 0) {
+            GLStreamBuffer streamBuffer = streamBuffers.remove(bufId);
+            if (streamBuffer != null) {
+                deleteStreamBuffer(streamBuffer);
+            }
+        }
         if (bufId != -1) {
             // delete buffer
             intBuf1.put(0, bufId);
@@ -2437,7 +2812,7 @@ public final class GLRenderer implements Renderer {
             gl.glDeleteBuffers(intBuf1);
             vb.resetObject();
 
-            //statistics.onDeleteVertexBuffer();
+            statistics.onDeleteVertexBuffer();
         }
     }
 
@@ -2463,39 +2838,11 @@ public final class GLRenderer implements Renderer {
             throw new IllegalStateException("Cannot render mesh without shader bound");
         }
 
-        Attribute attrib = context.boundShader.getAttribute(vb.getBufferType());
-        int loc = attrib.getLocation();
+        int loc = getAttribLocation(vb);
         if (loc == -1) {
-            return; // not defined
-        }
-        if (loc == -2) {
-            loc = gl.glGetAttribLocation(context.boundShaderProgram, "in" + vb.getBufferType().name());
-
-            // not really the name of it in the shader (inPosition) but
-            // the internal name of the enum (Position).
-            if (loc < 0) {
-                attrib.setLocation(-1);
-                return; // not available in shader.
-            } else {
-                attrib.setLocation(loc);
-            }
-        }
-
-        if (vb.isInstanced()) {
-            if (!caps.contains(Caps.MeshInstancing)) {
-                throw new RendererException("Instancing is required, "
-                        + "but not supported by the "
-                        + "graphics hardware");
-            }
-        }
-        int slotsRequired = 1;
-        if (vb.getNumComponents() > 4) {
-            if (vb.getNumComponents() % 4 != 0) {
-                throw new RendererException("Number of components in multi-slot "
-                        + "buffers must be divisible by 4");
-            }
-            slotsRequired = vb.getNumComponents() / 4;
+            return; // not available in shader.
         }
+        int slotsRequired = getAttribSlots(vb);
 
         if (vb.isUpdateNeeded() && idb == null) {
             updateBufferData(vb);
@@ -2507,9 +2854,16 @@ public final class GLRenderer implements Renderer {
                 gl.glEnableVertexAttribArray(loc + i);
             }
         }
-        if (attribs[loc] != vb) {
+        // stream buffers move to another region with every update
+        GLStreamBuffer streamBuffer = idb == null ? getStreamBuffer(vb) : null;
+        if (attribs[loc] != vb || streamBuffer != null) {
             // NOTE: Use id from interleaved buffer if specified
             int bufId = idb != null ? idb.getId() : vb.getId();
+            long baseOffset = 0;
+            if (streamBuffer != null) {
+                bufId = streamBuffer.bufferId;
+                baseOffset = streamBuffer.getOffset();
+            }
             assert bufId != -1;
             if (context.boundArrayVBO != bufId) {
                 gl.glBindBuffer(GL.GL_ARRAY_BUFFER, bufId);
@@ -2519,31 +2873,7 @@ public final class GLRenderer implements Renderer {
                 //statistics.onVertexBufferUse(vb, false);
             }
 
-            if (slotsRequired == 1) {
-                gl.glVertexAttribPointer(loc,
-                        vb.getNumComponents(),
-                        convertFormat(vb.getFormat()),
-                        vb.isNormalized(),
-                        vb.getStride(),
-                        vb.getOffset());
-            } else {
-                for (int i = 0; i < slotsRequired; i++) {
-                    // The pointer maps the next 4 floats in the slot.
-                    // E.g.
-                    // P1: XXXX____________XXXX____________
-                    // P2: ____XXXX____________XXXX________
-                    // P3: ________XXXX____________XXXX____
-                    // P4: ____________XXXX____________XXXX
-                    // stride = 4 bytes in float * 4 floats in slot * num slots
-                    // offset = 4 bytes in float * 4 floats in slot * slot index
-                    gl.glVertexAttribPointer(loc + i,
-                            4,
-                            convertFormat(vb.getFormat()),
-                            vb.isNormalized(),
-                            4 * 4 * slotsRequired,
-                            4 * 4 * i);
-                }
-            }
+            setVertexAttribPointer(vb, loc, slotsRequired, baseOffset);
 
             for (int i = 0; i < slotsRequired; i++) {
                 int slot = loc + i;
@@ -2563,6 +2893,73 @@ public final class GLRenderer implements Renderer {
         setVertexAttrib(vb, null);
     }
 
+    /**
+     * Returns the attribute location of the given buffer in the bound
+     * shader, or -1 if the shader does not use it.
+     */
+    private int getAttribLocation(VertexBuffer vb) {
+        Attribute attrib = context.boundShader.getAttribute(vb.getBufferType());
+        int loc = attrib.getLocation();
+        if (loc == -2) {
+            loc = gl.glGetAttribLocation(context.boundShaderProgram, "in" + vb.getBufferType().name());
+
+            // not really the name of it in the shader (inPosition) but
+            // the internal name of the enum (Position).
+            if (loc < 0) {
+                loc = -1;
+            }
+            attrib.setLocation(loc);
+        }
+        return loc;
+    }
+
+    private int getAttribSlots(VertexBuffer vb) {
+        if (vb.isInstanced()) {
+            if (!caps.contains(Caps.MeshInstancing)) {
+                throw new RendererException("Instancing is required, "
+                        + "but not supported by the "
+                        + "graphics hardware");
+            }
+        }
+        int slotsRequired = 1;
+        if (vb.getNumComponents() > 4) {
+            if (vb.getNumComponents() % 4 != 0) {
+                throw new RendererException("Number of components in multi-slot "
+                        + "buffers must be divisible by 4");
+            }
+            slotsRequired = vb.getNumComponents() / 4;
+        }
+        return slotsRequired;
+    }
+
+    private void setVertexAttribPointer(VertexBuffer vb, int loc, int slotsRequired, long baseOffset) {
+        if (slotsRequired == 1) {
+            gl.glVertexAttribPointer(loc,
+                    vb.getNumComponents(),
+                    convertFormat(vb.getFormat()),
+                    vb.isNormalized(),
+                    vb.getStride(),
+                    baseOffset + vb.getOffset());
+        } else {
+            for (int i = 0; i < slotsRequired; i++) {
+                // The pointer maps the next 4 floats in the slot.
+                // E.g.
+                // P1: XXXX____________XXXX____________
+                // P2: ____XXXX____________XXXX________
+                // P3: ________XXXX____________XXXX____
+                // P4: ____________XXXX____________XXXX
+                // stride = 4 bytes in float * 4 floats in slot * num slots
+                // offset = 4 bytes in float * 4 floats in slot * slot index
+                gl.glVertexAttribPointer(loc + i,
+                        4,
+                        convertFormat(vb.getFormat()),
+                        vb.isNormalized(),
+                        4 * 4 * slotsRequired,
+                        baseOffset + 4 * 4 * i);
+            }
+        }
+    }
+
     public void drawTriangleArray(Mesh.Mode mode, int count, int vertCount) {
         boolean useInstancing = count > 1 && caps.contains(Caps.MeshInstancing);
         if (useInstancing) {
@@ -2691,59 +3088,198 @@ public final class GLRenderer implements Renderer {
         }
     }
 
-    public void updateVertexArray(Mesh mesh, VertexBuffer instanceData) {
-        int id = mesh.getId();
-        if (id == -1) {
-            IntBuffer temp = intBuf1;
-            gl3.glGenVertexArrays(temp);
-            id = temp.get(0);
-            mesh.setId(id);
+    /**
+     * Binds the given vertex array, or the default one if it is null.
+     * <p>
+     * The element array buffer binding is part of the vertex array state,
+     * so the binding tracked in the context is swapped along with it.
+     */
+    private void bindVertexArray(GLVertexArray vao) {
+        int id = vao != null ? vao.getId() : defaultVertexArray;
+        if (boundVertexArrayObject == vao && context.boundVertexArray == id) {
+            return;
+        }
+        if (boundVertexArrayObject != null) {
+            boundVertexArrayObject.elementArrayBuffer = context.boundElementArrayVBO;
+        } else {
+            defaultElementArrayVBO = context.boundElementArrayVBO;
+        }
+        gl3.glBindVertexArray(id);
+        context.boundVertexArray = id;
+        context.boundElementArrayVBO = vao != null ? vao.elementArrayBuffer : defaultElementArrayVBO;
+        boundVertexArrayObject = vao;
+    }
+
+    private GLVertexArray getVertexArray(Mesh mesh, Shader shader) {
+        NativeObject[] vertexArrays = mesh.getVertexArrays();
+        if (vertexArrays == null) {
+            vertexArrays = new NativeObject[MAX_VERTEX_ARRAYS_PER_MESH];
+            mesh.setVertexArrays(vertexArrays);
+        }
+        int free = -1;
+        for (int i = 0; i < vertexArrays.length; i++) {
+            GLVertexArray vao = (GLVertexArray) vertexArrays[i];
+            if (vao == null) {
+                if (free == -1) {
+                    free = i;
+                }
+            } else if (vao.shader != null && vao.shader.get() == shader) {
+                return vao;
+            }
         }
 
-        if (context.boundVertexArray != id) {
-            gl3.glBindVertexArray(id);
-            context.boundVertexArray = id;
+        GLVertexArray vao;
+        if (free != -1) {
+            vao = new GLVertexArray();
+            vertexArrays[free] = vao;
+        } else {
+            // Rendered with too many shaders, reuse the least recently
+            // added vertex array.
+            vao = (GLVertexArray) vertexArrays[0];
+            System.arraycopy(vertexArrays, 1, vertexArrays, 0, vertexArrays.length - 1);
+            vertexArrays[vertexArrays.length - 1] = vao;
+            vao.setUpdateNeeded();
         }
+        vao.shader = new WeakReference<Shader>(shader);
+        return vao;
+    }
 
-        VertexBuffer interleavedData = mesh.getBuffer(Type.InterleavedData);
+    private boolean isVertexArrayValid(GLVertexArray vao, Shader shader, VertexBuffer[] buffers,
+                                       VertexBuffer interleavedData) {
+        if (vao.isUpdateNeeded() || vao.shaderId != shader.getId() || vao.buffers != buffers) {
+            return false;
+        }
         if (interleavedData != null && interleavedData.isUpdateNeeded()) {
-            updateBufferData(interleavedData);
+            return false;
         }
+        for (VertexBuffer vb : vao.sourceBuffers) {
+            if (vb.isUpdateNeeded()) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        if (instanceData != null) {
-            setVertexAttrib(instanceData, null);
+    private void updateVertexArray(GLVertexArray vao, Shader shader, VertexBuffer[] buffers,
+                                   VertexBuffer interleavedData) {
+        if (vao.getId() == -1) {
+            gl3.glGenVertexArrays(intBuf1);
+            vao.setId(intBuf1.get(0));
+            objManager.registerObject(vao);
         }
+        bindVertexArray(vao);
 
-        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+        if (interleavedData != null && interleavedData.isUpdateNeeded()) {
+            updateBufferData(interleavedData);
+        }
+
+        long enabledAttribs = 0;
+        long instancedAttribs = 0;
+        VertexBuffer[] sourceBuffers = new VertexBuffer[buffers.length];
+        int numSourceBuffers = 0;
+        for (VertexBuffer vb : buffers) {
             if (vb.getBufferType() == Type.InterleavedData
                     || vb.getUsage() == Usage.CpuOnly // ignore cpu-only buffers
                     || vb.getBufferType() == Type.Index) {
                 continue;
             }
 
-            if (vb.getStride() == 0) {
-                // not interleaved
-                setVertexAttrib(vb);
+            int loc = getAttribLocation(vb);
+            if (loc == -1) {
+                continue;
+            }
+            int slotsRequired = getAttribSlots(vb);
+
+            VertexBuffer source = vb;
+            if (vb.getStride() != 0 && interleavedData != null) {
+                // NOTE: Use id from interleaved buffer if specified
+                source = interleavedData;
             } else {
-                // interleaved
-                setVertexAttrib(vb, interleavedData);
+                if (vb.isUpdateNeeded()) {
+                    updateBufferData(vb);
+                }
+                sourceBuffers[numSourceBuffers++] = vb;
+            }
+            int bufId = source.getId();
+            long baseOffset = 0;
+            GLStreamBuffer streamBuffer = getStreamBuffer(source);
+            if (streamBuffer != null) {
+                bufId = streamBuffer.bufferId;
+                baseOffset = streamBuffer.getOffset();
+            }
+            assert bufId != -1;
+            if (context.boundArrayVBO != bufId) {
+                gl.glBindBuffer(GL.GL_ARRAY_BUFFER, bufId);
+                context.boundArrayVBO = bufId;
+            }
+            setVertexAttribPointer(vb, loc, slotsRequired, baseOffset);
+
+            for (int i = 0; i < slotsRequired; i++) {
+                int slot = loc + i;
+                long bit = 1L << slot;
+                if ((vao.enabledAttribs & bit) == 0) {
+                    gl.glEnableVertexAttribArray(slot);
+                }
+                if (vb.isInstanced()) {
+                    glext.glVertexAttribDivisorARB(slot, vb.getInstanceSpan());
+                    instancedAttribs |= bit;
+                } else if ((vao.instancedAttribs & bit) != 0) {
+                    glext.glVertexAttribDivisorARB(slot, 0);
+                }
+                enabledAttribs |= bit;
+            }
+        }
+
+        long disabledAttribs = vao.enabledAttribs & ~enabledAttribs;
+        for (int slot = 0; disabledAttribs != 0; slot++, disabledAttribs >>>= 1) {
+            if ((disabledAttribs & 1) != 0) {
+                gl.glDisableVertexAttribArray(slot);
+                if ((vao.instancedAttribs & (1L << slot)) != 0) {
+                    glext.glVertexAttribDivisorARB(slot, 0);
+                }
             }
         }
+
+        vao.enabledAttribs = enabledAttribs;
+        vao.instancedAttribs = instancedAttribs;
+        vao.shaderId = shader.getId();
+        vao.buffers = buffers;
+        vao.sourceBuffers = Arrays.copyOf(sourceBuffers, numSourceBuffers);
+        vao.clearUpdateNeeded();
     }
 
-    private void renderMeshVertexArray(Mesh mesh, int lod, int count, VertexBuffer instanceData) {
-        if (mesh.getId() == -1) {
-            updateVertexArray(mesh, instanceData);
-        } else {
-            // TODO: Check if it was updated
+    public void deleteVertexArray(GLVertexArray vao) {
+        int id = vao.getId();
+        if (id != -1) {
+            if (context.boundVertexArray == id) {
+                bindVertexArray(null);
+            }
+            intBuf1.put(0, id);
+            intBuf1.position(0).limit(1);
+            gl3.glDeleteVertexArrays(intBuf1);
+            vao.resetObject();
+        }
+    }
+
+    private void renderMeshVertexArray(Mesh mesh, int lod, int count) {
+        count = Math.max(mesh.getInstanceCount(), count);
+
+        if (context.boundShaderProgram <= 0) {
+            throw new IllegalStateException("Cannot render mesh without shader bound");
         }
 
-        if (context.boundVertexArray != mesh.getId()) {
-            gl3.glBindVertexArray(mesh.getId());
-            context.boundVertexArray = mesh.getId();
+        Shader shader = context.boundShader;
+        GLVertexArray vao = getVertexArray(mesh, shader);
+        VertexBuffer[] buffers = mesh.getBufferList().getArray();
+        VertexBuffer interleavedData = mesh.getBuffer(Type.InterleavedData);
+        if (isVertexArrayValid(vao, shader, buffers, interleavedData)) {
+            bindVertexArray(vao);
+            statistics.onVertexArrayUse(false);
+        } else {
+            updateVertexArray(vao, shader, buffers, interleavedData);
+            statistics.onVertexArrayUse(true);
         }
 
-//        IntMap<VertexBuffer> buffers = mesh.getBuffers();
         VertexBuffer indices;
         if (mesh.getNumLodLevels() > 0) {
             indices = mesh.getLodLevel(lod);
@@ -2755,10 +3291,12 @@ public final class GLRenderer implements Renderer {
         } else {
             drawTriangleArray(mesh.getMode(), count, mesh.getVertexCount());
         }
-        clearVertexAttribs();
     }
 
     private void renderMeshDefault(Mesh mesh, int lod, int count, VertexBuffer[] instanceData) {
+        if (boundVertexArrayObject != null) {
+            bindVertexArray(null);
+        }
 
         // Here while count is still passed in.  Can be removed when/if
         // the method is collapsed again.  -pspeed        
@@ -2819,17 +3357,18 @@ public final class GLRenderer implements Renderer {
         if (mesh.getLineWidth() != 1f && context.lineWidth != mesh.getLineWidth()) {
             gl.glLineWidth(mesh.getLineWidth());
             context.lineWidth = mesh.getLineWidth();
+            context.renderState = null;
         }
 
         if (gl4 != null && mesh.getMode().equals(Mode.Patch)) {
             gl4.glPatchParameter(mesh.getPatchVertexCount());
         }
         statistics.onMeshDrawn(mesh, lod, count);
-//        if (ctxCaps.GL_ARB_vertex_array_object){
-//            renderMeshVertexArray(mesh, lod, count);
-//        }else{
-        renderMeshDefault(mesh, lod, count, instanceData);
-//        }
+        if (vertexArrayCache && instanceData == null) {
+            renderMeshVertexArray(mesh, lod, count);
+        } else {
+            renderMeshDefault(mesh, lod, count, instanceData);
+        }
     }
 
     public void setMainFrameBufferSrgb(boolean enableSrgb) {
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.shader.Shader;
+import com.jme3.util.NativeObject;
+import java.lang.ref.WeakReference;
+
+/**
+ * A vertex array object holding the attribute bindings of a {@link Mesh}
+ * for one {@link Shader}.
+ * <p>
+ * Vertex arrays are created and bound by {@link GLRenderer}, the attribute
+ * bindings are specified again whenever the shader, the buffer list of the
+ * mesh or one of its buffers changes.
+ */
+public final class GLVertexArray extends NativeObject {
+
+    /**
+     * The shader the vertex array was created for. Weakly referenced, so
+     * that the meshes do not keep deleted or replaced shaders alive.
+     */
+    WeakReference<Shader> shader;
+    int shaderId = -1;
+    VertexBuffer[] buffers;
+    VertexBuffer[] sourceBuffers;
+    int elementArrayBuffer;
+    long enabledAttribs;
+    long instancedAttribs;
+
+    public GLVertexArray() {
+        super();
+    }
+
+    private GLVertexArray(int id) {
+        super(id);
+    }
+
+    @Override
+    public void resetObject() {
+        id = -1;
+        shaderId = -1;
+        buffers = null;
+        sourceBuffers = null;
+        elementArrayBuffer = 0;
+        enabledAttribs = 0;
+        instancedAttribs = 0;
+        setUpdateNeeded();
+    }
+
+    @Override
+    public void deleteObject(Object rendererObject) {
+        ((GLRenderer) rendererObject).deleteVertexArray(this);
+    }
+
+    @Override
+    public NativeObject createDestructableClone() {
+        return new GLVertexArray(id);
+    }
+
+    @Override
+    public long getUniqueId() {
+        return ((long) OBJTYPE_VERTEXARRAY << 32) | ((long) id);
+    }
+}
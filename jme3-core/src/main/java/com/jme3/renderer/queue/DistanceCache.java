@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.queue;
+
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Geometry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>DistanceCache</code> remembers the distance of each geometry to the
+ * camera while a {@link GeometryList} is sorted, so that comparators compute
+ * it once per geometry rather than once per comparison.
+ * <p>
+ * The distance is stored in {@link Geometry#queueDistance} together with a
+ * stamp that identifies the cache and the camera state it was computed for.
+ * Cached distances become invalid when the camera is set again (which the
+ * {@link RenderQueue} does every frame before sorting), when the
+ * {@link Camera#getFrameStamp() frame stamp} of the camera changes, or once
+ * the RenderQueue rendered the geometry and reset its distance.
+ * Each comparator should use its own cache, since the stamp also tells
+ * distances of different comparators apart.
+ */
+public final class DistanceCache {
+
+    private static final AtomicInteger nextStamp = new AtomicInteger();
+
+    private Camera cam;
+    private int camFrameStamp;
+    private int stamp;
+
+    public DistanceCache() {
+        invalidate();
+    }
+
+    /**
+     * Sets the camera the distances are computed for and invalidates all
+     * cached distances.
+     *
+     * @param cam The camera used for sorting
+     */
+    public void setCamera(Camera cam) {
+        this.cam = cam;
+        invalidate();
+    }
+
+    /**
+     * Invalidates all cached distances.
+     */
+    public void invalidate() {
+        int newStamp = nextStamp.incrementAndGet();
+        if (newStamp == 0) {
+            // 0 marks geometries without a cached distance
+            newStamp = nextStamp.incrementAndGet();
+        }
+        stamp = newStamp;
+        if (cam != null) {
+            camFrameStamp = cam.getFrameStamp();
+        }
+    }
+
+    /**
+     * Returns true if the geometry has a valid cached distance, which can
+     * then be read with {@link #get(com.jme3.scene.Geometry) }.
+     *
+     * @param geom The geometry to check
+     * @return True if the distance of the geometry is cached
+     */
+    public boolean contains(Geometry geom) {
+        if (cam != null && cam.getFrameStamp() != camFrameStamp) {
+            invalidate();
+        }
+        return geom.queueDistanceStamp == stamp;
+    }
+
+    /**
+     * Returns the cached distance of the geometry. Only valid if
+     * {@link #contains(com.jme3.scene.Geometry) } returned true.
+     *
+     * @param geom The geometry
+     * @return The cached distance
+     */
+    public float get(Geometry geom) {
+        return geom.queueDistance;
+    }
+
+    /**
+     * Caches the distance of the geometry.
+     *
+     * @param geom The geometry
+     * @param distance The distance to cache
+     * @return The given distance
+     */
+    public float put(Geometry geom, float distance) {
+        geom.queueDistance = distance;
+        geom.queueDistanceStamp = stamp;
+        return distance;
+    }
+}
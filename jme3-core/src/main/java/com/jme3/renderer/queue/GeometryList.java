@@ -31,6 +31,7 @@
  */
 package com.jme3.renderer.queue;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -50,10 +51,27 @@ public class GeometryList implements Iterable<Geometry>{
 
     private static final int DEFAULT_SIZE = 32;
 
+    /**
+     * The size below which lists are sorted with the comparator even if
+     * it provides sort keys.
+     */
+    private static final int KEY_SORT_THRESHOLD = 64;
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX_SIZE = 1 << RADIX_BITS;
+    private static final int RADIX_PASSES = 64 / RADIX_BITS;
+
     private Geometry[] geometries;    
     private ListSort listSort;
     private int size;
     private GeometryComparator comparator;
+    private boolean keySortEnabled = true;
+
+    // scratch space for the key sort, allocated on first use
+    private long[] keys;
+    private long[] tmpKeys;
+    private Geometry[] tmpGeometries;
+    private int[] radixCounts;
 
     /**
      * Initializes the GeometryList to use the given {@link GeometryComparator}
@@ -80,6 +98,26 @@ public class GeometryList implements Iterable<Geometry>{
         return comparator;
     }
 
+    /**
+     * Enables or disables sorting by key. When enabled (the default) and the
+     * comparator is a {@link SortKeyComparator}, {@link #sort() } computes
+     * one key per geometry and radix sorts the keys rather than using
+     * the comparator directly. The resulting order is the same.
+     *
+     * @param keySortEnabled True to sort by key when possible
+     */
+    public void setKeySortEnabled(boolean keySortEnabled) {
+        this.keySortEnabled = keySortEnabled;
+    }
+
+    /**
+     * @return True if sorting by key is enabled.
+     * @see #setKeySortEnabled(boolean)
+     */
+    public boolean isKeySortEnabled() {
+        return keySortEnabled;
+    }
+
     /**
      * Set the camera that will be set on the geometry comparators
      * via {@link GeometryComparator#setCamera(com.jme3.renderer.Camera)}.
@@ -135,6 +173,22 @@ public class GeometryList implements Iterable<Geometry>{
         geometries[size++] = g;
     }
 
+    /**
+     * Adds all geometries of the given list, in order, to this list.
+     *
+     * @param list The list to add the geometries from.
+     */
+    public void addAll(GeometryList list) {
+        int newSize = size + list.size;
+        if (newSize > geometries.length) {
+            Geometry[] temp = new Geometry[Math.max(newSize, size * 2)];
+            System.arraycopy(geometries, 0, temp, 0, size);
+            geometries = temp;
+        }
+        System.arraycopy(list.geometries, 0, geometries, size, list.size);
+        size = newSize;
+    }
+
     /**
      * Resets list size to 0.
      */
@@ -151,6 +205,11 @@ public class GeometryList implements Iterable<Geometry>{
      */
     public void sort() {
         if (size > 1) {
+            if (keySortEnabled && size >= KEY_SORT_THRESHOLD
+                    && comparator instanceof SortKeyComparator) {
+                keySort((SortKeyComparator) comparator);
+                return;
+            }
             // sort the spatial list using the comparator
             if(listSort.getLength() != size){
                 listSort.allocateStack(size);
@@ -159,6 +218,78 @@ public class GeometryList implements Iterable<Geometry>{
         }
     }
 
+    /**
+     * Sorts the list by the keys of the given comparator, using a stable
+     * least significant digit radix sort. Digits that are the same for all
+     * keys (e.g. the high bits of the sort id) are skipped.
+     */
+    private void keySort(SortKeyComparator keyComparator) {
+        if (keys == null || keys.length < size) {
+            keys = new long[geometries.length];
+            tmpKeys = new long[geometries.length];
+            tmpGeometries = new Geometry[geometries.length];
+        }
+        if (radixCounts == null) {
+            radixCounts = new int[RADIX_PASSES * RADIX_SIZE];
+        } else {
+            Arrays.fill(radixCounts, 0);
+        }
+
+        long[] srcKeys = keys;
+        long[] dstKeys = tmpKeys;
+        Geometry[] src = geometries;
+        Geometry[] dst = tmpGeometries;
+        int[] counts = radixCounts;
+
+        // compute all keys and digit histograms in a single pass
+        for (int i = 0; i < size; i++) {
+            long key = keyComparator.getSortKey(src[i]);
+            srcKeys[i] = key;
+            for (int pass = 0; pass < RADIX_PASSES; pass++) {
+                counts[pass * RADIX_SIZE + (int) ((key >>> (pass * RADIX_BITS)) & (RADIX_SIZE - 1))]++;
+            }
+        }
+
+        for (int pass = 0; pass < RADIX_PASSES; pass++) {
+            int offset = pass * RADIX_SIZE;
+            int shift = pass * RADIX_BITS;
+            int digit = (int) ((srcKeys[0] >>> shift) & (RADIX_SIZE - 1));
+            if (counts[offset + digit] == size) {
+                // every key has the same digit, nothing to reorder
+                continue;
+            }
+
+            // turn the histogram into starting positions
+            int sum = 0;
+            for (int i = offset; i < offset + RADIX_SIZE; i++) {
+                int count = counts[i];
+                counts[i] = sum;
+                sum += count;
+            }
+
+            for (int i = 0; i < size; i++) {
+                long key = srcKeys[i];
+                int pos = counts[offset + (int) ((key >>> shift) & (RADIX_SIZE - 1))]++;
+                dstKeys[pos] = key;
+                dst[pos] = src[i];
+            }
+
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            Geometry[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+
+        if (src != geometries) {
+            System.arraycopy(src, 0, geometries, 0, size);
+        }
+        for (int i = 0; i < size; i++) {
+            tmpGeometries[i] = null;
+        }
+    }
+
     public Iterator<Geometry> iterator() {
         return new Iterator<Geometry>() {
 
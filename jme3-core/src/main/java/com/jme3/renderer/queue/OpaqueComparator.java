@@ -35,23 +35,26 @@ import com.jme3.material.Material;
 import com.jme3.math.vector.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.util.SortUtil;
 
-public class OpaqueComparator implements GeometryComparator {
+public class OpaqueComparator implements SortKeyComparator {
 
     private Camera cam;
     private final Vector3f tempVec  = new Vector3f();
     private final Vector3f tempVec2 = new Vector3f();
+    private final DistanceCache distanceCache = new DistanceCache();
 
     public void setCamera(Camera cam){
         this.cam = cam;
+        distanceCache.setCamera(cam);
     }
 
     public float distanceToCam(Geometry spat){
         if (spat == null)
             return Float.NEGATIVE_INFINITY;
  
-        if (spat.queueDistance != Float.NEGATIVE_INFINITY)
-                return spat.queueDistance;
+        if (distanceCache.contains(spat))
+                return distanceCache.get(spat);
  
         Vector3f camPosition = cam.getLocation();
         Vector3f viewVector = cam.getDirection(tempVec2);
@@ -64,9 +67,7 @@ public class OpaqueComparator implements GeometryComparator {
         }
  
         spatPosition.subtract(camPosition, tempVec);
-        spat.queueDistance = tempVec.dot(viewVector);
- 
-        return spat.queueDistance;
+        return distanceCache.put(spat, tempVec.dot(viewVector));
     }
 
     @Override
@@ -92,4 +93,16 @@ public class OpaqueComparator implements GeometryComparator {
         }
     }
 
+    /**
+     * Packs the material sort id in the high 32 bits and the distance to
+     * the camera in the low 32 bits, so the keys order the same way as
+     * {@link #compare(com.jme3.scene.Geometry, com.jme3.scene.Geometry) }.
+     */
+    @Override
+    public long getSortKey(Geometry geom) {
+        long sortId = (geom.getMaterial().getSortId() ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+        long depth = SortUtil.floatToSortableBits(distanceToCam(geom)) & 0xFFFFFFFFL;
+        return (sortId << 32) | depth;
+    }
+
 }
@@ -257,14 +257,46 @@ public class RenderQueue {
         }
     }
 
+    /**
+     * Adds all geometries of the given list to the given bucket of the
+     * queue, keeping their order.
+     * 
+     * @param list The geometries to add
+     * @param bucket The bucket to add to
+     * 
+     * @see #addToQueue(com.jme3.scene.Geometry, com.jme3.renderer.queue.RenderQueue.Bucket) 
+     */
+    public void addToQueue(GeometryList list, Bucket bucket) {
+        switch (bucket) {
+            case Gui:
+                guiList.addAll(list);
+                break;
+            case Opaque:
+                opaqueList.addAll(list);
+                break;
+            case Sky:
+                skyList.addAll(list);
+                break;
+            case Transparent:
+                transparentList.addAll(list);
+                break;
+            case Translucent:
+                translucentList.addAll(list);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown bucket type: " + bucket);
+        }
+    }
+
     private void renderGeometryList(GeometryList list, RenderManager rm, Camera cam, boolean clear) {
         list.setCamera(cam); // select camera for sorting
         list.sort();
+        rm.renderGeometryList(list);
         for (int i = 0; i < list.size(); i++) {
+            // comparators outside the engine may still rely on the reset
             Geometry obj = list.get(i);
-            assert obj != null;
-            rm.renderGeometry(obj);
             obj.queueDistance = Float.NEGATIVE_INFINITY;
+            obj.queueDistanceStamp = 0;
         }
         if (clear) {
             list.clear();
@@ -292,6 +324,32 @@ public class RenderQueue {
         }
     }
 
+    /**
+     * Returns the list holding the geometries of the given bucket.
+     * <p>
+     * Modifying the list changes what is rendered for the bucket, this is
+     * intended for culling stages that run after the queue was filled.
+     *
+     * @param bucket The bucket
+     * @return The list of the bucket
+     */
+    public GeometryList getList(Bucket bucket) {
+        switch (bucket) {
+            case Gui:
+                return guiList;
+            case Opaque:
+                return opaqueList;
+            case Sky:
+                return skyList;
+            case Transparent:
+                return transparentList;
+            case Translucent:
+                return translucentList;
+            default:
+                throw new UnsupportedOperationException("Unsupported bucket type: " + bucket);
+        }
+    }
+
     public void renderQueue(Bucket bucket, RenderManager rm, Camera cam) {
         renderQueue(bucket, rm, cam, true);
     }
@@ -34,14 +34,19 @@ package com.jme3.renderer.queue;
 import com.jme3.math.vector.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.util.SortUtil;
 
-public class TransparentComparator implements GeometryComparator {
+public class TransparentComparator implements SortKeyComparator {
 
     private Camera cam;
     private final Vector3f tempVec = new Vector3f();
+    private final DistanceCache distanceCache = new DistanceCache();
+    private final DistanceCache viewDistanceCache = new DistanceCache();
 
     public void setCamera(Camera cam){
         this.cam = cam;
+        distanceCache.setCamera(cam);
+        viewDistanceCache.setCamera(cam);
     }
 
     /**
@@ -56,8 +61,8 @@ public class TransparentComparator implements GeometryComparator {
         if (spat == null)
             return Float.NEGATIVE_INFINITY;
 
-        if (spat.queueDistance != Float.NEGATIVE_INFINITY)
-            return spat.queueDistance;
+        if (viewDistanceCache.contains(spat))
+            return viewDistanceCache.get(spat);
 
         Vector3f camPosition = cam.getLocation();
         Vector3f viewVector = cam.getDirection();
@@ -70,21 +75,21 @@ public class TransparentComparator implements GeometryComparator {
         }
 
         spatPosition.subtract(camPosition, tempVec);
-        spat.queueDistance = tempVec.dot(tempVec);
 
         float retval = Math.abs(tempVec.dot(viewVector)
                 / viewVector.dot(viewVector));
         viewVector.mult(retval, tempVec);
 
-        spat.queueDistance = tempVec.length();
-
-        return spat.queueDistance;
+        return viewDistanceCache.put(spat, tempVec.length());
     }
 
     private float distanceToCam(Geometry spat){
+        if (distanceCache.contains(spat))
+            return distanceCache.get(spat);
+
         // NOTE: It is best to check the distance
         // to the bound's closest edge vs. the bound's center here.
-        return spat.getWorldBound().distanceToEdge(cam.getLocation());
+        return distanceCache.put(spat, spat.getWorldBound().distanceToEdge(cam.getLocation()));
     }
 
     public int compare(Geometry o1, Geometry o2) {
@@ -98,4 +103,13 @@ public class TransparentComparator implements GeometryComparator {
         else
             return -1;
     }
+
+    /**
+     * The key is the inverted distance to the camera, so that the keys sort
+     * back-to-front like {@link #compare(com.jme3.scene.Geometry, com.jme3.scene.Geometry) }.
+     */
+    @Override
+    public long getSortKey(Geometry geom) {
+        return ~SortUtil.floatToSortableBits(distanceToCam(geom)) & 0xFFFFFFFFL;
+    }
 }
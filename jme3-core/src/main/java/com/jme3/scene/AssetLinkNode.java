@@ -178,6 +178,7 @@ public class AssetLinkNode extends Node {
             Spatial child = null;
             if (child != null) {
                 child.parent = this;
+                child.setSceneHierarchy(sceneHierarchy);
                 children.add(child);
                 assetChildren.put(modelKey, child);
             } else {
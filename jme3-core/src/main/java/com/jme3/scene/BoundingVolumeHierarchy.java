@@ -0,0 +1,568 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.vector.Vector3f;
+import java.util.ArrayList;
+
+/**
+ * A dynamic bounding volume hierarchy over the geometries of a scene, kept up
+ * to date incrementally.
+ * <p>
+ * Set it on the root node of a scene with
+ * {@link Node#setBoundingVolumeHierarchy(BoundingVolumeHierarchy) }. The
+ * geometries whose world bound is refreshed by
+ * {@link Spatial#updateGeometricState() }, and the ones detached from the
+ * scene, are queued and the tree is updated before the next query. Each
+ * geometry is stored in a leaf whose bound is slightly larger than its world
+ * bound, so that small motions leave the tree untouched, and the tree is kept
+ * balanced with rotations.
+ * <p>
+ * Queries visit the geometries regardless of their cull hint and shadow mode,
+ * it is up to the {@link Visitor} to filter them.
+ */
+public final class BoundingVolumeHierarchy {
+
+    /**
+     * Visits the geometries of a {@link BoundingVolumeHierarchy}.
+     */
+    public interface Visitor {
+
+        /**
+         * @param bound the bound of a subtree, only valid during the call
+         * @return true to visit the subtree
+         */
+        public boolean intersects(BoundingBox bound);
+
+        /**
+         * @param geom a geometry of a visited subtree
+         */
+        public void visit(Geometry geom);
+    }
+
+    /**
+     * Margin added to the leaf bounds, relative to the largest extent.
+     */
+    private static final float FAT_MARGIN = 0.1f;
+    private static final int NULL_NODE = -1;
+
+    /**
+     * minX, minY, minZ, maxX, maxY, maxZ of each node
+     */
+    private float[] bounds;
+    /**
+     * parent of each node, next free node for the nodes of the free list
+     */
+    private int[] parents;
+    private int[] children1;
+    private int[] children2;
+    private int[] heights;
+    private Geometry[] geometries;
+    private int root = NULL_NODE;
+    private int freeList = NULL_NODE;
+    private int nodeCapacity;
+    private int size;
+
+    private final ArrayList<Geometry> dirtyGeometries = new ArrayList<Geometry>();
+    private final float[] tightBound = new float[6];
+    private final BoundingBox queryBound = new BoundingBox();
+    private final Vector3f queryCenter = new Vector3f();
+    private int[] stack = new int[64];
+
+    public BoundingVolumeHierarchy() {
+        allocateArrays(16);
+    }
+
+    /**
+     * @return the number of geometries in the tree, as of the last query
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Visits the geometries of the subtrees whose bound the visitor
+     * intersects. Must not be called from the visitor.
+     *
+     * @param visitor the visitor
+     */
+    public void query(Visitor visitor) {
+        update();
+        if (root == NULL_NODE) {
+            return;
+        }
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (children1[node] == NULL_NODE) {
+                visitor.visit(geometries[node]);
+                continue;
+            }
+            int i = node * 6;
+            queryCenter.set((bounds[i] + bounds[i + 3]) * 0.5f,
+                    (bounds[i + 1] + bounds[i + 4]) * 0.5f,
+                    (bounds[i + 2] + bounds[i + 5]) * 0.5f);
+            queryBound.setCenter(queryCenter);
+            queryBound.setXExtent((bounds[i + 3] - bounds[i]) * 0.5f);
+            queryBound.setYExtent((bounds[i + 4] - bounds[i + 1]) * 0.5f);
+            queryBound.setZExtent((bounds[i + 5] - bounds[i + 2]) * 0.5f);
+            if (visitor.intersects(queryBound)) {
+                if (top + 2 > stack.length) {
+                    int[] newStack = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, newStack, 0, top);
+                    stack = newStack;
+                }
+                stack[top++] = children2[node];
+                stack[top++] = children1[node];
+            }
+        }
+    }
+
+    /**
+     * Applies the queued changes. Called by {@link #query(Visitor) }.
+     */
+    public void update() {
+        synchronized (dirtyGeometries) {
+            for (int i = 0; i < dirtyGeometries.size(); i++) {
+                Geometry geom = dirtyGeometries.get(i);
+                if (geom.hierarchyQueue == this) {
+                    geom.hierarchyQueue = null;
+                }
+                refresh(geom);
+            }
+            dirtyGeometries.clear();
+        }
+    }
+
+    /**
+     * Queues the geometry to be added, moved or removed. May be called
+     * concurrently by a parallel geometric state update.
+     */
+    void markDirty(Geometry geom) {
+        synchronized (dirtyGeometries) {
+            if (geom.hierarchyQueue != this) {
+                geom.hierarchyQueue = this;
+                dirtyGeometries.add(geom);
+            }
+        }
+    }
+
+    /**
+     * Queues all the geometries of the given subtree.
+     */
+    void markDirty(Spatial spatial) {
+        if (spatial instanceof Geometry) {
+            markDirty((Geometry) spatial);
+        } else if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                markDirty(child);
+            }
+        }
+    }
+
+    /**
+     * Removes all the geometries.
+     */
+    void clear() {
+        synchronized (dirtyGeometries) {
+            for (int i = 0; i < dirtyGeometries.size(); i++) {
+                Geometry geom = dirtyGeometries.get(i);
+                if (geom.hierarchyQueue == this) {
+                    geom.hierarchyQueue = null;
+                }
+            }
+            dirtyGeometries.clear();
+        }
+        for (int node = 0; node < nodeCapacity; node++) {
+            Geometry geom = geometries[node];
+            if (geom != null && geom.hierarchy == this) {
+                geom.hierarchy = null;
+                geom.hierarchyLeaf = NULL_NODE;
+            }
+        }
+        allocateArrays(16);
+        root = NULL_NODE;
+        size = 0;
+    }
+
+    private void refresh(Geometry geom) {
+        BoundingVolume worldBound = geom.getWorldBound();
+        boolean indexed = worldBound != null
+                && geom.findBoundingVolumeHierarchy() == this
+                && computeBound(worldBound, tightBound);
+        if (geom.hierarchy == this) {
+            if (indexed) {
+                moveLeaf(geom.hierarchyLeaf);
+            } else {
+                remove(geom);
+            }
+        } else if (indexed) {
+            if (geom.hierarchy != null) {
+                // moved from another scene
+                geom.hierarchy.remove(geom);
+            }
+            int leaf = allocateNode();
+            geometries[leaf] = geom;
+            setFatBound(leaf);
+            insertLeaf(leaf);
+            geom.hierarchy = this;
+            geom.hierarchyLeaf = leaf;
+            size++;
+        }
+    }
+
+    private void remove(Geometry geom) {
+        int leaf = geom.hierarchyLeaf;
+        removeLeaf(leaf);
+        freeNode(leaf);
+        geom.hierarchy = null;
+        geom.hierarchyLeaf = NULL_NODE;
+        size--;
+    }
+
+    private void moveLeaf(int leaf) {
+        int i = leaf * 6;
+        if (bounds[i] <= tightBound[0] && bounds[i + 1] <= tightBound[1] && bounds[i + 2] <= tightBound[2]
+                && bounds[i + 3] >= tightBound[3] && bounds[i + 4] >= tightBound[4] && bounds[i + 5] >= tightBound[5]) {
+            return;
+        }
+        removeLeaf(leaf);
+        setFatBound(leaf);
+        insertLeaf(leaf);
+    }
+
+    private static boolean computeBound(BoundingVolume bv, float[] store) {
+        Vector3f center = bv.getCenter();
+        float x, y, z;
+        if (bv.getType() == BoundingVolume.Type.AABB) {
+            BoundingBox bb = (BoundingBox) bv;
+            x = bb.getXExtent();
+            y = bb.getYExtent();
+            z = bb.getZExtent();
+        } else if (bv.getType() == BoundingVolume.Type.Sphere) {
+            x = y = z = ((BoundingSphere) bv).getRadius();
+        } else {
+            return false;
+        }
+        store[0] = center.x - x;
+        store[1] = center.y - y;
+        store[2] = center.z - z;
+        store[3] = center.x + x;
+        store[4] = center.y + y;
+        store[5] = center.z + z;
+        for (int i = 0; i < 6; i++) {
+            if (Float.isNaN(store[i]) || Float.isInfinite(store[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setFatBound(int leaf) {
+        float margin = FAT_MARGIN * Math.max(tightBound[3] - tightBound[0],
+                Math.max(tightBound[4] - tightBound[1], tightBound[5] - tightBound[2]));
+        int i = leaf * 6;
+        bounds[i] = tightBound[0] - margin;
+        bounds[i + 1] = tightBound[1] - margin;
+        bounds[i + 2] = tightBound[2] - margin;
+        bounds[i + 3] = tightBound[3] + margin;
+        bounds[i + 4] = tightBound[4] + margin;
+        bounds[i + 5] = tightBound[5] + margin;
+    }
+
+    private void allocateArrays(int capacity) {
+        bounds = new float[capacity * 6];
+        parents = new int[capacity];
+        children1 = new int[capacity];
+        children2 = new int[capacity];
+        heights = new int[capacity];
+        geometries = new Geometry[capacity];
+        nodeCapacity = capacity;
+        for (int i = 0; i < capacity; i++) {
+            parents[i] = i + 1 < capacity ? i + 1 : NULL_NODE;
+        }
+        freeList = 0;
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL_NODE) {
+            int capacity = nodeCapacity * 2;
+            float[] newBounds = new float[capacity * 6];
+            System.arraycopy(bounds, 0, newBounds, 0, nodeCapacity * 6);
+            bounds = newBounds;
+            int[] newParents = new int[capacity];
+            System.arraycopy(parents, 0, newParents, 0, nodeCapacity);
+            parents = newParents;
+            int[] newChildren1 = new int[capacity];
+            System.arraycopy(children1, 0, newChildren1, 0, nodeCapacity);
+            children1 = newChildren1;
+            int[] newChildren2 = new int[capacity];
+            System.arraycopy(children2, 0, newChildren2, 0, nodeCapacity);
+            children2 = newChildren2;
+            int[] newHeights = new int[capacity];
+            System.arraycopy(heights, 0, newHeights, 0, nodeCapacity);
+            heights = newHeights;
+            Geometry[] newGeometries = new Geometry[capacity];
+            System.arraycopy(geometries, 0, newGeometries, 0, nodeCapacity);
+            geometries = newGeometries;
+            for (int i = nodeCapacity; i < capacity; i++) {
+                parents[i] = i + 1 < capacity ? i + 1 : NULL_NODE;
+            }
+            freeList = nodeCapacity;
+            nodeCapacity = capacity;
+        }
+        int node = freeList;
+        freeList = parents[node];
+        parents[node] = NULL_NODE;
+        children1[node] = NULL_NODE;
+        children2[node] = NULL_NODE;
+        heights[node] = 0;
+        geometries[node] = null;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        geometries[node] = null;
+        parents[node] = freeList;
+        freeList = node;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL_NODE) {
+            root = leaf;
+            parents[leaf] = NULL_NODE;
+            return;
+        }
+
+        // descend to the sibling whose bound grows the least, see
+        // Catto's dynamic tree
+        int index = root;
+        while (children1[index] != NULL_NODE) {
+            int child1 = children1[index];
+            int child2 = children2[index];
+            float area = area(index);
+            float combinedArea = combinedArea(index, leaf);
+            float cost = 2f * combinedArea;
+            float inheritanceCost = 2f * (combinedArea - area);
+            float cost1 = descendCost(child1, leaf) + inheritanceCost;
+            float cost2 = descendCost(child2, leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? child1 : child2;
+        }
+
+        int sibling = index;
+        int oldParent = parents[sibling];
+        int newParent = allocateNode();
+        parents[newParent] = oldParent;
+        union(leaf, sibling, newParent);
+        heights[newParent] = heights[sibling] + 1;
+        if (oldParent != NULL_NODE) {
+            if (children1[oldParent] == sibling) {
+                children1[oldParent] = newParent;
+            } else {
+                children2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        children1[newParent] = sibling;
+        children2[newParent] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+
+        refit(parents[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+        int parent = parents[leaf];
+        int grandParent = parents[parent];
+        int sibling = children1[parent] == leaf ? children2[parent] : children1[parent];
+        if (grandParent != NULL_NODE) {
+            if (children1[grandParent] == parent) {
+                children1[grandParent] = sibling;
+            } else {
+                children2[grandParent] = sibling;
+            }
+            parents[sibling] = grandParent;
+            freeNode(parent);
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parents[sibling] = NULL_NODE;
+            freeNode(parent);
+        }
+    }
+
+    /**
+     * Balances and updates the bounds and heights from the given node up to
+     * the root.
+     */
+    private void refit(int index) {
+        while (index != NULL_NODE) {
+            index = balance(index);
+            int child1 = children1[index];
+            int child2 = children2[index];
+            heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+            union(child1, child2, index);
+            index = parents[index];
+        }
+    }
+
+    /**
+     * Rotates the higher child of A up if the heights of its children differ
+     * by more than one.
+     *
+     * @return the node that replaced A
+     */
+    private int balance(int iA) {
+        if (children1[iA] == NULL_NODE || heights[iA] < 2) {
+            return iA;
+        }
+        int iB = children1[iA];
+        int iC = children2[iA];
+        int balance = heights[iC] - heights[iB];
+
+        if (balance > 1) {
+            // rotate C up
+            int iF = children1[iC];
+            int iG = children2[iC];
+            children1[iC] = iA;
+            parents[iC] = parents[iA];
+            parents[iA] = iC;
+            replaceChild(parents[iC], iA, iC);
+            if (heights[iF] > heights[iG]) {
+                children2[iC] = iF;
+                children2[iA] = iG;
+                parents[iG] = iA;
+                union(iB, iG, iA);
+                union(iA, iF, iC);
+                heights[iA] = 1 + Math.max(heights[iB], heights[iG]);
+                heights[iC] = 1 + Math.max(heights[iA], heights[iF]);
+            } else {
+                children2[iC] = iG;
+                children2[iA] = iF;
+                parents[iF] = iA;
+                union(iB, iF, iA);
+                union(iA, iG, iC);
+                heights[iA] = 1 + Math.max(heights[iB], heights[iF]);
+                heights[iC] = 1 + Math.max(heights[iA], heights[iG]);
+            }
+            return iC;
+        }
+
+        if (balance < -1) {
+            // rotate B up
+            int iD = children1[iB];
+            int iE = children2[iB];
+            children1[iB] = iA;
+            parents[iB] = parents[iA];
+            parents[iA] = iB;
+            replaceChild(parents[iB], iA, iB);
+            if (heights[iD] > heights[iE]) {
+                children2[iB] = iD;
+                children1[iA] = iE;
+                parents[iE] = iA;
+                union(iC, iE, iA);
+                union(iA, iD, iB);
+                heights[iA] = 1 + Math.max(heights[iC], heights[iE]);
+                heights[iB] = 1 + Math.max(heights[iA], heights[iD]);
+            } else {
+                children2[iB] = iE;
+                children1[iA] = iD;
+                parents[iD] = iA;
+                union(iC, iD, iA);
+                union(iA, iE, iB);
+                heights[iA] = 1 + Math.max(heights[iC], heights[iD]);
+                heights[iB] = 1 + Math.max(heights[iA], heights[iE]);
+            }
+            return iB;
+        }
+
+        return iA;
+    }
+
+    private void replaceChild(int parent, int oldChild, int newChild) {
+        if (parent == NULL_NODE) {
+            root = newChild;
+        } else if (children1[parent] == oldChild) {
+            children1[parent] = newChild;
+        } else {
+            children2[parent] = newChild;
+        }
+    }
+
+    private void union(int a, int b, int store) {
+        int i = a * 6, j = b * 6, k = store * 6;
+        bounds[k] = Math.min(bounds[i], bounds[j]);
+        bounds[k + 1] = Math.min(bounds[i + 1], bounds[j + 1]);
+        bounds[k + 2] = Math.min(bounds[i + 2], bounds[j + 2]);
+        bounds[k + 3] = Math.max(bounds[i + 3], bounds[j + 3]);
+        bounds[k + 4] = Math.max(bounds[i + 4], bounds[j + 4]);
+        bounds[k + 5] = Math.max(bounds[i + 5], bounds[j + 5]);
+    }
+
+    /**
+     * Half the surface area of the bound of the node.
+     */
+    private float area(int node) {
+        int i = node * 6;
+        float x = bounds[i + 3] - bounds[i];
+        float y = bounds[i + 4] - bounds[i + 1];
+        float z = bounds[i + 5] - bounds[i + 2];
+        return x * y + y * z + z * x;
+    }
+
+    private float combinedArea(int a, int b) {
+        int i = a * 6, j = b * 6;
+        float x = Math.max(bounds[i + 3], bounds[j + 3]) - Math.min(bounds[i], bounds[j]);
+        float y = Math.max(bounds[i + 4], bounds[j + 4]) - Math.min(bounds[i + 1], bounds[j + 1]);
+        float z = Math.max(bounds[i + 5], bounds[j + 5]) - Math.min(bounds[i + 2], bounds[j + 2]);
+        return x * y + y * z + z * x;
+    }
+
+    private float descendCost(int child, int leaf) {
+        if (children1[child] == NULL_NODE) {
+            return combinedArea(child, leaf);
+        }
+        return combinedArea(child, leaf) - area(child);
+    }
+}
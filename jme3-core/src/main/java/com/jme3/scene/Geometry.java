@@ -86,6 +86,17 @@ public class Geometry extends Spatial {
      */
     protected int startIndex = -1;
 
+    /**
+     * The {@link BoundingVolumeHierarchy} this geometry is stored in, and
+     * its leaf.
+     */
+    transient BoundingVolumeHierarchy hierarchy;
+    transient int hierarchyLeaf = -1;
+    /**
+     * The {@link BoundingVolumeHierarchy} this geometry is queued in.
+     */
+    transient BoundingVolumeHierarchy hierarchyQueue;
+
     /**
      * Serialization only. Do not use.
      */
@@ -304,6 +315,13 @@ public class Geometry extends Spatial {
                 worldBound = mesh.getBound().transform(worldTransform, worldBound);
             }
         }
+
+        if (sceneHierarchy != null) {
+            sceneHierarchy.markDirty(this);
+        }
+        if (hierarchy != null && hierarchy != sceneHierarchy) {
+            hierarchy.markDirty(this);
+        }
     }
 
     @Override
@@ -322,8 +340,9 @@ public class Geometry extends Spatial {
     @Override
     protected void updateWorldLightList() {
         super.updateWorldLightList();
-        // geometry requires lights to be sorted
-        worldLights.sort(true);
+        // geometry requires lights to be sorted, the list only resorts
+        // itself if its lights changed
+        worldLights.sort(false);
     }
 
     /**
@@ -586,6 +605,11 @@ public class Geometry extends Spatial {
 
         this.cachedWorldMat = cloner.clone(cachedWorldMat);
 
+        // the clone is not in the scene yet
+        this.hierarchy = null;
+        this.hierarchyLeaf = -1;
+        this.hierarchyQueue = null;
+
         // See if we are doing a shallow clone or a deep mesh clone
         boolean shallowClone = (cloner.getCloneFunction(Mesh.class) instanceof IdentityCloneFunction);
 
@@ -50,6 +50,7 @@ import com.jme3.scene.mesh.*;
 import com.jme3.util.BufferUtils;
 import com.jme3.util.IntMap;
 import com.jme3.util.IntMap.Entry;
+import com.jme3.util.NativeObject;
 import com.jme3.util.SafeArrayList;
 import com.jme3.util.clone.Cloner;
 import com.jme3.util.clone.JmeCloneable;
@@ -178,6 +179,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
     private float lineWidth = 1;
 
     private transient int vertexArrayID = -1;
+    private transient NativeObject[] vertexArrays = null;
 
     private int vertCount = -1;
     private int elementCount = -1;
@@ -212,6 +214,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
             clone.buffers = buffers.clone();
             clone.buffersList = new SafeArrayList<VertexBuffer>(VertexBuffer.class,buffersList);
             clone.vertexArrayID = -1;
+            clone.vertexArrays = null;
             if (elementLengths != null) {
                 clone.elementLengths = elementLengths.clone();
             }
@@ -249,6 +252,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
             }
 
             clone.vertexArrayID = -1;
+            clone.vertexArrays = null;
             clone.vertCount = vertCount;
             clone.elementCount = elementCount;
             clone.instanceCount = instanceCount;
@@ -309,6 +313,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
         try {
             Mesh clone = (Mesh)super.clone();
             clone.vertexArrayID = -1;
+            clone.vertexArrays = null;
             return clone;
         } catch (CloneNotSupportedException ex) {
             throw new AssertionError();
@@ -955,6 +960,21 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
         vertexArrayID = id;
     }
 
+    /**
+     * Returns the vertex array objects the renderer created for this mesh,
+     * one per shader it was rendered with. Internal use only.
+     */
+    public NativeObject[] getVertexArrays(){
+        return vertexArrays;
+    }
+
+    /**
+     * Sets the vertex array objects for this mesh. Internal use only.
+     */
+    public void setVertexArrays(NativeObject[] vertexArrays){
+        this.vertexArrays = vertexArrays;
+    }
+
     /**
      * Generates a collision tree for the mesh.
      * Called automatically by {@link #collideWith(com.jme3.collision.Collidable,
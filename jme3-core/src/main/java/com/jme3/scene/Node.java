@@ -45,6 +45,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -83,6 +85,17 @@ public class Node extends Spatial {
      */
     private boolean updateListValid = false;
 
+    /**
+     * If not null, {@link #updateGeometricState()} splits the dirty child
+     * subtrees of this node across the threads of this pool.
+     */
+    private transient ForkJoinPool parallelUpdatePool = null;
+
+    /**
+     * If not null, keeps track of the geometries of this scene.
+     */
+    private transient BoundingVolumeHierarchy boundingVolumeHierarchy = null;
+
     /**
      * Serialization only. Do not use.
      */
@@ -185,6 +198,17 @@ public class Node extends Spatial {
         super.setParent(parent);
     }
 
+    @Override
+    void setSceneHierarchy(BoundingVolumeHierarchy hierarchy) {
+        if (sceneHierarchy == hierarchy) {
+            return;
+        }
+        super.setSceneHierarchy(hierarchy);
+        for (Spatial child : children.getArray()) {
+            child.setSceneHierarchy(hierarchy);
+        }
+    }
+
     private void addUpdateChildren( SafeArrayList<Spatial> results ) {
         for( Spatial child : children.getArray() ) {
             if( child.requiresUpdates() ) {
@@ -242,12 +266,100 @@ public class Node extends Spatial {
         }
     }
 
+    /**
+     * Sets the pool used to update the geometric state of this node's
+     * subtree in parallel.
+     * <p>
+     * When set, {@link #updateGeometricState()} updates sibling subtrees
+     * that need a refresh on the threads of the pool. Only subtrees rooted
+     * at a plain <code>Node</code> are split, any other spatial (geometries,
+     * {@link GeometryGroupNode}s, <code>Node</code> subclasses) has its whole
+     * subtree updated on a single thread. The parent's world bound is merged
+     * from its children in the same order as the serial update so the result
+     * is identical.
+     * <p>
+     * The pool is only used when set on a plain <code>Node</code>, a
+     * <code>Node</code> subclass ignores it and updates on the calling
+     * thread so that its own update logic is not bypassed.
+     *
+     * @param pool the pool to use, or null to update on the calling thread
+     * (the default).
+     */
+    public void setParallelUpdatePool(ForkJoinPool pool) {
+        this.parallelUpdatePool = pool;
+    }
+
+    /**
+     * @return the pool used to update the geometric state of this node's
+     * subtree, or null if it is updated on the calling thread.
+     * @see #setParallelUpdatePool(java.util.concurrent.ForkJoinPool)
+     */
+    public ForkJoinPool getParallelUpdatePool() {
+        return parallelUpdatePool;
+    }
+
+    /**
+     * Sets a bounding volume hierarchy kept up to date over the geometries
+     * of this scene.
+     * <p>
+     * The shadow renderers query it to find occluders and receivers instead
+     * of walking the scene graph for each light and split, see
+     * {@link com.jme3.shadow.ShadowUtil}. The hierarchy is only maintained
+     * while this node is the root of its scene, and a hierarchy can only be
+     * set on one node at a time.
+     *
+     * @param hierarchy the hierarchy, or null to remove it (the default).
+     */
+    public void setBoundingVolumeHierarchy(BoundingVolumeHierarchy hierarchy) {
+        if (boundingVolumeHierarchy == hierarchy) {
+            return;
+        }
+        if (boundingVolumeHierarchy != null) {
+            boundingVolumeHierarchy.clear();
+        }
+        boundingVolumeHierarchy = hierarchy;
+        if (parent == null) {
+            setSceneHierarchy(hierarchy);
+        }
+        if (hierarchy != null) {
+            hierarchy.markDirty(this);
+        }
+    }
+
+    /**
+     * @return the bounding volume hierarchy of this scene, or null
+     * @see #setBoundingVolumeHierarchy(BoundingVolumeHierarchy)
+     */
+    public BoundingVolumeHierarchy getBoundingVolumeHierarchy() {
+        return boundingVolumeHierarchy;
+    }
+
     @Override
     public void updateGeometricState(){
         if (refreshFlags == 0) {
             // This branch has no geometric state that requires updates.
             return;
         }
+        if (parallelUpdatePool != null && getClass() == Node.class) {
+            parallelUpdatePool.invoke(new GeometricStateTask(this));
+            return;
+        }
+
+        updateNodeGeometricState();
+        if (!children.isEmpty()) {
+            // the important part- make sure child geometric state is refreshed
+            // first before updating own world bound. This saves
+            // a round-trip later on.
+            // NOTE 9/19/09
+            // Although it does save a round trip,
+            for (Spatial child : children.getArray()) {
+                child.updateGeometricState();
+            }
+        }
+        updateNodeWorldBound();
+    }
+
+    private void updateNodeGeometricState() {
         if ((refreshFlags & RF_LIGHTLIST) != 0){
             updateWorldLightList();
         }
@@ -261,22 +373,68 @@ public class Node extends Spatial {
         }
 
         refreshFlags &= ~RF_CHILD_LIGHTLIST;
+    }
+
+    private void updateNodeWorldBound() {
+        if ((refreshFlags & RF_BOUND) != 0){
+            updateWorldBound();
+        }
+
+        assert refreshFlags == 0;
+    }
+
+    /**
+     * Parallel version of {@link #updateGeometricState()}, only used
+     * for plain <code>Node</code>s.
+     */
+    private void updateGeometricStateParallel() {
+        if (refreshFlags == 0) {
+            return;
+        }
+
+        updateNodeGeometricState();
         if (!children.isEmpty()) {
-            // the important part- make sure child geometric state is refreshed
-            // first before updating own world bound. This saves
-            // a round-trip later on.
-            // NOTE 9/19/09
-            // Although it does save a round trip,
+            // Children only read the state of this node which is now
+            // up to date, so sibling subtrees can be updated concurrently.
+            ArrayList<GeometricStateTask> tasks = null;
             for (Spatial child : children.getArray()) {
-                child.updateGeometricState();
+                if (child.getClass() == Node.class) {
+                    if (child.refreshFlags != 0) {
+                        if (tasks == null) {
+                            tasks = new ArrayList<GeometricStateTask>(children.size());
+                        }
+                        tasks.add(new GeometricStateTask((Node) child));
+                    }
+                } else {
+                    child.updateGeometricState();
+                }
+            }
+            if (tasks != null) {
+                if (tasks.size() == 1) {
+                    tasks.get(0).compute();
+                } else {
+                    RecursiveAction.invokeAll(tasks);
+                }
             }
         }
+        // children are merged in list order, same as the serial update
+        updateNodeWorldBound();
+    }
 
-        if ((refreshFlags & RF_BOUND) != 0){
-            updateWorldBound();
+    private static final class GeometricStateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Node node;
+
+        GeometricStateTask(Node node) {
+            this.node = node;
         }
 
-        assert refreshFlags == 0;
+        @Override
+        protected void compute() {
+            node.updateGeometricStateParallel();
+        }
     }
 
     /**
@@ -428,6 +586,11 @@ public class Node extends Spatial {
             child.setParent( null );
             logger.log(Level.FINE, "{0}: Child removed.", this.toString());
 
+            BoundingVolumeHierarchy hierarchy = findBoundingVolumeHierarchy();
+            if (hierarchy != null) {
+                hierarchy.markDirty(child);
+            }
+
             // since a child with a bound was detached;
             // our own bound will probably change.
             setBoundRefresh();
@@ -728,6 +891,8 @@ public class Node extends Spatial {
         // or not... after all, we might be cloning a root node in which case
         // cloning this list is fine.
         this.updateList = cloner.clone(updateList);
+
+        this.boundingVolumeHierarchy = null;
     }
     @Override
     public void write(JmeExporter e) throws IOException {
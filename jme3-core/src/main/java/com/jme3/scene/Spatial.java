@@ -154,7 +154,20 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
     protected transient Camera.FrustumIntersect frustrumIntersects = Camera.FrustumIntersect.Intersects;
     protected RenderQueue.Bucket queueBucket = RenderQueue.Bucket.Inherit;
     protected ShadowMode shadowMode = RenderQueue.ShadowMode.Inherit;
+    protected boolean shadowStatic = false;
+    /**
+     * Distance to the camera cached while sorting the render queue. It is
+     * reset to <code>Float.NEGATIVE_INFINITY</code> once the geometry is
+     * rendered, but the engine comparators rely on
+     * {@link #queueDistanceStamp} instead, see
+     * {@link com.jme3.renderer.queue.DistanceCache}.
+     */
     public transient float queueDistance = Float.NEGATIVE_INFINITY;
+    /**
+     * Stamp of the {@link com.jme3.renderer.queue.DistanceCache} state that
+     * {@link #queueDistance} was computed for, 0 if none.
+     */
+    public transient int queueDistanceStamp = 0;
     protected Transform localTransform;
     protected Transform worldTransform;
     protected SafeArrayList<Control> controls = new SafeArrayList<Control>(Control.class);
@@ -169,6 +182,11 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
      * Spatial's parent, or null if it has none.
      */
     protected transient Node parent;
+    /**
+     * The bounding volume hierarchy of the root of this spatial, updated
+     * when the spatial is attached or detached.
+     */
+    transient BoundingVolumeHierarchy sceneHierarchy;
     /**
      * Refresh flags. Indicate what data of the spatial need to be
      * updated to reflect the correct state.
@@ -969,6 +987,26 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
      */
     protected void setParent(Node parent) {
         this.parent = parent;
+        if (parent != null) {
+            setSceneHierarchy(parent.sceneHierarchy);
+        } else {
+            setSceneHierarchy(this instanceof Node ? ((Node) this).getBoundingVolumeHierarchy() : null);
+        }
+    }
+
+    /**
+     * Sets the bounding volume hierarchy of the root of this spatial.
+     */
+    void setSceneHierarchy(BoundingVolumeHierarchy hierarchy) {
+        sceneHierarchy = hierarchy;
+    }
+
+    /**
+     * @return the bounding volume hierarchy of the root node of this
+     * spatial, or null
+     */
+    BoundingVolumeHierarchy findBoundingVolumeHierarchy() {
+        return sceneHierarchy;
     }
 
     /**
@@ -1414,6 +1452,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
             }
 
             clone.parent = null;
+            clone.sceneHierarchy = null;
             clone.setBoundRefresh();
             clone.setTransformRefresh();
             clone.setLightListRefresh();
@@ -1500,6 +1539,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
         // Clone all of the fields that need fix-ups and/or potential
         // sharing.
         this.parent = cloner.clone(parent);
+        this.sceneHierarchy = null;
         this.worldBound = cloner.clone(worldBound);
         this.worldLights = cloner.clone(worldLights);
         this.localLights = cloner.clone(localLights);
@@ -1607,6 +1647,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
         capsule.write(batchHint, "batch_hint", BatchHint.Inherit);
         capsule.write(queueBucket, "queue", RenderQueue.Bucket.Inherit);
         capsule.write(shadowMode, "shadow_mode", ShadowMode.Inherit);
+        capsule.write(shadowStatic, "shadow_static", false);
         capsule.write(localTransform, "transform", Transform.IDENTITY);
         capsule.write(localLights, "lights", null);
         capsule.writeSavableArrayList(new ArrayList(localOverrides), "overrides", null);
@@ -1627,6 +1668,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
                 RenderQueue.Bucket.Inherit);
         shadowMode = ic.readEnum("shadow_mode", ShadowMode.class,
                 ShadowMode.Inherit);
+        shadowStatic = ic.readBoolean("shadow_static", false);
 
         localTransform = (Transform) ic.readSavable("transform", Transform.IDENTITY);
 
@@ -1749,6 +1791,37 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
         return shadowMode;
     }
 
+    /**
+     * Hints that the shadow this spatial casts does not change, because
+     * neither the spatial nor its mesh move. The hint applies to all
+     * children of this spatial.
+     * <p>
+     * Shadow renderers that cache static occluders (see
+     * {@link com.jme3.shadow.AbstractShadowRenderer#setStaticShadowCaching(boolean) })
+     * render such geometries once into a cached shadow map, and again only
+     * when their world bound changes.
+     *
+     * @param shadowStatic true if the shadow of this spatial is static
+     */
+    public void setShadowStatic(boolean shadowStatic) {
+        this.shadowStatic = shadowStatic;
+    }
+
+    /**
+     * @return true if this spatial or one of its parents was hinted to
+     * cast a static shadow.
+     *
+     * @see Spatial#setShadowStatic(boolean)
+     */
+    public boolean isShadowStatic() {
+        for (Spatial s = this; s != null; s = s.parent) {
+            if (s.shadowStatic) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns this spatial's last frustum intersection result. This int is set
      * when a check is made to determine if the bounds of the object fall inside
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.instancing;
+
+import com.jme3.material.MatParamOverride;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.shader.VarType;
+import com.jme3.util.BufferUtils;
+import com.jme3.util.TempVars;
+import java.nio.FloatBuffer;
+
+/**
+ * <code>InstancedBatch</code> renders a run of regular geometries that
+ * share the same mesh and material as a single instanced draw call.
+ * <p>
+ * Unlike {@link InstancedNode}, the geometries stay where they are in the
+ * scene graph: the batch is filled with their world transforms right before
+ * it is rendered, see
+ * {@link com.jme3.renderer.RenderManager#setDynamicInstancing(boolean) }.
+ * It takes the world lights of the first geometry and the merged bounds of
+ * all of them, which is what light filtering sees. Instancing is enabled
+ * with a material parameter override, so the shared material is left as is.
+ */
+public final class InstancedBatch extends InstancedGeometry {
+
+    private static final int INITIAL_INSTANCES = 32;
+
+    private final VertexBuffer transforms;
+    private final VertexBuffer[] instanceData;
+    private int numInstances;
+
+    public InstancedBatch() {
+        super("InstancedBatch");
+        transforms = new VertexBuffer(Type.InstanceData);
+        transforms.setInstanced(true);
+        transforms.setupData(Usage.Stream, INSTANCE_SIZE, Format.Float,
+                BufferUtils.createFloatBuffer(INITIAL_INSTANCES * INSTANCE_SIZE));
+        instanceData = new VertexBuffer[]{transforms};
+
+        // the batch is never updated as part of a scene graph, so the
+        // override goes straight to the world overrides as well
+        MatParamOverride useInstancing = new MatParamOverride(VarType.Boolean, "UseInstancing", true);
+        addMatParamOverride(useInstancing);
+        worldOverrides.add(useInstancing);
+    }
+
+    /**
+     * Fills the batch with the given geometries, which must all share the
+     * mesh, material, LOD level and world lights of the first one.
+     *
+     * @param geometries The list holding the geometries
+     * @param start Index of the first geometry
+     * @param end Index after the last geometry
+     */
+    public void setGeometries(GeometryList geometries, int start, int end) {
+        Geometry first = geometries.get(start);
+        setMesh(first.getMesh());
+        setMaterial(first.getMaterial());
+        lodLevel = first.getLodLevel();
+        worldLights = first.getWorldLightList();
+        worldBound = first.getWorldBound().clone(worldBound);
+
+        numInstances = end - start;
+        FloatBuffer fb = (FloatBuffer) transforms.getData();
+        if (fb.capacity() < numInstances * INSTANCE_SIZE) {
+            BufferUtils.destroyDirectBuffer(fb);
+            int capacity = Math.max(numInstances, fb.capacity() / INSTANCE_SIZE * 2);
+            fb = BufferUtils.createFloatBuffer(capacity * INSTANCE_SIZE);
+        }
+        fb.clear();
+
+        TempVars vars = TempVars.get();
+        float[] temp = vars.matrixWrite;
+        for (int i = start; i < end; i++) {
+            Geometry geom = geometries.get(i);
+            updateInstance(geom.getWorldMatrix(), temp, 0, vars.tempMat3, vars.quat1);
+            fb.put(temp);
+            if (i > start) {
+                worldBound.mergeLocal(geom.getWorldBound());
+            }
+        }
+        vars.release();
+
+        fb.flip();
+        transforms.updateData(fb);
+
+        // the bound and lights are set directly, nothing to refresh
+        refreshFlags = 0;
+    }
+
+    /**
+     * Releases the references to the geometries' mesh, material and lights.
+     */
+    public void clear() {
+        mesh = null;
+        material = null;
+        worldLights = null;
+        numInstances = 0;
+    }
+
+    @Override
+    public int getActualNumInstances() {
+        return numInstances;
+    }
+
+    @Override
+    public VertexBuffer[] getAllInstanceData() {
+        return instanceData;
+    }
+}
@@ -55,7 +55,7 @@ import java.util.Arrays;
 
 public class InstancedGeometry extends Geometry {
 
-    private static final int INSTANCE_SIZE = 16;
+    static final int INSTANCE_SIZE = 16;
 
     private VertexBuffer[] globalInstanceData;
     private VertexBuffer transformInstanceData;
@@ -135,9 +135,9 @@ public class InstancedGeometry extends Geometry {
         return transformInstanceData;
     }
 
-    private void updateInstance(Matrix4f worldMatrix, float[] store,
-                                int offset, Matrix3f tempMat3,
-                                Quaternion tempQuat) {
+    static void updateInstance(Matrix4f worldMatrix, float[] store,
+                               int offset, Matrix3f tempMat3,
+                               Quaternion tempQuat) {
         worldMatrix.toRotationMatrix(tempMat3);
         tempMat3.invertLocal();
 
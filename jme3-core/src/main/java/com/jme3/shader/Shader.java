@@ -31,14 +31,24 @@
  */
 package com.jme3.shader;
 
+import com.jme3.material.MaterialDef;
+import com.jme3.math.vector.ColorRGBA;
+import com.jme3.math.vector.Quaternion;
+import com.jme3.math.vector.Vector2f;
+import com.jme3.math.vector.Vector3f;
+import com.jme3.math.vector.Vector4f;
 import com.jme3.renderer.Renderer;
 import com.jme3.scene.VertexBuffer;
 import com.jme3.util.IntMap;
 import com.jme3.util.IntMap.Entry;
 import com.jme3.util.ListMap;
 import com.jme3.util.NativeObject;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 
 public final class Shader extends NativeObject {
     
@@ -51,6 +61,23 @@ public final class Shader extends NativeObject {
      * Maps uniform name to the uniform variable.
      */
     private final ListMap<String, Uniform> uniforms;
+
+    /**
+     * Uniforms indexed by material parameter handle for each material
+     * definition using this shader, see
+     * {@link #getUniform(com.jme3.material.MaterialDef, int, java.lang.String) }.
+     * The table of the last definition is kept aside to skip the map lookup.
+     */
+    private final IdentityHashMap<MaterialDef, Uniform[]> uniformSlots = new IdentityHashMap<>();
+    private MaterialDef lastSlotsDef;
+    private Uniform[] lastSlots;
+
+    /**
+     * Compact copy of the values last uploaded for the uniforms of this
+     * shader, each uniform owns a range of raw 32 bit words.
+     */
+    private int[] uniformShadow = new int[64];
+    private int uniformShadowSize;
     
     /**
      * Uniforms bound to {@link UniformBinding}s.
@@ -64,6 +91,11 @@ public final class Shader extends NativeObject {
      */
     private final IntMap<Attribute> attribs;
 
+    /**
+     * Bit mask of the {@link UniformBlock} binding points the shader uses.
+     */
+    private int uniformBlocks;
+
 
     /**
      * Creates a new shader, {@link #initialize() } must be called
@@ -139,8 +171,49 @@ public final class Shader extends NativeObject {
         return uniform;
     }
 
+    /**
+     * Returns the uniform stored in the given slot, creating it with
+     * {@link #getUniform(java.lang.String) } the first time the slot is used.
+     * <p>
+     * The material system uses the {@link com.jme3.material.MaterialDef}
+     * parameter handle as the slot, so the per-draw parameter upload does
+     * not need to look up the uniform by name. A shader may be shared by
+     * several material definitions, each one has its own slot table.
+     *
+     * @param def The material definition whose parameter handles are the slots
+     * @param slot The slot index
+     * @param name The name of the uniform, used when the slot is empty
+     * @return The uniform
+     */
+    public Uniform getUniform(MaterialDef def, int slot, String name){
+        Uniform[] slots = lastSlots;
+        if (def != lastSlotsDef || slots == null) {
+            slots = uniformSlots.get(def);
+            if (slots == null) {
+                slots = new Uniform[Math.max(16, slot + 1)];
+                uniformSlots.put(def, slots);
+            }
+            lastSlotsDef = def;
+            lastSlots = slots;
+        }
+        if (slot >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slots.length * 2, slot + 1));
+            uniformSlots.put(def, slots);
+            lastSlots = slots;
+        }
+        Uniform uniform = slots[slot];
+        if (uniform == null) {
+            uniform = getUniform(name);
+            slots[slot] = uniform;
+        }
+        return uniform;
+    }
+
     public void removeUniform(String name){
         uniforms.remove(name);
+        uniformSlots.clear();
+        lastSlotsDef = null;
+        lastSlots = null;
     }
 
     public Attribute getAttribute(VertexBuffer.Type attribType){
@@ -162,6 +235,159 @@ public final class Shader extends NativeObject {
         return boundUniforms;
     }
 
+    /**
+     * Returns a bit mask of the {@link UniformBlock}s declared by this
+     * shader. Bit <code>n</code> is set if the shader uses the block with
+     * binding point <code>n</code>. Only valid once the shader is linked.
+     *
+     * @return The uniform block mask
+     */
+    public int getUniformBlocks() {
+        return uniformBlocks;
+    }
+
+    /**
+     * Internal use only. Set by the renderer after linking.
+     *
+     * @param uniformBlocks The uniform block mask
+     * @see #getUniformBlocks()
+     */
+    public void setUniformBlocks(int uniformBlocks) {
+        this.uniformBlocks = uniformBlocks;
+    }
+
+    /**
+     * Internal use only. Called by the renderer before it uploads the
+     * value of the given uniform.
+     * <p>
+     * The value is compared with the copy of the value that was last
+     * uploaded for the uniform, and the copy is updated.
+     *
+     * @param uniform The uniform to check, must belong to this shader
+     * @return false if the value is identical to the uploaded one and the
+     * upload can be skipped, true otherwise
+     */
+    public boolean updateUniformShadow(Uniform uniform) {
+        VarType type = uniform.getVarType();
+        Object value = uniform.getValue();
+        FloatBuffer fb = null;
+        IntBuffer ib = null;
+        int count;
+        switch (type) {
+            case Float:
+            case Int:
+            case Boolean:
+                count = 1;
+                break;
+            case Vector2:
+                count = 2;
+                break;
+            case Vector3:
+                count = 3;
+                break;
+            case Vector4:
+                count = 4;
+                break;
+            case IntArray:
+                ib = (IntBuffer) value;
+                count = ib.remaining();
+                break;
+            case Matrix3:
+            case Matrix4:
+            case FloatArray:
+            case Vector2Array:
+            case Vector3Array:
+            case Vector4Array:
+            case Matrix3Array:
+            case Matrix4Array:
+                fb = uniform.getMultiData();
+                count = fb.remaining();
+                break;
+            default:
+                return true;
+        }
+
+        boolean changed = false;
+        int offset = uniform.shadowOffset;
+        if (offset < 0 || uniform.shadowLength < count) {
+            offset = uniformShadowSize;
+            if (offset + count > uniformShadow.length) {
+                uniformShadow = Arrays.copyOf(uniformShadow, Math.max(uniformShadow.length * 2, offset + count));
+            }
+            uniformShadowSize += count;
+            uniform.shadowOffset = offset;
+            uniform.shadowLength = count;
+            changed = true;
+        }
+
+        switch (type) {
+            case Float:
+                changed |= updateShadow(offset, ((Float) value).floatValue());
+                break;
+            case Int:
+                changed |= updateShadow(offset, ((Integer) value).intValue());
+                break;
+            case Boolean:
+                changed |= updateShadow(offset, ((Boolean) value) ? 1 : 0);
+                break;
+            case Vector2:
+                Vector2f v2 = (Vector2f) value;
+                changed |= updateShadow(offset, v2.x);
+                changed |= updateShadow(offset + 1, v2.y);
+                break;
+            case Vector3:
+                Vector3f v3 = (Vector3f) value;
+                changed |= updateShadow(offset, v3.x);
+                changed |= updateShadow(offset + 1, v3.y);
+                changed |= updateShadow(offset + 2, v3.z);
+                break;
+            case Vector4:
+                if (value instanceof ColorRGBA) {
+                    ColorRGBA c = (ColorRGBA) value;
+                    changed |= updateShadow(offset, c.r);
+                    changed |= updateShadow(offset + 1, c.g);
+                    changed |= updateShadow(offset + 2, c.b);
+                    changed |= updateShadow(offset + 3, c.a);
+                } else if (value instanceof Vector4f) {
+                    Vector4f v4 = (Vector4f) value;
+                    changed |= updateShadow(offset, v4.x);
+                    changed |= updateShadow(offset + 1, v4.y);
+                    changed |= updateShadow(offset + 2, v4.z);
+                    changed |= updateShadow(offset + 3, v4.w);
+                } else {
+                    Quaternion q = (Quaternion) value;
+                    changed |= updateShadow(offset, q.getX());
+                    changed |= updateShadow(offset + 1, q.getY());
+                    changed |= updateShadow(offset + 2, q.getZ());
+                    changed |= updateShadow(offset + 3, q.getW());
+                }
+                break;
+            case IntArray:
+                for (int i = 0, pos = ib.position(); i < count; i++) {
+                    changed |= updateShadow(offset + i, ib.get(pos + i));
+                }
+                break;
+            default:
+                for (int i = 0, pos = fb.position(); i < count; i++) {
+                    changed |= updateShadow(offset + i, fb.get(pos + i));
+                }
+                break;
+        }
+        return changed;
+    }
+
+    private boolean updateShadow(int index, float value) {
+        return updateShadow(index, Float.floatToRawIntBits(value));
+    }
+
+    private boolean updateShadow(int index, int bits) {
+        if (uniformShadow[index] == bits) {
+            return false;
+        }
+        uniformShadow[index] = bits;
+        return true;
+    }
+
     public Collection<ShaderSource> getSources(){
         return shaderSourceList;
     }
@@ -217,6 +443,7 @@ public final class Shader extends NativeObject {
                 uniform.reset(); // fixes issue with re-initialization
             }
         }
+        uniformShadowSize = 0;
         if (attribs != null) {
             for (Entry<Attribute> entry : attribs) {
                 entry.getValue().location = ShaderVariable.LOC_UNKNOWN;
@@ -240,6 +467,7 @@ public final class Shader extends NativeObject {
         for (ShaderSource source : shaderSourceList){
             source.resetObject();
         }
+        uniformBlocks = 0;
         setUpdateNeeded();
     }
 
@@ -77,6 +77,13 @@ public class Uniform extends ShaderVariable {
      */
     protected boolean setByCurrentMaterial = false;
 
+    /**
+     * Range of the value last uploaded for this uniform in the shadow
+     * copy kept by the owning {@link Shader}, -1 if nothing was uploaded.
+     */
+    int shadowOffset = -1;
+    int shadowLength;
+
     @Override
     public int hashCode() {
         int hash = 5;
@@ -434,6 +441,7 @@ public class Uniform extends ShaderVariable {
         setByCurrentMaterial = false;
         location = -2;
         updateNeeded = true;
+        shadowOffset = -1;
     }
 
     public void deleteNativeBuffers() {
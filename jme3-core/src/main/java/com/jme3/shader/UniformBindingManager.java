@@ -41,6 +41,7 @@ import com.jme3.math.vector.Vector4f;
 import com.jme3.renderer.Camera;
 import com.jme3.renderer.RenderManager;
 import com.jme3.system.Timer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 
 /**
@@ -50,11 +51,28 @@ import java.util.ArrayList;
  * The {@link #updateUniformBindings(java.util.List) } will update
  * a given list of uniforms based on the current state
  * of the manager.
+ * <p>
+ * The manager also fills two {@link UniformBlock}s: <code>g_CameraBlock</code>
+ * with the per-camera bindings, which only changes when the camera, viewport
+ * or frame changes, and <code>g_ObjectBlock</code> with the per-object
+ * transforms. Shaders that declare these blocks (see
+ * <code>Common/ShaderLib/UniformBlocks.glsllib</code>) get the bindings
+ * from uniform buffers instead of individual uniforms.
  * 
  * @author Kirill Vainer
  */
 public class UniformBindingManager {
 
+    /**
+     * Binding point of the per-camera uniform block.
+     */
+    public static final int CAMERA_BLOCK = 0;
+
+    /**
+     * Binding point of the per-object uniform block.
+     */
+    public static final int OBJECT_BLOCK = 1;
+
     private Timer timer;
     private float near, far;
     private Float time, tpf;
@@ -84,15 +102,63 @@ public class UniformBindingManager {
     private Vector2f resolutionInv = new Vector2f();
     private Vector2f nearFar = new Vector2f();
 
+    // std140 layouts, see UniformBlocks.glsllib
+    private final UniformBlock cameraBlock = new UniformBlock("g_CameraBlock", CAMERA_BLOCK, 80,
+            UniformBinding.ViewMatrix, UniformBinding.ProjectionMatrix,
+            UniformBinding.ViewProjectionMatrix, UniformBinding.ViewPort,
+            UniformBinding.CameraPosition, UniformBinding.CameraDirection,
+            UniformBinding.CameraLeft, UniformBinding.CameraUp,
+            UniformBinding.Resolution, UniformBinding.ResolutionInverse,
+            UniformBinding.FrustumNearFar, UniformBinding.Aspect,
+            UniformBinding.Time, UniformBinding.Tpf);
+    private final UniformBlock objectBlock = new UniformBlock("g_ObjectBlock", OBJECT_BLOCK, 72,
+            UniformBinding.WorldMatrix, UniformBinding.WorldViewMatrix,
+            UniformBinding.WorldViewProjectionMatrix, UniformBinding.NormalMatrix,
+            UniformBinding.WorldMatrixInverseTranspose);
+    private final UniformBlock[] uniformBlocks = {cameraBlock, objectBlock};
+    private boolean cameraBlockChanged = true;
+    private boolean objectBlockChanged = true;
+
+    /**
+     * Returns the uniform blocks filled by this manager, indexed by their
+     * binding point.
+     *
+     * @return The uniform blocks
+     * @see com.jme3.renderer.Renderer#setUniformBlocks(com.jme3.shader.UniformBlock[])
+     */
+    public UniformBlock[] getUniformBlocks() {
+        return uniformBlocks;
+    }
+
     /**
      * Internal use only.
      * Updates the given list of uniforms with {@link UniformBinding uniform bindings}
      * based on the current world state.
      */
     public void updateUniformBindings(Shader shader) {
+        int blocks;
+        if (shader.isUpdateNeeded()) {
+            // not linked yet, so it is not known which blocks the shader
+            // declares: fill all of them and set the uniforms as well
+            updateCameraBlock();
+            updateObjectBlock();
+            blocks = 0;
+        } else {
+            blocks = shader.getUniformBlocks();
+            if ((blocks & (1 << CAMERA_BLOCK)) != 0) {
+                updateCameraBlock();
+            }
+            if ((blocks & (1 << OBJECT_BLOCK)) != 0) {
+                updateObjectBlock();
+            }
+        }
+
         ArrayList<Uniform> params = shader.getBoundUniforms();
         for (int i = 0; i < params.size(); i++) {
             Uniform u = params.get(i);
+            if (blocks != 0 && isInUniformBlock(u.getBinding(), blocks)) {
+                continue;
+            }
             switch (u.getBinding()) {
                 case WorldMatrix:
                     u.setValue(VarType.Matrix4, worldMatrix);
@@ -215,6 +281,73 @@ public class UniformBindingManager {
         }
     }
 
+    private boolean isInUniformBlock(UniformBinding binding, int blocks) {
+        return ((blocks & (1 << CAMERA_BLOCK)) != 0 && cameraBlock.contains(binding))
+                || ((blocks & (1 << OBJECT_BLOCK)) != 0 && objectBlock.contains(binding));
+    }
+
+    private void updateCameraBlock() {
+        if (!cameraBlockChanged) {
+            return;
+        }
+        FloatBuffer data = cameraBlock.getData();
+        data.clear();
+        viewMatrix.fillFloatBuffer(data, true);
+        projMatrix.fillFloatBuffer(data, true);
+        viewProjMatrix.fillFloatBuffer(data, true);
+        data.put(viewX).put(viewY).put(viewWidth).put(viewHeight);
+        putVec3(data, camLoc);
+        putVec3(data, camDir);
+        putVec3(data, camLeft);
+        putVec3(data, camUp);
+        data.put(viewWidth).put(viewHeight);
+        data.put(1f / viewWidth).put(1f / viewHeight);
+        data.put(near).put(far);
+        data.put(((float) viewWidth) / viewHeight);
+        data.put(time != null ? time : 0f);
+        data.put(tpf != null ? tpf : 0f);
+        data.clear();
+        cameraBlock.setUpdateNeeded();
+        cameraBlockChanged = false;
+    }
+
+    private void updateObjectBlock() {
+        if (!objectBlockChanged) {
+            return;
+        }
+        FloatBuffer data = objectBlock.getData();
+        data.clear();
+        worldMatrix.fillFloatBuffer(data, true);
+        worldViewMatrix.set(viewMatrix);
+        worldViewMatrix.multLocal(worldMatrix);
+        worldViewMatrix.fillFloatBuffer(data, true);
+        worldViewProjMatrix.set(viewProjMatrix);
+        worldViewProjMatrix.multLocal(worldMatrix);
+        worldViewProjMatrix.fillFloatBuffer(data, true);
+        worldViewMatrix.toRotationMatrix(normalMatrix);
+        normalMatrix.invertLocal();
+        normalMatrix.transposeLocal();
+        putMat3(data, normalMatrix);
+        worldMatrix.toRotationMatrix(worldMatrixInvTrsp);
+        worldMatrixInvTrsp.invertLocal().transposeLocal();
+        putMat3(data, worldMatrixInvTrsp);
+        data.clear();
+        objectBlock.setUpdateNeeded();
+        objectBlockChanged = false;
+    }
+
+    private static void putVec3(FloatBuffer data, Vector3f vec) {
+        // std140 aligns vec3 to 16 bytes
+        data.put(vec.x).put(vec.y).put(vec.z).put(0f);
+    }
+
+    private static void putMat3(FloatBuffer data, Matrix3f mat) {
+        // std140 stores mat3 as three vec4 columns
+        for (int col = 0; col < 3; col++) {
+            data.put(mat.get(0, col)).put(mat.get(1, col)).put(mat.get(2, col)).put(0f);
+        }
+    }
+
     /**
      * Internal use only. Sets the world matrix to use for future
      * rendering. This has no effect unless objects are rendered manually
@@ -225,7 +358,10 @@ public class UniformBindingManager {
      * @param mat The world matrix to set
      */
     public void setWorldMatrix(Matrix4f mat) {
-        worldMatrix.set(mat);
+        if (!worldMatrix.equals(mat)) {
+            worldMatrix.set(mat);
+            objectBlockChanged = true;
+        }
     }
 
     /**
@@ -250,6 +386,9 @@ public class UniformBindingManager {
 
         near = cam.getFrustumNear();
         far = cam.getFrustumFar();
+
+        cameraBlockChanged = true;
+        objectBlockChanged = true;
     }
 
     public void setViewPort(int viewX, int viewY, int viewWidth, int viewHeight) {
@@ -257,6 +396,7 @@ public class UniformBindingManager {
         this.viewY = viewY;
         this.viewWidth = viewWidth;
         this.viewHeight = viewHeight;
+        cameraBlockChanged = true;
     }
  
     /**
@@ -268,5 +408,6 @@ public class UniformBindingManager {
         // time for this frame to avoid inter-frame drift.
         time = timer.getTimeInSeconds();
         tpf = timer.getTimePerFrame();
+        cameraBlockChanged = true;
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shader;
+
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * A <code>UniformBlock</code> holds the data of a std140 uniform block
+ * that provides values of {@link UniformBinding}s to shaders.
+ * <p>
+ * Shaders that declare a block with the name of a <code>UniformBlock</code>
+ * get the values of its bindings from a uniform buffer, instead of having
+ * each uniform set separately. The blocks are filled by the
+ * {@link UniformBindingManager} and uploaded by the renderer.
+ *
+ * @see Shader#getUniformBlocks()
+ */
+public final class UniformBlock {
+
+    private final String name;
+    private final int binding;
+    private final FloatBuffer data;
+    private final EnumSet<UniformBinding> bindings;
+    private int id = -1;
+    private boolean updateNeeded = true;
+
+    /**
+     * Creates a new uniform block.
+     *
+     * @param name The name of the block in GLSL
+     * @param binding The uniform buffer binding point of the block
+     * @param size The size of the block in floats
+     * @param bindings The uniform bindings the block provides
+     */
+    public UniformBlock(String name, int binding, int size, UniformBinding... bindings) {
+        this.name = name;
+        this.binding = binding;
+        this.data = BufferUtils.createFloatBuffer(size);
+        this.bindings = EnumSet.noneOf(UniformBinding.class);
+        this.bindings.addAll(Arrays.asList(bindings));
+    }
+
+    /**
+     * @return The name of the block in GLSL.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The uniform buffer binding point of the block.
+     */
+    public int getBinding() {
+        return binding;
+    }
+
+    /**
+     * @return The data of the block, in std140 layout.
+     */
+    public FloatBuffer getData() {
+        return data;
+    }
+
+    /**
+     * Returns true if the block provides the value of the given binding,
+     * in which case the uniform does not need to be set on shaders that
+     * declare the block.
+     *
+     * @param binding The binding to check
+     * @return True if the block contains the binding
+     */
+    public boolean contains(UniformBinding binding) {
+        return bindings.contains(binding);
+    }
+
+    /**
+     * @return The id of the uniform buffer, or -1 if not created yet.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Internal use only. Sets the id of the uniform buffer.
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public boolean isUpdateNeeded() {
+        return updateNeeded;
+    }
+
+    public void setUpdateNeeded() {
+        updateNeeded = true;
+    }
+
+    public void clearUpdateNeeded() {
+        updateNeeded = false;
+    }
+
+    @Override
+    public String toString() {
+        return "UniformBlock[name=" + name + ", binding=" + binding + "]";
+    }
+}
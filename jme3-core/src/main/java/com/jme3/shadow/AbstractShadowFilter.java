@@ -282,6 +282,50 @@ public abstract class AbstractShadowFilter<T extends AbstractShadowRenderer> ext
         return shadowRenderer.isRenderBackFacesShadows();
     }
 
+    /**
+     * Enables caching of static occluders, see
+     * {@link AbstractShadowRenderer#setStaticShadowCaching(boolean) }.
+     *
+     * @param staticShadowCaching true to cache static occluders
+     */
+    public void setStaticShadowCaching(boolean staticShadowCaching) {
+        shadowRenderer.setStaticShadowCaching(staticShadowCaching);
+    }
+
+    /**
+     * @return true if static occluders are cached
+     */
+    public boolean isStaticShadowCaching() {
+        return shadowRenderer.isStaticShadowCaching();
+    }
+
+    /**
+     * Forces the static occluders to be rendered again in the next frame,
+     * see {@link AbstractShadowRenderer#invalidateStaticShadowMaps() }.
+     */
+    public void invalidateStaticShadowMaps() {
+        shadowRenderer.invalidateStaticShadowMaps();
+    }
+
+    /**
+     * Enables rendering all the shadow maps in a single pass, see
+     * {@link AbstractShadowRenderer#setSinglePassShadowMaps(boolean) }.
+     *
+     * @param singlePassShadowMaps true to render the shadow maps in a single
+     * pass
+     */
+    public void setSinglePassShadowMaps(boolean singlePassShadowMaps) {
+        shadowRenderer.setSinglePassShadowMaps(singlePassShadowMaps);
+    }
+
+    /**
+     * @return true if the shadow maps are rendered in a single pass when
+     * supported
+     */
+    public boolean isSinglePassShadowMaps() {
+        return shadowRenderer.isSinglePassShadowMaps();
+    }
+
     /**
      * returns the pre shadows pass render state.
      * use it to adjust the RenderState parameters of the pre shadow pass.
@@ -37,6 +37,7 @@ import com.jme3.export.JmeExporter;
 import com.jme3.export.JmeImporter;
 import com.jme3.export.OutputCapsule;
 import com.jme3.export.Savable;
+import com.jme3.material.MatParamOverride;
 import com.jme3.material.Material;
 import com.jme3.material.RenderState;
 import com.jme3.math.matrix.Matrix4f;
@@ -56,16 +57,21 @@ import com.jme3.renderer.queue.RenderQueue.ShadowMode;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.debug.WireFrustum;
+import com.jme3.shader.VarType;
 import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.Image;
 import com.jme3.texture.Image.Format;
 import com.jme3.texture.Texture.MagFilter;
 import com.jme3.texture.Texture.MinFilter;
 import com.jme3.texture.Texture.ShadowCompareMode;
 import com.jme3.texture.Texture2D;
+import com.jme3.texture.TextureArray;
+import com.jme3.texture.image.ColorSpace;
 import com.jme3.ui.Picture;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 
 /**
@@ -123,6 +129,32 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable
      * true to skip the post pass when there are no shadow casters
      */
     protected boolean skipPostPass;
+    /**
+     * true to render static occluders into cached shadow maps
+     */
+    protected boolean staticShadowCaching = false;
+    private StaticShadowMap[] staticShadowMaps;
+    private Texture2D staticDummyTex;
+    private final GeometryList staticOccluders = new GeometryList(new OpaqueComparator());
+    private final GeometryList dynamicOccluders = new GeometryList(new OpaqueComparator());
+    private final int[] dirtyRect = new int[4];
+    /**
+     * true to render all the shadow maps in a single pass
+     */
+    protected boolean singlePassShadowMaps = false;
+    /**
+     * maximum number of shadow maps the PreShadowLayered technique renders
+     */
+    private static final int MAX_SINGLE_PASS_SHADOW_MAPS = 4;
+    private static final EnumSet<Caps> SINGLE_PASS_CAPS = EnumSet.of(Caps.OpenGL32,
+            Caps.GeometryShader, Caps.TextureArray, Caps.FrameBufferBlit);
+    private FrameBuffer layeredShadowFB;
+    private FrameBuffer[] shadowLayerFB;
+    private Material layeredPreshadowMat;
+    private final ShadowUtil.SplitOccluders splitOccluders = new ShadowUtil.SplitOccluders();
+    private final MatParamOverride splitMatricesOverride
+            = new MatParamOverride(VarType.Matrix4Array, "SplitViewProjectionMatrices", null);
+    private final MatParamOverride splitMaskOverride = new MatParamOverride(VarType.Int, "SplitMask", 0);
     
     /**
      * used for serialization
@@ -401,7 +433,10 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable
         renderManager.setForcedMaterial(preshadowMat);
         renderManager.setForcedTechnique("PreShadow");
 
-        for (int shadowMapIndex = 0; shadowMapIndex < nbShadowMaps; shadowMapIndex++) {
+        if (isSinglePassEnabled()) {
+            renderShadowMapsSinglePass();
+        } else {
+            for (int shadowMapIndex = 0; shadowMapIndex < nbShadowMaps; shadowMapIndex++) {
 
                 if (debugfrustums) {
                     doDisplayFrustumDebug(shadowMapIndex);
@@ -409,6 +444,7 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable
                 renderShadowMap(shadowMapIndex);
 
             }
+        }
 
         debugfrustums = false;
 
@@ -428,6 +464,11 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable
         lightViewProjectionsMatrices[shadowMapIndex].set(shadowCam.getViewProjectionMatrix());
         renderManager.setCamera(shadowCam, false);
 
+        if (staticShadowCaching && renderManager.getRenderer().getCaps().contains(Caps.FrameBufferBlit)) {
+            renderCachedShadowMap(shadowMapIndex, shadowCam);
+            return;
+        }
+
         renderManager.getRenderer().setFrameBuffer(shadowFB[shadowMapIndex]);
         renderManager.getRenderer().clearBuffers(true, true, true);
         renderManager.setForcedRenderState(forcedRenderState);
@@ -436,6 +477,236 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable
         viewPort.getQueue().renderShadowQueue(shadowMapOccluders, renderManager, shadowCam, true);
         renderManager.setForcedRenderState(null);
     }
+
+    /**
+     * Renders the static occluders of the split into its cached map if they
+     * or the shadow cam changed, copies the cached map into the shadow map
+     * and renders the dynamic occluders on top.
+     */
+    private void renderCachedShadowMap(int shadowMapIndex, Camera shadowCam) {
+        for (int i = 0; i < shadowMapOccluders.size(); i++) {
+            Geometry geom = shadowMapOccluders.get(i);
+            if (geom.isShadowStatic()) {
+                staticOccluders.add(geom);
+            } else {
+                dynamicOccluders.add(geom);
+            }
+        }
+        shadowMapOccluders.clear();
+
+        if (staticShadowMaps == null) {
+            staticShadowMaps = new StaticShadowMap[nbShadowMaps];
+            staticDummyTex = new Texture2D((int) shadowMapSize, (int) shadowMapSize, Format.RGBA8);
+        }
+        StaticShadowMap staticMap = staticShadowMaps[shadowMapIndex];
+        if (staticMap == null) {
+            staticMap = new StaticShadowMap((int) shadowMapSize, staticDummyTex);
+            staticShadowMaps[shadowMapIndex] = staticMap;
+        }
+
+        Renderer r = renderManager.getRenderer();
+        renderManager.setForcedRenderState(forcedRenderState);
+
+        int state = staticMap.update(lightViewProjectionsMatrices[shadowMapIndex], staticOccluders, dirtyRect);
+        if (state != StaticShadowMap.CLEAN) {
+            r.setFrameBuffer(staticMap.getFrameBuffer());
+            if (state == StaticShadowMap.DIRTY_REGION) {
+                // only clear and render the area the changed occluders cover
+                r.setClipRect(dirtyRect[0], dirtyRect[1], dirtyRect[2], dirtyRect[3]);
+            }
+            r.clearBuffers(true, true, true);
+            viewPort.getQueue().renderShadowQueue(staticOccluders, renderManager, shadowCam, false);
+            if (state == StaticShadowMap.DIRTY_REGION) {
+                r.setClipRect(0, 0, (int) shadowMapSize, (int) shadowMapSize);
+            }
+        }
+        staticOccluders.clear();
+
+        r.copyFrameBuffer(staticMap.getFrameBuffer(), shadowFB[shadowMapIndex], true);
+        r.setFrameBuffer(shadowFB[shadowMapIndex]);
+        viewPort.getQueue().renderShadowQueue(dynamicOccluders, renderManager, shadowCam, true);
+        renderManager.setForcedRenderState(null);
+    }
+
+    private boolean isSinglePassEnabled() {
+        return singlePassShadowMaps && !staticShadowCaching
+                && nbShadowMaps > 1 && nbShadowMaps <= MAX_SINGLE_PASS_SHADOW_MAPS
+                && isSinglePassSupported()
+                && renderManager.getRenderer().getCaps().containsAll(SINGLE_PASS_CAPS);
+    }
+
+    /**
+     * Renders the occluders of all the shadow maps in one pass into the
+     * layers of a depth texture array, then copies each layer into its
+     * shadow map. Each occluder is drawn once, the PreShadowLayered geometry
+     * shader emits it to the layers of the splits it occludes.
+     */
+    private void renderShadowMapsSinglePass() {
+        if (layeredShadowFB == null) {
+            initLayeredShadowMaps();
+        }
+
+        Camera shadowCam = null;
+        for (int shadowMapIndex = 0; shadowMapIndex < nbShadowMaps; shadowMapIndex++) {
+            if (debugfrustums) {
+                doDisplayFrustumDebug(shadowMapIndex);
+            }
+            shadowMapOccluders = getOccludersToRender(shadowMapIndex, shadowMapOccluders);
+            shadowCam = getShadowCam(shadowMapIndex);
+            lightViewProjectionsMatrices[shadowMapIndex].set(shadowCam.getViewProjectionMatrix());
+            ShadowUtil.mergeSplitOccluders(shadowMapOccluders, shadowMapIndex, splitOccluders);
+            shadowMapOccluders.clear();
+        }
+
+        Renderer r = renderManager.getRenderer();
+        renderManager.setCamera(shadowCam, false);
+        r.setFrameBuffer(layeredShadowFB);
+        r.clearBuffers(true, true, true);
+        renderManager.setForcedRenderState(forcedRenderState);
+        renderManager.setForcedMaterial(layeredPreshadowMat);
+        renderManager.setForcedTechnique("PreShadowLayered");
+        splitMatricesOverride.setValue(lightViewProjectionsMatrices);
+        renderManager.addForcedMatParam(splitMatricesOverride);
+        renderManager.addForcedMatParam(splitMaskOverride);
+
+        for (int i = 0; i < splitOccluders.size(); i++) {
+            splitMaskOverride.setValue(splitOccluders.getSplitMask(i));
+            renderManager.renderGeometry(splitOccluders.getGeometry(i));
+        }
+        splitOccluders.clear();
+
+        renderManager.removeForcedMatParam(splitMaskOverride);
+        renderManager.removeForcedMatParam(splitMatricesOverride);
+        renderManager.setForcedTechnique("PreShadow");
+        renderManager.setForcedMaterial(preshadowMat);
+        renderManager.setForcedRenderState(null);
+
+        for (int shadowMapIndex = 0; shadowMapIndex < nbShadowMaps; shadowMapIndex++) {
+            r.copyFrameBuffer(shadowLayerFB[shadowMapIndex], shadowFB[shadowMapIndex], true);
+        }
+    }
+
+    private void initLayeredShadowMaps() {
+        int size = (int) shadowMapSize;
+        List<Image> layers = new ArrayList<Image>(nbShadowMaps);
+        for (int i = 0; i < nbShadowMaps; i++) {
+            layers.add(new Image(Format.Depth, size, size, null, ColorSpace.Linear));
+        }
+        TextureArray layeredShadowMaps = new TextureArray(layers);
+        layeredShadowMaps.setMagFilter(MagFilter.Nearest);
+        layeredShadowMaps.setMinFilter(MinFilter.NearestNoMipMaps);
+
+        // depth only, all the attachments of a layered framebuffer must be layered
+        layeredShadowFB = new FrameBuffer(size, size, 1);
+        layeredShadowFB.setDepthTexture(layeredShadowMaps);
+
+        // one framebuffer per layer to copy from
+        shadowLayerFB = new FrameBuffer[nbShadowMaps];
+        for (int i = 0; i < nbShadowMaps; i++) {
+            shadowLayerFB[i] = new FrameBuffer(size, size, 1);
+            shadowLayerFB[i].setDepthTexture(layeredShadowMaps, i);
+        }
+
+        layeredPreshadowMat = preshadowMat.clone();
+        layeredPreshadowMat.selectTechnique("PreShadowLayered", renderManager);
+    }
+
+    /**
+     * Returns true if the shadow maps of this renderer can be rendered in a
+     * single pass, see {@link #setSinglePassShadowMaps(boolean) }.
+     * <p>
+     * The shadow cameras must be up to date after each call to
+     * {@link #getOccludersToRender(int, GeometryList) }, before any other
+     * split is processed.
+     *
+     * @return false by default
+     */
+    protected boolean isSinglePassSupported() {
+        return false;
+    }
+
+    /**
+     * Enables rendering all the shadow maps in a single pass.
+     * <p>
+     * The occluders of all the splits are merged, each with the mask of the
+     * splits it occludes, and drawn once into a layered framebuffer using the
+     * PreShadowLayered technique, whose geometry shader emits each triangle
+     * to the layers of its splits. This saves up to one draw call per split
+     * for occluders shared by several splits. Materials without a
+     * PreShadowLayered technique are rendered with a fallback material
+     * without alpha discard or skinning.
+     * <p>
+     * Only used when the renderer supports it (see
+     * {@link #isSinglePassSupported() }), for 2 to 4 shadow maps, when static
+     * occluder caching is off and the hardware supports OpenGL 3.2 with
+     * {@link Caps#FrameBufferBlit}. Otherwise the shadow maps are rendered
+     * one by one as usual.
+     *
+     * @param singlePassShadowMaps true to render all the shadow maps in a
+     * single pass, default is false
+     */
+    public void setSinglePassShadowMaps(boolean singlePassShadowMaps) {
+        this.singlePassShadowMaps = singlePassShadowMaps;
+    }
+
+    /**
+     * @return true if the shadow maps are rendered in a single pass when
+     * supported
+     * @see #setSinglePassShadowMaps(boolean)
+     */
+    public boolean isSinglePassShadowMaps() {
+        return singlePassShadowMaps;
+    }
+
+    /**
+     * Enables caching of static occluders.
+     * <p>
+     * When enabled, the occluders hinted with
+     * {@link Spatial#setShadowStatic(boolean) } are rendered into a cached
+     * depth map per split, which is copied into the shadow map each frame
+     * before the other occluders are rendered on top of it. The cached map
+     * is rendered again when the shadow camera of the split changes, and
+     * only the area they cover when static occluders are added, removed or
+     * their world bound changes.
+     * <p>
+     * This pays off for lights whose shadow cameras rarely move, like point
+     * and spot lights, or directional lights with a still view camera.
+     * Changes to the materials of static occluders or to the
+     * {@link #getPreShadowForcedRenderState() pre shadow render state} are
+     * not detected, call {@link #invalidateStaticShadowMaps() } after them.
+     * Requires {@link Caps#FrameBufferBlit}, without it the shadow maps are
+     * rendered as usual.
+     *
+     * @param staticShadowCaching true to cache static occluders, default is
+     * false
+     */
+    public void setStaticShadowCaching(boolean staticShadowCaching) {
+        this.staticShadowCaching = staticShadowCaching;
+        invalidateStaticShadowMaps();
+    }
+
+    /**
+     * @return true if static occluders are cached
+     * @see #setStaticShadowCaching(boolean)
+     */
+    public boolean isStaticShadowCaching() {
+        return staticShadowCaching;
+    }
+
+    /**
+     * Forces the static occluders to be rendered again in the next frame.
+     *
+     * @see #setStaticShadowCaching(boolean)
+     */
+    public void invalidateStaticShadowMaps() {
+        if (staticShadowMaps != null) {
+            for (StaticShadowMap staticMap : staticShadowMaps) {
+                if (staticMap != null) {
+                    staticMap.invalidate();
+                }
+            }
+        }
+    }
     boolean debugfrustums = false;
 
     public void displayFrustum() {
@@ -780,6 +1051,7 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable
             getPreShadowForcedRenderState().setPolyOffset(0, 0);
             getPreShadowForcedRenderState().setFaceCullMode(RenderState.FaceCullMode.Front);
         }
+        invalidateStaticShadowMaps();
     }
 
     /**
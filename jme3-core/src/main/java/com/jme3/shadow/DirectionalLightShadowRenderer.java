@@ -108,6 +108,17 @@ public class DirectionalLightShadowRenderer extends AbstractShadowRenderer {
         }
     }
 
+    /**
+     * The splits share one shadow cam, updated for each split by
+     * {@link #getOccludersToRender(int, GeometryList) }.
+     *
+     * @return true
+     */
+    @Override
+    protected boolean isSinglePassSupported() {
+        return true;
+    }
+
     @Override
     protected void initFrustumCam() {
         //nothing to do
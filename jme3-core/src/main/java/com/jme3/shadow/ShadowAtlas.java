@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shadow;
+
+import com.jme3.math.utility.FastMath;
+import com.jme3.renderer.Renderer;
+import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.Texture.MagFilter;
+import com.jme3.texture.Texture.MinFilter;
+import com.jme3.texture.Texture.ShadowCompareMode;
+import com.jme3.texture.Texture2D;
+import java.util.ArrayList;
+
+/**
+ * A depth texture shared by the shadow maps of several lights, split into
+ * square tiles.
+ * <p>
+ * Tiles have power of two sizes and are allocated as a quadtree: a free tile
+ * is split in four to serve a smaller request, and four free sibling tiles
+ * are merged back when they are freed.
+ *
+ * @see ShadowAtlasFilter
+ */
+public class ShadowAtlas {
+
+    /**
+     * A square region of the atlas.
+     */
+    public static final class Tile {
+
+        private final int x;
+        private final int y;
+        private final int size;
+        private final int level;
+        private boolean allocated;
+
+        private Tile(int x, int y, int size, int level) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.level = level;
+        }
+
+        /**
+         * @return the left of the tile, in pixels
+         */
+        public int getX() {
+            return x;
+        }
+
+        /**
+         * @return the bottom of the tile, in pixels
+         */
+        public int getY() {
+            return y;
+        }
+
+        /**
+         * @return the width and height of the tile, in pixels
+         */
+        public int getSize() {
+            return size;
+        }
+    }
+
+    private final int size;
+    private final int minTileSize;
+    /**
+     * free tiles of each level, level 0 is the whole atlas
+     */
+    private final ArrayList<ArrayList<Tile>> freeTiles;
+    private final Texture2D depthTexture;
+    private final FrameBuffer frameBuffer;
+
+    /**
+     * Creates an atlas.
+     *
+     * @param size the width and height of the atlas, a power of two
+     * @param minTileSize the size of the smallest tiles, a power of two
+     */
+    public ShadowAtlas(int size, int minTileSize) {
+        if (!FastMath.isPowerOfTwo(size) || !FastMath.isPowerOfTwo(minTileSize) || minTileSize > size) {
+            throw new IllegalArgumentException("Atlas and tile sizes must be powers of two, got "
+                    + size + " and " + minTileSize);
+        }
+        this.size = size;
+        this.minTileSize = minTileSize;
+
+        int levels = Integer.numberOfTrailingZeros(size / minTileSize) + 1;
+        freeTiles = new ArrayList<ArrayList<Tile>>(levels);
+        for (int i = 0; i < levels; i++) {
+            freeTiles.add(new ArrayList<Tile>());
+        }
+        freeTiles.get(0).add(new Tile(0, 0, size, 0));
+
+        depthTexture = new Texture2D(size, size, Format.Depth);
+        depthTexture.setShadowCompareMode(ShadowCompareMode.Off);
+        depthTexture.setMagFilter(MagFilter.Nearest);
+        depthTexture.setMinFilter(MinFilter.NearestNoMipMaps);
+        frameBuffer = new FrameBuffer(size, size, 1);
+        frameBuffer.setDepthTexture(depthTexture);
+    }
+
+    /**
+     * Allocates a tile.
+     *
+     * @param tileSize the requested size, rounded up to a power of two and
+     * clamped to the tile sizes of the atlas
+     * @return the tile, or null if there is no free tile large enough
+     */
+    public Tile allocate(int tileSize) {
+        tileSize = Math.max(minTileSize, Math.min(size, FastMath.nearestPowerOfTwo(tileSize)));
+        int level = Integer.numberOfTrailingZeros(size / tileSize);
+
+        int freeLevel = level;
+        while (freeLevel >= 0 && freeTiles.get(freeLevel).isEmpty()) {
+            freeLevel--;
+        }
+        if (freeLevel < 0) {
+            return null;
+        }
+
+        ArrayList<Tile> free = freeTiles.get(freeLevel);
+        Tile tile = free.remove(free.size() - 1);
+        while (tile.level < level) {
+            // keep the first quarter, free the three others
+            int half = tile.size / 2;
+            int childLevel = tile.level + 1;
+            ArrayList<Tile> childFree = freeTiles.get(childLevel);
+            childFree.add(new Tile(tile.x + half, tile.y + half, half, childLevel));
+            childFree.add(new Tile(tile.x, tile.y + half, half, childLevel));
+            childFree.add(new Tile(tile.x + half, tile.y, half, childLevel));
+            tile = new Tile(tile.x, tile.y, half, childLevel);
+        }
+        tile.allocated = true;
+        return tile;
+    }
+
+    /**
+     * Frees a tile allocated by this atlas.
+     *
+     * @param tile the tile to free
+     */
+    public void free(Tile tile) {
+        if (!tile.allocated) {
+            throw new IllegalStateException("Tile is not allocated");
+        }
+        tile.allocated = false;
+        while (tile.level > 0) {
+            ArrayList<Tile> free = freeTiles.get(tile.level);
+            int parentSize = tile.size * 2;
+            int parentX = tile.x - tile.x % parentSize;
+            int parentY = tile.y - tile.y % parentSize;
+
+            // merge with the three siblings if they are all free
+            int siblings = 0;
+            for (int i = 0; i < free.size(); i++) {
+                Tile other = free.get(i);
+                if (other.x - other.x % parentSize == parentX && other.y - other.y % parentSize == parentY) {
+                    siblings++;
+                }
+            }
+            if (siblings < 3) {
+                break;
+            }
+            for (int i = free.size() - 1; i >= 0; i--) {
+                Tile other = free.get(i);
+                if (other.x - other.x % parentSize == parentX && other.y - other.y % parentSize == parentY) {
+                    free.remove(i);
+                }
+            }
+            tile = new Tile(parentX, parentY, parentSize, tile.level - 1);
+        }
+        freeTiles.get(tile.level).add(tile);
+    }
+
+    /**
+     * @return the width and height of the atlas, in pixels
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the size of the smallest tiles
+     */
+    public int getMinTileSize() {
+        return minTileSize;
+    }
+
+    /**
+     * @return the depth texture of the atlas
+     */
+    public Texture2D getTexture() {
+        return depthTexture;
+    }
+
+    /**
+     * @return the framebuffer rendering to the atlas
+     */
+    public FrameBuffer getFrameBuffer() {
+        return frameBuffer;
+    }
+
+    /**
+     * Deletes the framebuffer and texture of the atlas.
+     *
+     * @param r the renderer
+     */
+    public void cleanup(Renderer r) {
+        frameBuffer.dispose();
+        depthTexture.getImage().dispose();
+    }
+}
@@ -0,0 +1,711 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shadow;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.light.Light;
+import com.jme3.light.PointLight;
+import com.jme3.light.SpotLight;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState;
+import com.jme3.math.matrix.Matrix4f;
+import com.jme3.math.utility.FastMath;
+import com.jme3.math.vector.Vector3f;
+import com.jme3.math.vector.Vector4f;
+import com.jme3.post.Filter;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Renderer;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.Spatial;
+import com.jme3.shader.VarType;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Renders the shadows of many spot and point lights in a single post pass.
+ * <p>
+ * The shadow maps of all the lights share one {@link ShadowAtlas}. Each
+ * visible light gets a tile (six for point lights) sized by its coverage of
+ * the screen and its importance, and at most
+ * {@link #setMaxTileUpdatesPerFrame(int) a budgeted number} of tiles are
+ * rendered each frame: new tiles first, then the tiles that waited the
+ * longest, weighted by the priority of their light. The other tiles keep the
+ * shadow map and matrix of the frame they were last rendered in.
+ * <p>
+ * Lights with an infinite range (a spot range or point radius of 0) cast no
+ * shadow with this filter.
+ */
+public class ShadowAtlasFilter extends Filter {
+
+    /**
+     * A shadowed light and its tiles.
+     */
+    private static final class ShadowedLight {
+
+        private final Light light;
+        private final Camera[] cams;
+        private final ShadowAtlas.Tile[] tiles;
+        private final Matrix4f[] matrices;
+        private final long[] renderedFrames;
+        private final TileUpdate[] updates;
+        private float importance;
+        private float priority;
+        private int tileSize;
+        private boolean visible;
+
+        private ShadowedLight(Light light, float importance, int atlasSize) {
+            this.light = light;
+            this.importance = importance;
+            int faces = light instanceof PointLight ? 6 : 1;
+            cams = new Camera[faces];
+            tiles = new ShadowAtlas.Tile[faces];
+            matrices = new Matrix4f[faces];
+            renderedFrames = new long[faces];
+            updates = new TileUpdate[faces];
+            for (int i = 0; i < faces; i++) {
+                cams[i] = new Camera(atlasSize, atlasSize);
+                matrices[i] = new Matrix4f();
+                updates[i] = new TileUpdate(this, i);
+            }
+        }
+
+        private boolean hasTiles() {
+            return tiles[0] != null;
+        }
+    }
+
+    /**
+     * A tile that may be rendered this frame.
+     */
+    private static final class TileUpdate {
+
+        private final ShadowedLight light;
+        private final int face;
+        private float score;
+
+        private TileUpdate(ShadowedLight light, int face) {
+            this.light = light;
+            this.face = face;
+        }
+    }
+
+    private static final Comparator<ShadowedLight> PRIORITY_COMPARATOR = new Comparator<ShadowedLight>() {
+        @Override
+        public int compare(ShadowedLight a, ShadowedLight b) {
+            return Float.compare(b.priority, a.priority);
+        }
+    };
+
+    private static final Comparator<TileUpdate> SCORE_COMPARATOR = new Comparator<TileUpdate>() {
+        @Override
+        public int compare(TileUpdate a, TileUpdate b) {
+            return Float.compare(b.score, a.score);
+        }
+    };
+
+    private int atlasSize;
+    private int maxTiles;
+    private int minTileSize = 64;
+    private int maxTileSize = 1024;
+    private int maxTileUpdatesPerFrame = 8;
+    private float shadowIntensity = 0.7f;
+
+    private ShadowAtlas atlas;
+    private final List<ShadowedLight> lights = new ArrayList<ShadowedLight>();
+    private final List<ShadowedLight> sortedLights = new ArrayList<ShadowedLight>();
+    private final List<TileUpdate> updates = new ArrayList<TileUpdate>();
+    private final GeometryList occluders = new GeometryList(new OpaqueComparator());
+    private final RenderState forcedRenderState = new RenderState();
+    private Matrix4f[] shadowMatrices;
+    private Vector4f[] shadowTiles;
+    private Material preshadowMat;
+    private RenderManager renderManager;
+    private ViewPort viewPort;
+    private long frame;
+
+    private final BoundingSphere lightBounds = new BoundingSphere();
+    private final Vector3f tmpVec = new Vector3f();
+    private final Matrix4f viewProjectionInverse = new Matrix4f();
+
+    /**
+     * Used for serialization.
+     */
+    protected ShadowAtlasFilter() {
+        super("Shadow Atlas");
+    }
+
+    /**
+     * Creates a shadow atlas filter.
+     *
+     * @param manager the application asset manager
+     * @param atlasSize the width and height of the atlas, a power of two
+     * (2048, 4096, etc...)
+     * @param maxTiles the maximum number of tiles read by the post pass, each
+     * spot light uses one tile and each point light six. This is limited by
+     * the number of uniforms of the hardware.
+     */
+    public ShadowAtlasFilter(AssetManager manager, int atlasSize, int maxTiles) {
+        super("Shadow Atlas");
+        if (!FastMath.isPowerOfTwo(atlasSize)) {
+            throw new IllegalArgumentException("Atlas size must be a power of two, got " + atlasSize);
+        }
+        this.atlasSize = atlasSize;
+        this.maxTiles = maxTiles;
+        maxTileSize = Math.min(maxTileSize, atlasSize);
+        minTileSize = Math.min(minTileSize, maxTileSize);
+        material = new Material(manager, "Common/MatDefs/Shadow/PostShadowAtlas.j3md");
+        initMaterial();
+    }
+
+    private void initMaterial() {
+        shadowMatrices = new Matrix4f[maxTiles];
+        shadowTiles = new Vector4f[maxTiles];
+        for (int i = 0; i < maxTiles; i++) {
+            shadowMatrices[i] = new Matrix4f();
+            shadowTiles[i] = new Vector4f();
+        }
+        material.setInt("NumTiles", maxTiles);
+        material.setFloat("ShadowAtlasSize", atlasSize);
+        material.setFloat("ShadowIntensity", shadowIntensity);
+    }
+
+    @Override
+    protected Material getMaterial() {
+        return material;
+    }
+
+    @Override
+    protected boolean isRequiresDepthTexture() {
+        return true;
+    }
+
+    @Override
+    protected void initFilter(AssetManager manager, RenderManager renderManager, ViewPort vp, int w, int h) {
+        this.renderManager = renderManager;
+        this.viewPort = vp;
+        atlas = new ShadowAtlas(atlasSize, minTileSize);
+        material.setTexture("ShadowAtlas", atlas.getTexture());
+
+        preshadowMat = new Material(manager, "Common/MatDefs/Shadow/PreShadow.j3md");
+        forcedRenderState.setFaceCullMode(RenderState.FaceCullMode.Front);
+        forcedRenderState.setColorWrite(false);
+        forcedRenderState.setDepthWrite(true);
+        forcedRenderState.setDepthTest(true);
+
+        // tiles of a previous atlas are lost
+        for (ShadowedLight sl : lights) {
+            for (int i = 0; i < sl.tiles.length; i++) {
+                sl.tiles[i] = null;
+            }
+        }
+    }
+
+    @Override
+    protected void preFrame(float tpf) {
+        viewPort.getCamera().getViewProjectionMatrix().invert(viewProjectionInverse);
+        material.setMatrix4("ViewProjectionMatrixInverse", viewProjectionInverse);
+    }
+
+    @Override
+    protected void postQueue(RenderQueue queue) {
+        frame++;
+        Camera viewCam = viewPort.getCamera();
+
+        sortedLights.clear();
+        for (ShadowedLight sl : lights) {
+            float coverage = computeCoverage(sl, viewCam);
+            sl.visible = coverage > 0;
+            sl.priority = coverage * sl.importance;
+            sortedLights.add(sl);
+        }
+        Collections.sort(sortedLights, PRIORITY_COMPARATOR);
+
+        allocateTiles(viewCam);
+        renderTiles();
+        updateMaterial();
+    }
+
+    @Override
+    protected void cleanUpFilter(Renderer r) {
+        if (atlas != null) {
+            atlas.cleanup(r);
+            atlas = null;
+        }
+    }
+
+    /**
+     * Frees the tiles of the lights that are no longer visible or need
+     * another tile size, then allocates tiles to the lights in priority
+     * order, using smaller tiles when the atlas is full.
+     */
+    private void allocateTiles(Camera viewCam) {
+        int slotsLeft = maxTiles;
+        for (ShadowedLight sl : sortedLights) {
+            boolean wanted = sl.visible && sl.tiles.length <= slotsLeft;
+            if (!wanted) {
+                releaseTiles(sl);
+                continue;
+            }
+            slotsLeft -= sl.tiles.length;
+
+            int desired = Math.round(sl.priority * viewCam.getHeight());
+            desired = FastMath.nearestPowerOfTwo(Math.max(desired, 1));
+            desired = Math.max(minTileSize, Math.min(maxTileSize, desired));
+
+            // only shrink when the tile is much too large, so that the tile
+            // does not flip between two sizes
+            if (sl.hasTiles() && (desired > sl.tileSize || desired <= sl.tileSize / 4)) {
+                releaseTiles(sl);
+            }
+            if (!sl.hasTiles()) {
+                sl.tileSize = desired;
+            }
+        }
+
+        for (ShadowedLight sl : sortedLights) {
+            if (!sl.visible || sl.hasTiles()) {
+                continue;
+            }
+            for (int size = sl.tileSize; size >= minTileSize && !sl.hasTiles(); size /= 2) {
+                if (allocateTiles(sl, size)) {
+                    sl.tileSize = size;
+                }
+            }
+        }
+    }
+
+    private boolean allocateTiles(ShadowedLight sl, int size) {
+        for (int i = 0; i < sl.tiles.length; i++) {
+            ShadowAtlas.Tile tile = atlas.allocate(size);
+            if (tile == null) {
+                for (int j = 0; j < i; j++) {
+                    atlas.free(sl.tiles[j]);
+                    sl.tiles[j] = null;
+                }
+                return false;
+            }
+            sl.tiles[i] = tile;
+            // a new tile has no shadow map yet
+            sl.renderedFrames[i] = 0;
+        }
+        return true;
+    }
+
+    private void releaseTiles(ShadowedLight sl) {
+        for (int i = 0; i < sl.tiles.length; i++) {
+            if (sl.tiles[i] != null) {
+                atlas.free(sl.tiles[i]);
+                sl.tiles[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Renders the tiles selected by the update budget, the tiles that were
+     * never rendered coming first.
+     */
+    private void renderTiles() {
+        updates.clear();
+        for (ShadowedLight sl : sortedLights) {
+            if (!sl.hasTiles()) {
+                continue;
+            }
+            for (int i = 0; i < sl.tiles.length; i++) {
+                TileUpdate update = sl.updates[i];
+                if (sl.renderedFrames[i] == 0) {
+                    update.score = Float.POSITIVE_INFINITY;
+                } else {
+                    update.score = (frame - sl.renderedFrames[i]) * sl.priority;
+                }
+                updates.add(update);
+            }
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+        // the sort is stable, so new tiles are rendered in priority order
+        Collections.sort(updates, SCORE_COMPARATOR);
+
+        Renderer r = renderManager.getRenderer();
+        r.setFrameBuffer(atlas.getFrameBuffer());
+        renderManager.setForcedMaterial(preshadowMat);
+        renderManager.setForcedTechnique("PreShadow");
+        renderManager.setForcedRenderState(forcedRenderState);
+
+        int count = Math.min(maxTileUpdatesPerFrame, updates.size());
+        for (int i = 0; i < count; i++) {
+            TileUpdate update = updates.get(i);
+            renderTile(update.light, update.face);
+        }
+
+        //restore setting for future rendering
+        renderManager.setForcedRenderState(null);
+        renderManager.setForcedMaterial(null);
+        renderManager.setForcedTechnique(null);
+        r.setFrameBuffer(viewPort.getOutputFrameBuffer());
+        renderManager.setCamera(viewPort.getCamera(), false);
+        r.clearClipRect();
+    }
+
+    private void renderTile(ShadowedLight sl, int face) {
+        Camera cam = sl.cams[face];
+        updateShadowCam(sl, face);
+
+        ShadowAtlas.Tile tile = sl.tiles[face];
+        float left = tile.getX() / (float) atlasSize;
+        float bottom = tile.getY() / (float) atlasSize;
+        float extent = tile.getSize() / (float) atlasSize;
+        cam.setViewPort(left, left + extent, bottom, bottom + extent);
+
+        occluders.clear();
+        for (Spatial scene : viewPort.getScenes()) {
+            ShadowUtil.getGeometriesInCamFrustum(scene, cam, RenderQueue.ShadowMode.Cast, occluders);
+        }
+
+        // the clip rect set with the camera restricts the clear to the tile
+        renderManager.setCamera(cam, false);
+        renderManager.getRenderer().clearBuffers(false, true, false);
+        viewPort.getQueue().renderShadowQueue(occluders, renderManager, cam, true);
+
+        sl.matrices[face].set(cam.getViewProjectionMatrix());
+        sl.renderedFrames[face] = frame;
+    }
+
+    private void updateShadowCam(ShadowedLight sl, int face) {
+        Camera cam = sl.cams[face];
+        if (sl.light instanceof SpotLight) {
+            SpotLight light = (SpotLight) sl.light;
+            cam.setFrustumPerspective(light.getSpotOuterAngle() * FastMath.RAD_TO_DEG * 2.0f, 1, 1f, light.getSpotRange());
+            cam.getRotation().lookAt(light.getDirection(), cam.getUp());
+            cam.setLocation(light.getPosition());
+        } else {
+            PointLight light = (PointLight) sl.light;
+            switch (face) {
+                case 0: //bottom
+                    cam.setAxes(Vector3f.UNIT_X.mult(-1f), Vector3f.UNIT_Z.mult(-1f), Vector3f.UNIT_Y.mult(-1f));
+                    break;
+                case 1: //top
+                    cam.setAxes(Vector3f.UNIT_X.mult(-1f), Vector3f.UNIT_Z, Vector3f.UNIT_Y);
+                    break;
+                case 2: //forward
+                    cam.setAxes(Vector3f.UNIT_X.mult(-1f), Vector3f.UNIT_Y, Vector3f.UNIT_Z.mult(-1f));
+                    break;
+                case 3: //backward
+                    cam.setAxes(Vector3f.UNIT_X, Vector3f.UNIT_Y, Vector3f.UNIT_Z);
+                    break;
+                case 4: //left
+                    cam.setAxes(Vector3f.UNIT_Z, Vector3f.UNIT_Y, Vector3f.UNIT_X.mult(-1f));
+                    break;
+                default: //right
+                    cam.setAxes(Vector3f.UNIT_Z.mult(-1f), Vector3f.UNIT_Y, Vector3f.UNIT_X);
+                    break;
+            }
+            cam.setFrustumPerspective(90f, 1f, 0.1f, light.getRadius());
+            cam.setLocation(light.getPosition());
+        }
+        cam.update();
+        cam.updateViewProjection();
+    }
+
+    /**
+     * Estimates the fraction of the view height covered by the area lit by a
+     * light.
+     *
+     * @return the coverage between 0 and 1, 0 when the light is not visible
+     */
+    private float computeCoverage(ShadowedLight sl, Camera viewCam) {
+        if (!sl.light.isEnabled()) {
+            return 0;
+        }
+        if (sl.light instanceof SpotLight) {
+            SpotLight light = (SpotLight) sl.light;
+            float halfRange = light.getSpotRange() * 0.5f;
+            if (halfRange <= 0) {
+                return 0;
+            }
+            float spread = light.getSpotRange() * FastMath.tan(light.getSpotOuterAngle());
+            lightBounds.setCenter(tmpVec.set(light.getDirection()).multLocal(halfRange).addLocal(light.getPosition()));
+            lightBounds.setRadius(FastMath.sqrt(halfRange * halfRange + spread * spread));
+        } else {
+            PointLight light = (PointLight) sl.light;
+            if (light.getRadius() <= 0) {
+                return 0;
+            }
+            lightBounds.setCenter(light.getPosition());
+            lightBounds.setRadius(light.getRadius());
+        }
+
+        int planeState = viewCam.getPlaneState();
+        viewCam.setPlaneState(0);
+        Camera.FrustumIntersect intersect = viewCam.contains(lightBounds);
+        viewCam.setPlaneState(planeState);
+        if (intersect == Camera.FrustumIntersect.Outside) {
+            return 0;
+        }
+
+        float distance = lightBounds.getCenter().distance(viewCam.getLocation());
+        if (distance <= lightBounds.getRadius() || viewCam.isParallelProjection()) {
+            return 1;
+        }
+        float halfHeight = viewCam.getFrustumTop() / viewCam.getFrustumNear() * distance;
+        return Math.min(1, lightBounds.getRadius() / halfHeight);
+    }
+
+    private void updateMaterial() {
+        int slot = 0;
+        for (ShadowedLight sl : sortedLights) {
+            if (!sl.hasTiles()) {
+                continue;
+            }
+            for (int i = 0; i < sl.tiles.length; i++) {
+                if (sl.renderedFrames[i] == 0) {
+                    // not rendered yet, the tile holds no shadow map
+                    continue;
+                }
+                ShadowAtlas.Tile tile = sl.tiles[i];
+                shadowMatrices[slot].set(sl.matrices[i]);
+                shadowTiles[slot].set(tile.getX() / (float) atlasSize, tile.getY() / (float) atlasSize,
+                        tile.getSize() / (float) atlasSize, 1);
+                slot++;
+            }
+        }
+        for (int i = slot; i < maxTiles; i++) {
+            shadowTiles[i].set(0, 0, 0, 0);
+        }
+        material.setParam("ShadowMatrices", VarType.Matrix4Array, shadowMatrices);
+        material.setParam("ShadowTiles", VarType.Vector4Array, shadowTiles);
+    }
+
+    /**
+     * Adds a light casting shadows through this filter, with an importance
+     * of 1.
+     *
+     * @param light a {@link SpotLight} or a {@link PointLight}
+     */
+    public void addLight(Light light) {
+        addLight(light, 1f);
+    }
+
+    /**
+     * Adds a light casting shadows through this filter.
+     *
+     * @param light a {@link SpotLight} or a {@link PointLight}
+     * @param importance scales the tile size and update rate of the light
+     */
+    public void addLight(Light light, float importance) {
+        if (!(light instanceof SpotLight) && !(light instanceof PointLight)) {
+            throw new IllegalArgumentException("Only spot and point lights are supported, got " + light);
+        }
+        if (findLight(light) != null) {
+            return;
+        }
+        lights.add(new ShadowedLight(light, importance, atlasSize));
+    }
+
+    /**
+     * Removes a light added with {@link #addLight(com.jme3.light.Light) }.
+     *
+     * @param light the light to remove
+     */
+    public void removeLight(Light light) {
+        ShadowedLight sl = findLight(light);
+        if (sl == null) {
+            return;
+        }
+        if (atlas != null) {
+            releaseTiles(sl);
+        }
+        lights.remove(sl);
+    }
+
+    /**
+     * Sets the importance of a light, see
+     * {@link #addLight(com.jme3.light.Light, float) }.
+     *
+     * @param light a light of this filter
+     * @param importance scales the tile size and update rate of the light
+     */
+    public void setLightImportance(Light light, float importance) {
+        ShadowedLight sl = findLight(light);
+        if (sl == null) {
+            throw new IllegalArgumentException("Light is not shadowed by this filter: " + light);
+        }
+        sl.importance = importance;
+    }
+
+    private ShadowedLight findLight(Light light) {
+        for (ShadowedLight sl : lights) {
+            if (sl.light == light) {
+                return sl;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of lights of this filter
+     */
+    public int getLightCount() {
+        return lights.size();
+    }
+
+    /**
+     * Sets the maximum number of tiles rendered each frame, default is 8.
+     *
+     * @param maxTileUpdatesPerFrame the tile budget
+     */
+    public void setMaxTileUpdatesPerFrame(int maxTileUpdatesPerFrame) {
+        this.maxTileUpdatesPerFrame = maxTileUpdatesPerFrame;
+    }
+
+    /**
+     * @return the maximum number of tiles rendered each frame
+     */
+    public int getMaxTileUpdatesPerFrame() {
+        return maxTileUpdatesPerFrame;
+    }
+
+    /**
+     * Sets the range of tile sizes, default is 64 to 1024. Must be set before
+     * the filter is initialized.
+     *
+     * @param minTileSize the size of the tiles of far or unimportant lights,
+     * a power of two
+     * @param maxTileSize the size of the tiles of lights covering the screen,
+     * a power of two
+     */
+    public void setTileSizeRange(int minTileSize, int maxTileSize) {
+        if (!FastMath.isPowerOfTwo(minTileSize) || !FastMath.isPowerOfTwo(maxTileSize)
+                || minTileSize > maxTileSize || maxTileSize > atlasSize) {
+            throw new IllegalArgumentException("Invalid tile size range " + minTileSize + " to " + maxTileSize);
+        }
+        if (atlas != null) {
+            throw new IllegalStateException("Tile sizes cannot be changed after initialization");
+        }
+        this.minTileSize = minTileSize;
+        this.maxTileSize = maxTileSize;
+    }
+
+    /**
+     * @return the size of the smallest tiles
+     */
+    public int getMinTileSize() {
+        return minTileSize;
+    }
+
+    /**
+     * @return the size of the largest tiles
+     */
+    public int getMaxTileSize() {
+        return maxTileSize;
+    }
+
+    /**
+     * @return the width and height of the atlas
+     */
+    public int getAtlasSize() {
+        return atlasSize;
+    }
+
+    /**
+     * @return the maximum number of tiles read by the post pass
+     */
+    public int getMaxTiles() {
+        return maxTiles;
+    }
+
+    /**
+     * Set the shadowIntensity, the value should be between 0 and 1, a 0 value
+     * gives a bright and invisible shadow, a 1 value gives a pitch black
+     * shadow, default is 0.7
+     *
+     * @param shadowIntensity the darkness of the shadow
+     */
+    public void setShadowIntensity(float shadowIntensity) {
+        this.shadowIntensity = shadowIntensity;
+        material.setFloat("ShadowIntensity", shadowIntensity);
+    }
+
+    /**
+     * @return the darkness of the shadow
+     */
+    public float getShadowIntensity() {
+        return shadowIntensity;
+    }
+
+    /**
+     * returns the pre shadows pass render state.
+     * use it to adjust the RenderState parameters of the pre shadow pass.
+     * @return the pre shadow render state.
+     */
+    public RenderState getPreShadowForcedRenderState() {
+        return forcedRenderState;
+    }
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+        super.write(ex);
+        OutputCapsule oc = ex.getCapsule(this);
+        oc.write(atlasSize, "atlasSize", 2048);
+        oc.write(maxTiles, "maxTiles", 16);
+        oc.write(minTileSize, "minTileSize", 64);
+        oc.write(maxTileSize, "maxTileSize", 1024);
+        oc.write(maxTileUpdatesPerFrame, "maxTileUpdatesPerFrame", 8);
+        oc.write(shadowIntensity, "shadowIntensity", 0.7f);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+        super.read(im);
+        InputCapsule ic = im.getCapsule(this);
+        atlasSize = ic.readInt("atlasSize", 2048);
+        maxTiles = ic.readInt("maxTiles", 16);
+        minTileSize = ic.readInt("minTileSize", 64);
+        maxTileSize = ic.readInt("maxTileSize", 1024);
+        maxTileUpdatesPerFrame = ic.readInt("maxTileUpdatesPerFrame", 8);
+        shadowIntensity = ic.readFloat("shadowIntensity", 0.7f);
+        material = new Material(im.getAssetManager(), "Common/MatDefs/Shadow/PostShadowAtlas.j3md");
+        initMaterial();
+    }
+}
@@ -42,12 +42,14 @@ import com.jme3.renderer.Camera;
 import com.jme3.renderer.ViewPort;
 import com.jme3.renderer.queue.GeometryList;
 import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.BoundingVolumeHierarchy;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
 import com.jme3.util.TempVars;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 /**
@@ -336,9 +338,10 @@ public class ShadowUtil {
      * It utilizes the scene hierarchy, instead of making the huge flat geometries list first.
      * Instead of adding all geometries from scene to the RenderQueue.shadowCast and checking
      * all of them one by one against camera frustum the whole Node is checked first
-     * to hopefully avoid the check on its children.
+     * to hopefully avoid the check on its children. When the scene has a
+     * {@link BoundingVolumeHierarchy} it is queried instead.
      */
-    public static class OccludersExtractor
+    public static class OccludersExtractor implements BoundingVolumeHierarchy.Visitor
     {
         // global variables set in order not to have recursive process method with too many parameters
         Matrix4f viewProjMatrix;
@@ -365,67 +368,53 @@ public class ShadowUtil {
          * Variables are updated and used in {@link ShadowUtil#updateShadowCamera} at last.
          */
         public int addOccluders(Spatial scene) {
-            if ( scene != null ) process(scene);
+            if ( scene != null ) {
+                BoundingVolumeHierarchy hierarchy = getBoundingVolumeHierarchy(scene);
+                if (hierarchy != null) {
+                    hierarchy.query(this);
+                } else {
+                    process(scene);
+                }
+            }
             return casterCount;
         }
+
+        public boolean intersects(BoundingBox bound) {
+            return intersectsSplit(bound);
+        }
+
+        public void visit(Geometry geom) {
+            if (geom.getCullHint() != Spatial.CullHint.Always) {
+                processGeometry(geom);
+            }
+        }
         
         private void process(Spatial scene) {
             if (scene.getCullHint() == Spatial.CullHint.Always) return;
 
-            RenderQueue.ShadowMode shadowMode = scene.getShadowMode();
             if ( scene instanceof Geometry )
             {
-                // convert bounding box to light's viewproj space
-                Geometry occluder = (Geometry)scene;
-                if (shadowMode != RenderQueue.ShadowMode.Off && shadowMode != RenderQueue.ShadowMode.Receive
-                        && !occluder.isGrouped() && occluder.getWorldBound()!=null) {
-                    BoundingVolume bv = occluder.getWorldBound();
-                    BoundingVolume occBox = bv.transform(viewProjMatrix, vars.bbox);
-          
-                    boolean intersects = splitBB.intersects(occBox);
-                    if (!intersects && occBox instanceof BoundingBox) {
-                        BoundingBox occBB = (BoundingBox) occBox;
-                        //Kirill 01/10/2011
-                        // Extend the occluder further into the frustum
-                        // This fixes shadow dissapearing issues when
-                        // the caster itself is not in the view camera
-                        // but its shadow is in the camera
-                        //      The number is in world units
-                        occBB.setZExtent(occBB.getZExtent() + 50);
-                        occBB.setCenter(occBB.getCenter().addLocal(0, 0, 25));
-                        if (splitBB.intersects(occBB)) {
-                            //Nehon : prevent NaN and infinity values to screw the final bounding box
-                            if (!Float.isNaN(occBox.getCenter().x) && !Float.isInfinite(occBox.getCenter().x)) {
-                                // To prevent extending the depth range too much
-                                // We return the bound to its former shape
-                                // Before adding it
-                                occBB.setZExtent(occBB.getZExtent() - 50);
-                                occBB.setCenter(occBB.getCenter().subtractLocal(0, 0, 25));                    
-                                casterBB.mergeLocal(occBox);
-                                casterCount++;
-                            }
-                            if (splitOccluders != null) {
-                                splitOccluders.add(occluder);
-                            }
-                        }
-                    } else if (intersects) {
-                        casterBB.mergeLocal(occBox);
-                        casterCount++;
-                        if (splitOccluders != null) {
-                            splitOccluders.add(occluder);
-                        }
-                    }
-                }
+                processGeometry((Geometry)scene);
             }
             else if ( scene instanceof Node && ((Node)scene).getWorldBound()!=null )
             {
-                Node nodeOcc = (Node)scene;
-                boolean intersects = false;
-                // some 
-                BoundingVolume bv = nodeOcc.getWorldBound();
+                if ( intersectsSplit(scene.getWorldBound()) ) {
+                    for (Spatial child : ((Node)scene).getChildren()) {
+                        process(child);
+                    }
+                }
+            }
+        }
+
+        private void processGeometry(Geometry occluder) {
+            RenderQueue.ShadowMode shadowMode = occluder.getShadowMode();
+            // convert bounding box to light's viewproj space
+            if (shadowMode != RenderQueue.ShadowMode.Off && shadowMode != RenderQueue.ShadowMode.Receive
+                    && !occluder.isGrouped() && occluder.getWorldBound()!=null) {
+                BoundingVolume bv = occluder.getWorldBound();
                 BoundingVolume occBox = bv.transform(viewProjMatrix, vars.bbox);
-      
-                intersects = splitBB.intersects(occBox);
+          
+                boolean intersects = splitBB.intersects(occBox);
                 if (!intersects && occBox instanceof BoundingBox) {
                     BoundingBox occBB = (BoundingBox) occBox;
                     //Kirill 01/10/2011
@@ -436,16 +425,48 @@ public class ShadowUtil {
                     //      The number is in world units
                     occBB.setZExtent(occBB.getZExtent() + 50);
                     occBB.setCenter(occBB.getCenter().addLocal(0, 0, 25));
-                    intersects = splitBB.intersects(occBB);
-                }
- 
-                if ( intersects ) {
-                    for (Spatial child : ((Node)scene).getChildren()) {
-                        process(child);
+                    if (splitBB.intersects(occBB)) {
+                        //Nehon : prevent NaN and infinity values to screw the final bounding box
+                        if (!Float.isNaN(occBox.getCenter().x) && !Float.isInfinite(occBox.getCenter().x)) {
+                            // To prevent extending the depth range too much
+                            // We return the bound to its former shape
+                            // Before adding it
+                            occBB.setZExtent(occBB.getZExtent() - 50);
+                            occBB.setCenter(occBB.getCenter().subtractLocal(0, 0, 25));                    
+                            casterBB.mergeLocal(occBox);
+                            casterCount++;
+                        }
+                        if (splitOccluders != null) {
+                            splitOccluders.add(occluder);
+                        }
+                    }
+                } else if (intersects) {
+                    casterBB.mergeLocal(occBox);
+                    casterCount++;
+                    if (splitOccluders != null) {
+                        splitOccluders.add(occluder);
                     }
                 }
             }
         }
+
+        private boolean intersectsSplit(BoundingVolume bv) {
+            BoundingVolume occBox = bv.transform(viewProjMatrix, vars.bbox);
+            boolean intersects = splitBB.intersects(occBox);
+            if (!intersects && occBox instanceof BoundingBox) {
+                BoundingBox occBB = (BoundingBox) occBox;
+                //Kirill 01/10/2011
+                // Extend the occluder further into the frustum
+                // This fixes shadow dissapearing issues when
+                // the caster itself is not in the view camera
+                // but its shadow is in the camera
+                //      The number is in world units
+                occBB.setZExtent(occBB.getZExtent() + 50);
+                occBB.setCenter(occBB.getCenter().addLocal(0, 0, 25));
+                intersects = splitBB.intersects(occBB);
+            }
+            return intersects;
+        }
     }
     
     /**
@@ -618,20 +639,54 @@ public class ShadowUtil {
 
     /**
      * Populates the outputGeometryList with the rootScene children geometries
-     * that are in the frustum of the given camera
+     * that are in the frustum of the given camera. Queries the
+     * {@link BoundingVolumeHierarchy} of the scene when it has one.
      *
      * @param rootScene the rootNode of the scene to traverse
      * @param camera the camera to check geometries against
      * @param outputGeometryList the list of all geometries that are in the
      * camera frustum
      */    
-    public static void getGeometriesInCamFrustum(Spatial rootScene, Camera camera, RenderQueue.ShadowMode mode, GeometryList outputGeometryList) {
+    public static void getGeometriesInCamFrustum(Spatial rootScene, final Camera camera, final RenderQueue.ShadowMode mode, final GeometryList outputGeometryList) {
         if (rootScene != null && rootScene instanceof Node) {
             int planeState = camera.getPlaneState();
-            addGeometriesInCamFrustumFromNode(camera, (Node)rootScene, mode, outputGeometryList);
+            BoundingVolumeHierarchy hierarchy = getBoundingVolumeHierarchy(rootScene);
+            if (hierarchy != null) {
+                hierarchy.query(new BoundingVolumeHierarchy.Visitor() {
+                    public boolean intersects(BoundingBox bound) {
+                        camera.setPlaneState(0);
+                        return camera.contains(bound) != Camera.FrustumIntersect.Outside;
+                    }
+
+                    public void visit(Geometry geom) {
+                        if (geom.getCullHint() != Spatial.CullHint.Always
+                                && checkShadowMode(geom.getShadowMode(), mode)
+                                && !geom.isGrouped() && geom.getWorldBound() != null) {
+                            camera.setPlaneState(0);
+                            if (camera.contains(geom.getWorldBound()) != Camera.FrustumIntersect.Outside) {
+                                outputGeometryList.add(geom);
+                            }
+                        }
+                    }
+                });
+            } else {
+                addGeometriesInCamFrustumFromNode(camera, (Node)rootScene, mode, outputGeometryList);
+            }
             camera.setPlaneState(planeState);
         }
     }
+
+    /**
+     * @param scene the root of a scene
+     * @return the bounding volume hierarchy of the scene, or null to walk
+     * the scene graph
+     */
+    private static BoundingVolumeHierarchy getBoundingVolumeHierarchy(Spatial scene) {
+        if (scene instanceof Node && scene.getParent() == null) {
+            return ((Node) scene).getBoundingVolumeHierarchy();
+        }
+        return null;
+    }
     
     /**
      * Helper function to distinguish between Occluders and Receivers
@@ -716,16 +771,60 @@ public class ShadowUtil {
     /**
      * Populates the outputGeometryList with the geometries of the children 
      * of OccludersExtractor.rootScene node that are both in the frustum of the given vpCamera and some camera inside cameras array.
+     * Queries the {@link BoundingVolumeHierarchy} of the scene when it has one.
      * The array of cameras must be initialized to represent the light viewspace of some light like pointLight or spotLight
      *
      * @param camera the viewPort camera 
      * @param cameras the camera array to check geometries against, representing the light viewspace
      * @param outputGeometryList the output list of all geometries that are in the camera frustum
      */
-    public static void getLitGeometriesInViewPort(Spatial rootScene, Camera vpCamera, Camera[] cameras, RenderQueue.ShadowMode mode, GeometryList outputGeometryList) {
+    public static void getLitGeometriesInViewPort(Spatial rootScene, final Camera vpCamera, final Camera[] cameras, final RenderQueue.ShadowMode mode, final GeometryList outputGeometryList) {
         if (rootScene != null && rootScene instanceof Node) {
-            addGeometriesInCamFrustumAndViewPortFromNode(vpCamera, cameras, (Node)rootScene, mode, outputGeometryList);
+            BoundingVolumeHierarchy hierarchy = getBoundingVolumeHierarchy(rootScene);
+            if (hierarchy == null) {
+                addGeometriesInCamFrustumAndViewPortFromNode(vpCamera, cameras, (Node)rootScene, mode, outputGeometryList);
+                return;
+            }
+            hierarchy.query(new BoundingVolumeHierarchy.Visitor() {
+                public boolean intersects(BoundingBox bound) {
+                    return isInCamerasFrustum(cameras, bound);
+                }
+
+                public void visit(Geometry geom) {
+                    Spatial.CullHint cullHint = geom.getCullHint();
+                    if (cullHint == Spatial.CullHint.Always
+                            || !checkShadowMode(geom.getShadowMode(), mode)
+                            || geom.isGrouped() || geom.getWorldBound() == null
+                            || !isInCamerasFrustum(cameras, geom.getWorldBound())) {
+                        return;
+                    }
+                    if (cullHint != Spatial.CullHint.Never) {
+                        int planeState = vpCamera.getPlaneState();
+                        vpCamera.setPlaneState(0);
+                        boolean inViewPort = vpCamera.contains(geom.getWorldBound()) != Camera.FrustumIntersect.Outside;
+                        vpCamera.setPlaneState(planeState);
+                        if (!inViewPort) {
+                            return;
+                        }
+                    }
+                    outputGeometryList.add(geom);
+                }
+            });
+        }
+    }
+
+    private static boolean isInCamerasFrustum(Camera[] cameras, BoundingVolume bound) {
+        for (int j = 0; j < cameras.length; j++) {
+            Camera camera = cameras[j];
+            int planeState = camera.getPlaneState();
+            camera.setPlaneState(0);
+            boolean inFrustum = camera.contains(bound) != Camera.FrustumIntersect.Outside;
+            camera.setPlaneState(planeState);
+            if (inFrustum) {
+                return true;
+            }
         }
+        return false;
     }
     /**
      * Helper function to recursively collect the geometries for getLitGeometriesInViewPort function.
@@ -762,4 +861,96 @@ public class ShadowUtil {
         }
     }
 
+    /**
+     * Adds the occluders of a shadow map split to the merged occluders of all
+     * splits, setting the bit of the split in the mask of each of them. Used
+     * to render all splits in a single pass, each geometry being emitted only
+     * to the layers of the splits it occludes.
+     *
+     * @param splitOccluders the occluders of the split
+     * @param splitIndex the index of the split (0 to 31)
+     * @param mergedOccluders the merged occluders of all splits
+     */
+    public static void mergeSplitOccluders(GeometryList splitOccluders, int splitIndex, SplitOccluders mergedOccluders) {
+        int splitBit = 1 << splitIndex;
+        for (int i = 0; i < splitOccluders.size(); i++) {
+            mergedOccluders.add(splitOccluders.get(i), splitBit);
+        }
+    }
+
+    /**
+     * A list of occluders, each with a mask of the shadow map splits it
+     * occludes.
+     *
+     * @see ShadowUtil#mergeSplitOccluders(GeometryList, int, SplitOccluders)
+     */
+    public static class SplitOccluders {
+
+        private final IdentityHashMap<Geometry, Integer> indices = new IdentityHashMap<Geometry, Integer>();
+        private Geometry[] geometries = new Geometry[32];
+        private int[] splitMasks = new int[32];
+        private int size;
+
+        void add(Geometry geom, int splitBit) {
+            Integer index = indices.get(geom);
+            if (index != null) {
+                splitMasks[index] |= splitBit;
+                return;
+            }
+            if (size == geometries.length) {
+                Geometry[] newGeometries = new Geometry[size * 2];
+                int[] newSplitMasks = new int[size * 2];
+                System.arraycopy(geometries, 0, newGeometries, 0, size);
+                System.arraycopy(splitMasks, 0, newSplitMasks, 0, size);
+                geometries = newGeometries;
+                splitMasks = newSplitMasks;
+            }
+            indices.put(geom, size);
+            geometries[size] = geom;
+            splitMasks[size] = splitBit;
+            size++;
+        }
+
+        /**
+         * @return the number of occluders
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param index the index of the occluder
+         * @return the occluder
+         */
+        public Geometry getGeometry(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException();
+            }
+            return geometries[index];
+        }
+
+        /**
+         * @param index the index of the occluder
+         * @return the mask of the splits the occluder occludes, bit n set
+         * for split n
+         */
+        public int getSplitMask(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException();
+            }
+            return splitMasks[index];
+        }
+
+        /**
+         * Removes all the occluders.
+         */
+        public void clear() {
+            for (int i = 0; i < size; i++) {
+                geometries[i] = null;
+            }
+            indices.clear();
+            size = 0;
+        }
+    }
+
 }
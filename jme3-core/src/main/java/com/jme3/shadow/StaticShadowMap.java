@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shadow;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.matrix.Matrix4f;
+import com.jme3.math.vector.Vector3f;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.scene.Geometry;
+import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.Texture2D;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Depth map holding the static occluders of one shadow map split.
+ * <p>
+ * Remembers the light view projection matrix and the world bounds of the
+ * occluders it was rendered with, to find out which part of the map has
+ * to be rendered again.
+ */
+final class StaticShadowMap {
+
+    /**
+     * The map is up to date.
+     */
+    static final int CLEAN = 0;
+    /**
+     * Only the dirty rectangle needs to be rendered again.
+     */
+    static final int DIRTY_REGION = 1;
+    /**
+     * The whole map needs to be rendered again.
+     */
+    static final int DIRTY = 2;
+
+    private static final int BOUND_FLOATS = 6;
+
+    private final FrameBuffer frameBuffer;
+    private final Texture2D depthMap;
+    private final int size;
+    private final Matrix4f viewProjection = new Matrix4f();
+    private boolean valid = false;
+
+    private Geometry[] occluders = new Geometry[0];
+    private float[] bounds = new float[0];
+    private int occluderCount;
+    private Geometry[] prevOccluders = new Geometry[0];
+    private float[] prevBounds = new float[0];
+    private int prevOccluderCount;
+    private boolean[] prevSeen = new boolean[0];
+
+    private float minX, minY, maxX, maxY;
+    private boolean dirtyOutside;
+
+    StaticShadowMap(int size, Texture2D dummyTex) {
+        this.size = size;
+        frameBuffer = new FrameBuffer(size, size, 1);
+        depthMap = new Texture2D(size, size, Format.Depth);
+        frameBuffer.setDepthTexture(depthMap);
+        //DO NOT COMMENT THIS (it prevent the OSX incomplete read buffer crash)
+        frameBuffer.setColorTexture(dummyTex);
+    }
+
+    FrameBuffer getFrameBuffer() {
+        return frameBuffer;
+    }
+
+    Texture2D getDepthMap() {
+        return depthMap;
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Compares the light view projection and the static occluders with the
+     * ones the map was last rendered with, and remembers the new ones.
+     *
+     * @param lightViewProjection the view projection matrix of the split
+     * @param list the static occluders of the split
+     * @param dirtyRect receives x, y, width and height of the area to render
+     * again if {@link #DIRTY_REGION} is returned
+     * @return {@link #CLEAN}, {@link #DIRTY_REGION} or {@link #DIRTY}
+     */
+    int update(Matrix4f lightViewProjection, GeometryList list, int[] dirtyRect) {
+        swapSnapshots();
+        takeSnapshot(list);
+
+        if (!valid || !viewProjection.equals(lightViewProjection)) {
+            viewProjection.set(lightViewProjection);
+            valid = true;
+            return DIRTY;
+        }
+
+        minX = minY = Float.POSITIVE_INFINITY;
+        maxX = maxY = Float.NEGATIVE_INFINITY;
+        dirtyOutside = false;
+
+        boolean sameOrder = occluderCount == prevOccluderCount;
+        for (int i = 0; sameOrder && i < occluderCount; i++) {
+            sameOrder = occluders[i] == prevOccluders[i];
+        }
+        if (sameOrder) {
+            // common case, the occluders were gathered in the same order
+            for (int i = 0; i < occluderCount; i++) {
+                if (!sameBound(bounds, i, prevBounds, i)) {
+                    include(prevBounds, i);
+                    include(bounds, i);
+                }
+            }
+        } else {
+            IdentityHashMap<Geometry, Integer> prevIndices = new IdentityHashMap<Geometry, Integer>(prevOccluderCount * 2);
+            for (int i = 0; i < prevOccluderCount; i++) {
+                prevIndices.put(prevOccluders[i], i);
+            }
+            if (prevSeen.length < prevOccluderCount) {
+                prevSeen = new boolean[prevOccluders.length];
+            }
+            Arrays.fill(prevSeen, false);
+            for (int i = 0; i < occluderCount; i++) {
+                Integer prev = prevIndices.get(occluders[i]);
+                if (prev == null) {
+                    include(bounds, i);
+                } else {
+                    prevSeen[prev] = true;
+                    if (!sameBound(bounds, i, prevBounds, prev)) {
+                        include(prevBounds, prev);
+                        include(bounds, i);
+                    }
+                }
+            }
+            for (int i = 0; i < prevOccluderCount; i++) {
+                if (!prevSeen[i]) {
+                    include(prevBounds, i);
+                }
+            }
+        }
+
+        if (dirtyOutside) {
+            return DIRTY;
+        }
+        int x0 = Math.max(0, (int) Math.floor((minX * 0.5f + 0.5f) * size) - 1);
+        int y0 = Math.max(0, (int) Math.floor((minY * 0.5f + 0.5f) * size) - 1);
+        int x1 = Math.min(size, (int) Math.ceil((maxX * 0.5f + 0.5f) * size) + 1);
+        int y1 = Math.min(size, (int) Math.ceil((maxY * 0.5f + 0.5f) * size) + 1);
+        if (x0 >= x1 || y0 >= y1) {
+            return CLEAN;
+        }
+        dirtyRect[0] = x0;
+        dirtyRect[1] = y0;
+        dirtyRect[2] = x1 - x0;
+        dirtyRect[3] = y1 - y0;
+        return DIRTY_REGION;
+    }
+
+    private void swapSnapshots() {
+        Geometry[] g = prevOccluders;
+        prevOccluders = occluders;
+        occluders = g;
+        float[] b = prevBounds;
+        prevBounds = bounds;
+        bounds = b;
+        prevOccluderCount = occluderCount;
+    }
+
+    private void takeSnapshot(GeometryList list) {
+        int count = list.size();
+        if (occluders.length < count) {
+            occluders = new Geometry[Math.max(count, occluders.length * 2)];
+            bounds = new float[occluders.length * BOUND_FLOATS];
+        } else {
+            // do not keep removed geometries alive
+            Arrays.fill(occluders, count, occluders.length, null);
+        }
+        for (int i = 0; i < count; i++) {
+            Geometry geom = list.get(i);
+            occluders[i] = geom;
+            BoundingVolume bound = geom.getWorldBound();
+            int o = i * BOUND_FLOATS;
+            Vector3f center = bound.getCenter();
+            bounds[o] = center.x;
+            bounds[o + 1] = center.y;
+            bounds[o + 2] = center.z;
+            if (bound instanceof BoundingBox) {
+                BoundingBox box = (BoundingBox) bound;
+                bounds[o + 3] = box.getXExtent();
+                bounds[o + 4] = box.getYExtent();
+                bounds[o + 5] = box.getZExtent();
+            } else if (bound instanceof BoundingSphere) {
+                float radius = ((BoundingSphere) bound).getRadius();
+                bounds[o + 3] = radius;
+                bounds[o + 4] = radius;
+                bounds[o + 5] = radius;
+            } else {
+                // unknown bound type, never considered unchanged
+                bounds[o + 3] = Float.NaN;
+            }
+        }
+        occluderCount = count;
+    }
+
+    private static boolean sameBound(float[] a, int i, float[] b, int j) {
+        int o1 = i * BOUND_FLOATS;
+        int o2 = j * BOUND_FLOATS;
+        for (int k = 0; k < BOUND_FLOATS; k++) {
+            if (a[o1 + k] != b[o2 + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Grows the dirty area by the light space rectangle of the bound.
+     */
+    private void include(float[] b, int index) {
+        int o = index * BOUND_FLOATS;
+        if (Float.isNaN(b[o + 3])) {
+            dirtyOutside = true;
+            return;
+        }
+        Matrix4f m = viewProjection;
+        for (int i = 0; i < 8; i++) {
+            float x = b[o] + ((i & 1) == 0 ? -b[o + 3] : b[o + 3]);
+            float y = b[o + 1] + ((i & 2) == 0 ? -b[o + 4] : b[o + 4]);
+            float z = b[o + 2] + ((i & 4) == 0 ? -b[o + 5] : b[o + 5]);
+            float w = m.m30 * x + m.m31 * y + m.m32 * z + m.m33;
+            if (w <= 0f) {
+                // behind a perspective shadow camera
+                dirtyOutside = true;
+                return;
+            }
+            float px = (m.m00 * x + m.m01 * y + m.m02 * z + m.m03) / w;
+            float py = (m.m10 * x + m.m11 * y + m.m12 * z + m.m13) / w;
+            minX = Math.min(minX, px);
+            minY = Math.min(minY, py);
+            maxX = Math.max(maxX, px);
+            maxY = Math.max(maxY, py);
+        }
+    }
+}
@@ -98,6 +98,7 @@ public class FrameBuffer extends NativeObject {
         int slot = SLOT_UNDEF;
         int face = -1;
         int layer = -1;
+        boolean layered = false;
         
         /**
          * @return The image format of the render buffer.
@@ -165,6 +166,14 @@ public class FrameBuffer extends NativeObject {
         public int getLayer() {
             return this.layer;
         }
+
+        /**
+         * @return true if all layers of the texture are attached, see
+         * {@link FrameBuffer#setDepthTexture(com.jme3.texture.TextureArray) }.
+         */
+        public boolean isLayered() {
+            return layered;
+        }
     }
 
     /**
@@ -493,6 +502,21 @@ public class FrameBuffer extends NativeObject {
         depthBuf.format = img.getFormat();
         depthBuf.layer = layer;
     }
+
+    /**
+     * Set all layers of the given texture array as the depth buffer.
+     * <p>
+     * This makes the framebuffer layered, a geometry shader selects the
+     * layer each primitive is rendered to by writing <code>gl_Layer</code>.
+     * Requires OpenGL 3.2, and all other attachments of a layered
+     * framebuffer must be layered as well.
+     *
+     * @param tex The texture array to render depth to
+     */
+    public void setDepthTexture(TextureArray tex){
+        setDepthTexture(tex, -1);
+        depthBuf.layered = true;
+    }
     
     /**
      * @return The number of color buffers attached to this texture. 
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.texture;
+
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.Texture.MagFilter;
+import com.jme3.texture.Texture.MinFilter;
+import com.jme3.texture.Texture.WrapAxis;
+import com.jme3.texture.Texture.WrapMode;
+import com.jme3.texture.image.ColorSpace;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Packs compatible 2D textures into shared {@link TextureArray}s.
+ * <p>
+ * Textures with the same format, dimensions, mipmaps, color space and
+ * sampler settings are stored as layers of the same texture array. Materials
+ * that sample their textures from such an array bind the same texture
+ * object and only differ by the layer index, which is passed as a uniform,
+ * so drawing them one after the other no longer switches textures.
+ * <p>
+ * Materials opt in through
+ * {@link com.jme3.material.Material#setTextureArrayAllocator(com.jme3.texture.TextureArrayAllocator)}.
+ * The renderer must support {@link com.jme3.renderer.Caps#TextureArray}.
+ * <p>
+ * Adding a layer to an array that was already uploaded re-uploads the whole
+ * array, so textures should preferably be assigned while loading.
+ */
+public final class TextureArrayAllocator {
+
+    /**
+     * The location of a texture inside of a texture array.
+     */
+    public static final class Slot {
+
+        private final TextureArray textureArray;
+        private final int layer;
+
+        Slot(TextureArray textureArray, int layer) {
+            this.textureArray = textureArray;
+            this.layer = layer;
+        }
+
+        /**
+         * @return the texture array holding the texture.
+         */
+        public TextureArray getTextureArray() {
+            return textureArray;
+        }
+
+        /**
+         * @return the layer of the texture array holding the texture.
+         */
+        public int getLayer() {
+            return layer;
+        }
+    }
+
+    /**
+     * The properties that textures must share to be stored in the same array.
+     */
+    private static final class ArrayKey {
+
+        private final Format format;
+        private final int width;
+        private final int height;
+        private final int[] mipMapSizes;
+        private final ColorSpace colorSpace;
+        private final MinFilter minFilter;
+        private final MagFilter magFilter;
+        private final WrapMode wrapS;
+        private final WrapMode wrapT;
+        private final int anisotropicFilter;
+
+        ArrayKey(Texture2D texture) {
+            Image image = texture.getImage();
+            format = image.getFormat();
+            width = image.getWidth();
+            height = image.getHeight();
+            mipMapSizes = image.getMipMapSizes();
+            colorSpace = image.getColorSpace();
+            minFilter = texture.getMinFilter();
+            magFilter = texture.getMagFilter();
+            wrapS = texture.getWrap(WrapAxis.S);
+            wrapT = texture.getWrap(WrapAxis.T);
+            anisotropicFilter = texture.getAnisotropicFilter();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ArrayKey)) {
+                return false;
+            }
+            ArrayKey other = (ArrayKey) obj;
+            return format == other.format
+                    && width == other.width
+                    && height == other.height
+                    && Arrays.equals(mipMapSizes, other.mipMapSizes)
+                    && colorSpace == other.colorSpace
+                    && minFilter == other.minFilter
+                    && magFilter == other.magFilter
+                    && wrapS == other.wrapS
+                    && wrapT == other.wrapT
+                    && anisotropicFilter == other.anisotropicFilter;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 31 * hash + format.hashCode();
+            hash = 31 * hash + width;
+            hash = 31 * hash + height;
+            hash = 31 * hash + Arrays.hashCode(mipMapSizes);
+            hash = 31 * hash + (colorSpace != null ? colorSpace.hashCode() : 0);
+            hash = 31 * hash + minFilter.hashCode();
+            hash = 31 * hash + magFilter.hashCode();
+            hash = 31 * hash + wrapS.hashCode();
+            hash = 31 * hash + wrapT.hashCode();
+            hash = 31 * hash + anisotropicFilter;
+            return hash;
+        }
+    }
+
+    private final int maxLayers;
+    private final HashMap<ArrayKey, List<TextureArray>> arrays = new HashMap<ArrayKey, List<TextureArray>>();
+    private final IdentityHashMap<Image, Slot> slots = new IdentityHashMap<Image, Slot>();
+
+    /**
+     * Creates an allocator that stores up to 64 textures per array.
+     */
+    public TextureArrayAllocator() {
+        this(64);
+    }
+
+    /**
+     * Creates an allocator.
+     *
+     * @param maxLayers the maximum number of textures stored in one array,
+     * must not exceed the layer limit of the renderer.
+     */
+    public TextureArrayAllocator(int maxLayers) {
+        if (maxLayers < 1) {
+            throw new IllegalArgumentException("maxLayers must be at least 1");
+        }
+        this.maxLayers = maxLayers;
+    }
+
+    /**
+     * Returns true if the texture can be stored in a texture array.
+     * <p>
+     * The image must hold exactly one 2D image with its data available on
+     * the CPU side, since the data is copied into the array.
+     *
+     * @param texture the texture to check
+     * @return true if {@link #allocate(com.jme3.texture.Texture2D)} accepts
+     * the texture.
+     */
+    public boolean isCompatible(Texture2D texture) {
+        Image image = texture.getImage();
+        return image != null
+                && image.getData() != null
+                && image.getData().size() == 1
+                && image.getData(0) != null
+                && image.getMultiSamples() <= 1;
+    }
+
+    /**
+     * Stores the texture in a texture array, reusing the slot it was given
+     * before if the same image was allocated already.
+     *
+     * @param texture the texture to store
+     * @return the slot holding the texture, or null if the texture is not
+     * {@link #isCompatible(com.jme3.texture.Texture2D) compatible}.
+     */
+    public Slot allocate(Texture2D texture) {
+        Image image = texture.getImage();
+        Slot slot = slots.get(image);
+        if (slot != null) {
+            return slot;
+        }
+        if (!isCompatible(texture)) {
+            return null;
+        }
+
+        ArrayKey key = new ArrayKey(texture);
+        List<TextureArray> list = arrays.get(key);
+        if (list == null) {
+            list = new ArrayList<TextureArray>();
+            arrays.put(key, list);
+        }
+
+        TextureArray textureArray = list.isEmpty() ? null : list.get(list.size() - 1);
+        if (textureArray == null || textureArray.getImage().getData().size() >= maxLayers) {
+            textureArray = createTextureArray(texture);
+            list.add(textureArray);
+        }
+
+        Image arrayImage = textureArray.getImage();
+        arrayImage.addData(image.getData(0));
+        slot = new Slot(textureArray, arrayImage.getData().size() - 1);
+        slots.put(image, slot);
+        return slot;
+    }
+
+    private static TextureArray createTextureArray(Texture2D texture) {
+        Image image = texture.getImage();
+        Image arrayImage = new Image(image.getFormat(), image.getWidth(), image.getHeight(),
+                null, image.getColorSpace());
+        arrayImage.setMipMapSizes(image.getMipMapSizes());
+
+        TextureArray textureArray = new TextureArray();
+        textureArray.setImage(arrayImage);
+        textureArray.setMinFilter(texture.getMinFilter());
+        textureArray.setMagFilter(texture.getMagFilter());
+        textureArray.setWrap(WrapAxis.S, texture.getWrap(WrapAxis.S));
+        textureArray.setWrap(WrapAxis.T, texture.getWrap(WrapAxis.T));
+        textureArray.setAnisotropicFilter(texture.getAnisotropicFilter());
+        return textureArray;
+    }
+
+    /**
+     * @return the number of texture arrays created by this allocator.
+     */
+    public int getTextureArrayCount() {
+        int count = 0;
+        for (List<TextureArray> list : arrays.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+}
@@ -323,6 +323,20 @@ end procedure
         }
     }
     
+    /**
+     * Maps a float to an int whose <em>unsigned</em> ordering matches the
+     * numeric ordering of the floats, so that floats can be used as radix
+     * sort keys. NaN sorts after positive infinity.
+     *
+     * @param f The float to map
+     * @return The sortable bits of the float
+     */
+    public static int floatToSortableBits(float f) {
+        int bits = Float.floatToIntBits(f);
+        // negative floats: flip all bits, positive floats: flip the sign bit
+        return bits ^ ((bits >> 31) | Integer.MIN_VALUE);
+    }
+
     private static void merge(Object[] src, Object[] dest,
             int low, int middle, int high, Comparator comp) {
         int leftEnd = middle - 1;
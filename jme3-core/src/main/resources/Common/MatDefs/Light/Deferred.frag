@@ -13,7 +13,14 @@ uniform vec2 m_FrustumNearFar;
 
 uniform vec4 g_LightColor;
 uniform vec4 g_LightPosition;
+uniform vec4 g_LightDirection;
+uniform vec4 g_AmbientLightColor;
 uniform vec3 g_CameraPosition;
+uniform mat4 g_ViewMatrix;
+
+#ifdef LIGHT_VOLUME
+uniform vec2 g_ResolutionInverse;
+#endif
 
 uniform mat4 m_ViewProjectionMatrixInverse;
 
@@ -35,7 +42,7 @@ float lightComputeSpecular(in vec3 norm, in vec3 viewdir, in vec3 lightdir, in f
 //#ifdef LOW_QUALITY
        // Blinn-Phong
        // Note: preferably, H should be computed in the vertex shader
-       vec3 H = (viewdir + lightdir) * vec3(0.5);
+       vec3 H = normalize(viewdir + lightdir);
        return pow(max(dot(H, norm), 0.0), shiny);
 /*
     #elif defined(WARDISO)
@@ -84,23 +91,35 @@ vec3 getPosition(in vec2 newTexCoord){
   //return depth * vec3(x, y, m_FrustumCorner.z);
   vec4 pos;
   pos.xy = (newTexCoord * vec2(2.0)) - vec2(1.0);
-  pos.z  = depth;
+  pos.z  = depth * 2.0 - 1.0;
   pos.w  = 1.0;
   pos    = m_ViewProjectionMatrixInverse * pos;
-  //pos   /= pos.w;
+  pos   /= pos.w;
   return pos.xyz;
 }
 
 // JME3 lights in world space
+// The light type is stored in color.w: 0 directional, 1 point, 2 spot.
 void lightComputeDir(in vec3 worldPos, in vec4 color, in vec4 position, out vec4 lightDir){
-    #ifdef DIR_LIGHT
-        lightDir.xyz = -position.xyz;
-    #else
+    if (color.w < 0.5){
+        lightDir.xyz = normalize(-position.xyz);
+        lightDir.w = 1.0;
+    } else {
         lightDir.xyz = position.xyz - worldPos.xyz;
         float dist = length(lightDir.xyz);
         lightDir.w = clamp(1.0 - position.w * dist, 0.0, 1.0);
         lightDir.xyz /= dist;
-    #endif
+
+        if (color.w > 1.5){
+            // the spot direction is given in view space
+            vec3 L = (g_ViewMatrix * vec4(-lightDir.xyz, 0.0)).xyz;
+            float curAngleCos = dot(normalize(L), normalize(g_LightDirection.xyz));
+            float innerAngleCos = floor(g_LightDirection.w) * 0.001;
+            float outerAngleCos = fract(g_LightDirection.w);
+            lightDir.w *= clamp((curAngleCos - outerAngleCos) / (innerAngleCos - outerAngleCos),
+                                step(g_LightDirection.w, 0.001), 1.0);
+        }
+    }
 
 /*
     float posLight = step(0.5, color.w);
@@ -119,7 +138,11 @@ void lightComputeDir(in vec3 worldPos, in vec4 color, in vec4 position, out vec4
 }
 
 void main(){
-    vec2 newTexCoord = texCoord;
+    #ifdef LIGHT_VOLUME
+      vec2 newTexCoord = gl_FragCoord.xy * g_ResolutionInverse;
+    #else
+      vec2 newTexCoord = texCoord;
+    #endif
     vec4 diffuseColor = texture2D(m_DiffuseData,  newTexCoord);
     if (diffuseColor.a == 0.0)
         discard;
@@ -143,4 +166,5 @@ void main(){
 
     gl_FragColor = vec4(light.x * diffuseColor.xyz + light.y * specularColor.xyz, 1.0);
     gl_FragColor.xyz *= g_LightColor.xyz;
+    gl_FragColor.xyz += diffuseColor.xyz * g_AmbientLightColor.xyz;
 }
@@ -3,8 +3,16 @@ varying vec2 texCoord;
 attribute vec3 inPosition;
 attribute vec2 inTexCoord;
 
+#ifdef LIGHT_VOLUME
+uniform mat4 g_WorldViewProjectionMatrix;
+#endif
+
 void main(){
    texCoord = inTexCoord;
    vec4 pos = vec4(inPosition, 1.0);
-   gl_Position = vec4(sign(pos.xy-vec2(0.5)), 0.0, 1.0);
+   #ifdef LIGHT_VOLUME
+     gl_Position = g_WorldViewProjectionMatrix * pos;
+   #else
+     gl_Position = vec4(sign(pos.xy-vec2(0.5)), 0.0, 1.0);
+   #endif
 }
\ No newline at end of file
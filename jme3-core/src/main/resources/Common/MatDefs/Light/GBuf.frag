@@ -2,6 +2,10 @@
 
 uniform float m_Shininess;
 
+#ifdef DISCARD_ALPHA
+  uniform float m_AlphaDiscardThreshold;
+#endif
+
 varying vec2 texCoord;
 varying vec4 AmbientSum;
 varying vec4 DiffuseSum;
@@ -76,6 +80,12 @@ void main(){
       vec4 specularColor = vec4(1.0);
     #endif
 
+    #ifdef DISCARD_ALPHA
+      if (diffuseColor.a * DiffuseSum.a < m_AlphaDiscardThreshold){
+          discard;
+      }
+    #endif
+
     diffuseColor.rgb  *= DiffuseSum.rgb;
     specularColor.rgb *= SpecularSum.rgb;
 
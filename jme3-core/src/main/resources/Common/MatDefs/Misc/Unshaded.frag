@@ -1,6 +1,10 @@
 #import "Common/ShaderLib/GLSLCompat.glsllib"
 
-#if defined(HAS_GLOWMAP) || defined(HAS_COLORMAP) || (defined(HAS_LIGHTMAP) && !defined(SEPARATE_TEXCOORD))
+#if defined(HAS_COLORMAP_ARRAY) && __VERSION__ < 130
+    #extension GL_EXT_texture_array : enable
+#endif
+
+#if defined(HAS_GLOWMAP) || defined(HAS_COLORMAP) || defined(HAS_COLORMAP_ARRAY) || (defined(HAS_LIGHTMAP) && !defined(SEPARATE_TEXCOORD))
     #define NEED_TEXCOORD1
 #endif
 
@@ -12,6 +16,11 @@ uniform vec4 m_Color;
 uniform sampler2D m_ColorMap;
 uniform sampler2D m_LightMap;
 
+#ifdef HAS_COLORMAP_ARRAY
+    uniform sampler2DArray m_ColorMapArray;
+    uniform int m_ColorMapLayer;
+#endif
+
 varying vec2 texCoord1;
 varying vec2 texCoord2;
 
@@ -24,6 +33,10 @@ void main(){
         color *= texture2D(m_ColorMap, texCoord1);     
     #endif
 
+    #ifdef HAS_COLORMAP_ARRAY
+        color *= texture2DArray(m_ColorMapArray, vec3(texCoord1, float(m_ColorMapLayer)));
+    #endif
+
     #ifdef HAS_VERTEXCOLOR
         color *= vertColor;
     #endif
@@ -0,0 +1,72 @@
+#import "Common/ShaderLib/MultiSample.glsllib"
+#import "Common/ShaderLib/GLSLCompat.glsllib"
+
+// Chains the per pixel transforms of several filters, each STAGEn define
+// holds the id of a com.jme3.post.ColorTransform.
+
+uniform COLORTEXTURE m_Texture;
+uniform vec4 m_StageParams[8];
+
+varying vec2 texCoord;
+
+vec3 filmicCurve(in vec3 x){
+    const float A = 0.22;
+    const float B = 0.30;
+    const float C = 0.10;
+    const float D = 0.20;
+    const float E = 0.01;
+    const float F = 0.30;
+
+    return ((x * (A * x + C * B) + D * E) / (x * (A * x + B) + D * F)) - E / F;
+}
+
+vec4 applyTransform(in int transform, in vec4 color, in vec4 params){
+    if (transform == 1) {
+        // Multiply
+        return color * params;
+    } else if (transform == 2) {
+        // Gamma
+        return vec4(pow(color.rgb, vec3(params.x)), color.a);
+    } else if (transform == 3) {
+        // Posterize
+        vec4 posterized = pow(color, vec4(params.y));
+        posterized = floor(posterized * params.x) / params.x;
+        posterized = pow(posterized, vec4(1.0 / params.y));
+        return mix(color, posterized, params.z);
+    } else if (transform == 4) {
+        // FilmicToneMap
+        return vec4(filmicCurve(color.rgb) / filmicCurve(params.xyz), color.a);
+    }
+    return color;
+}
+
+void main(){
+    vec4 color = getColor(m_Texture, texCoord);
+
+    #ifdef STAGE0
+        color = applyTransform(STAGE0, color, m_StageParams[0]);
+    #endif
+    #ifdef STAGE1
+        color = applyTransform(STAGE1, color, m_StageParams[1]);
+    #endif
+    #ifdef STAGE2
+        color = applyTransform(STAGE2, color, m_StageParams[2]);
+    #endif
+    #ifdef STAGE3
+        color = applyTransform(STAGE3, color, m_StageParams[3]);
+    #endif
+    #ifdef STAGE4
+        color = applyTransform(STAGE4, color, m_StageParams[4]);
+    #endif
+    #ifdef STAGE5
+        color = applyTransform(STAGE5, color, m_StageParams[5]);
+    #endif
+    #ifdef STAGE6
+        color = applyTransform(STAGE6, color, m_StageParams[6]);
+    #endif
+    #ifdef STAGE7
+        color = applyTransform(STAGE7, color, m_StageParams[7]);
+    #endif
+
+    gl_FragColor = color;
+}
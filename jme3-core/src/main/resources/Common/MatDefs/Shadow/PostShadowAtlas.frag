@@ -0,0 +1,89 @@
+#import "Common/ShaderLib/MultiSample.glsllib"
+#import "Common/ShaderLib/GLSLCompat.glsllib"
+
+uniform COLORTEXTURE m_Texture;
+uniform DEPTHTEXTURE m_DepthTexture;
+uniform mat4 m_ViewProjectionMatrixInverse;
+
+uniform sampler2D m_ShadowAtlas;
+uniform float m_ShadowAtlasSize;
+uniform float m_ShadowIntensity;
+
+#ifdef NUM_TILES
+    uniform mat4 m_ShadowMatrices[NUM_TILES];
+    uniform vec4 m_ShadowTiles[NUM_TILES];
+#endif
+
+varying vec2 texCoord;
+
+vec3 getPosition(in float depth, in vec2 uv){
+    vec4 pos = vec4(uv, depth, 1.0) * 2.0 - 1.0;
+    pos = m_ViewProjectionMatrixInverse * pos;
+    return pos.xyz / pos.w;
+}
+
+float sampleTile(in vec2 uv, in vec2 minUv, in vec2 maxUv, in float depth){
+    return step(depth, texture2D(m_ShadowAtlas, clamp(uv, minUv, maxUv)).r);
+}
+
+#ifdef NUM_TILES
+// 1.0 when lit, 0.0 when shadowed by the light of the tile
+float getTileShadow(in vec4 worldPos, in vec4 tile, in mat4 lightViewProjection){
+    vec4 projCoord = lightViewProjection * worldPos;
+    if (projCoord.w <= 0.0) {
+        return 1.0;
+    }
+    vec3 coord = projCoord.xyz / projCoord.w;
+    if (abs(coord.x) > 1.0 || abs(coord.y) > 1.0 || abs(coord.z) > 1.0) {
+        return 1.0;
+    }
+    coord = coord * 0.5 + 0.5;
+
+    // 2x2 PCF, kept inside the tile
+    float texel = 1.0 / m_ShadowAtlasSize;
+    vec2 minUv = tile.xy + vec2(0.5 * texel);
+    vec2 maxUv = tile.xy + vec2(tile.z - 0.5 * texel);
+    vec2 uv = tile.xy + coord.xy * tile.z;
+    float shadow = sampleTile(uv + vec2(-0.5, -0.5) * texel, minUv, maxUv, coord.z)
+                 + sampleTile(uv + vec2( 0.5, -0.5) * texel, minUv, maxUv, coord.z)
+                 + sampleTile(uv + vec2(-0.5,  0.5) * texel, minUv, maxUv, coord.z)
+                 + sampleTile(uv + vec2( 0.5,  0.5) * texel, minUv, maxUv, coord.z);
+    return shadow * 0.25;
+}
+#endif
+
+vec4 main_multiSample(in int numSample){
+    float depth = fetchTextureSample(m_DepthTexture, texCoord, numSample).r;
+    vec4 color = fetchTextureSample(m_Texture, texCoord, numSample);
+
+    //Discard shadow computation on the sky
+    if (depth == 1.0) {
+        return color;
+    }
+
+    vec4 worldPos = vec4(getPosition(depth, texCoord), 1.0);
+
+    float shadow = 1.0;
+    #ifdef NUM_TILES
+        for (int i = 0; i < NUM_TILES; i++) {
+            if (m_ShadowTiles[i].w > 0.0) {
+                float tileShadow = getTileShadow(worldPos, m_ShadowTiles[i], m_ShadowMatrices[i]);
+                shadow *= tileShadow * m_ShadowIntensity + (1.0 - m_ShadowIntensity);
+            }
+        }
+    #endif
+
+    return color * vec4(shadow, shadow, shadow, 1.0);
+}
+
+void main(){
+    #ifdef RESOLVE_MS
+        vec4 color = vec4(0.0);
+        for (int i = 0; i < m_NumSamples; i++){
+            color += main_multiSample(i);
+        }
+        gl_FragColor = color / float(m_NumSamples);
+    #else
+        gl_FragColor = main_multiSample(0);
+    #endif
+}
@@ -0,0 +1,18 @@
+#import "Common/ShaderLib/GLSLCompat.glsllib"
+#import "Common/ShaderLib/Instancing.glsllib"
+#import "Common/ShaderLib/Skinning.glsllib"
+attribute vec3 inPosition;
+attribute vec2 inTexCoord;
+
+varying vec2 vTexCoord;
+
+void main(){
+    vec4 modelSpacePos = vec4(inPosition, 1.0);
+
+   #ifdef NUM_BONES
+       Skinning_Compute(modelSpacePos);
+   #endif
+    // projected per split by the geometry shader
+    gl_Position = TransformWorld(modelSpacePos);
+    vTexCoord = inTexCoord;
+}
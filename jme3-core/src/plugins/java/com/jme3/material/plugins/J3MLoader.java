@@ -652,6 +652,7 @@ public class J3MLoader implements AssetLoader {
         
         switch (technique.getLightMode()) {
             case Disable:
+            case Deferred:
                 technique.setLogic(new DefaultTechniqueDefLogic(technique));
                 break;
             case MultiPass:
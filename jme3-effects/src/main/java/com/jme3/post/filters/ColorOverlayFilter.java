@@ -38,6 +38,8 @@ import com.jme3.export.JmeImporter;
 import com.jme3.export.OutputCapsule;
 import com.jme3.material.Material;
 import com.jme3.math.vector.ColorRGBA;
+import com.jme3.math.vector.Vector4f;
+import com.jme3.post.ColorTransform;
 import com.jme3.post.Filter;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
@@ -74,6 +76,16 @@ public class ColorOverlayFilter extends Filter {
         return material;
     }
 
+    @Override
+    protected ColorTransform getColorTransform() {
+        return ColorTransform.Multiply;
+    }
+
+    @Override
+    protected void getColorTransformParams(Vector4f store) {
+        store.set(color.r, color.g, color.b, color.a);
+    }
+
     /**
      * returns the color
      * @return color
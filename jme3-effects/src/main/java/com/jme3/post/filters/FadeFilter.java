@@ -37,6 +37,8 @@ import com.jme3.export.JmeExporter;
 import com.jme3.export.JmeImporter;
 import com.jme3.export.OutputCapsule;
 import com.jme3.material.Material;
+import com.jme3.math.vector.Vector4f;
+import com.jme3.post.ColorTransform;
 import com.jme3.post.Filter;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
@@ -78,6 +80,16 @@ public class FadeFilter extends Filter {
         return material;
     }
 
+    @Override
+    protected ColorTransform getColorTransform() {
+        return ColorTransform.Multiply;
+    }
+
+    @Override
+    protected void getColorTransformParams(Vector4f store) {
+        store.set(value, value, value, value);
+    }
+
     @Override
     protected void initFilter(AssetManager manager, RenderManager renderManager, ViewPort vp, int w, int h) {
         material = new Material(manager, "Common/MatDefs/Post/Fade.j3md");
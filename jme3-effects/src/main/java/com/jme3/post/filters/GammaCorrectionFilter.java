@@ -33,6 +33,8 @@ package com.jme3.post.filters;
 
 import com.jme3.asset.AssetManager;
 import com.jme3.material.Material;
+import com.jme3.math.vector.Vector4f;
+import com.jme3.post.ColorTransform;
 import com.jme3.post.Filter;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
@@ -61,6 +63,16 @@ public class GammaCorrectionFilter extends Filter {
         return material;
     }
 
+    @Override
+    protected ColorTransform getColorTransform() {
+        return ColorTransform.Gamma;
+    }
+
+    @Override
+    protected void getColorTransformParams(Vector4f store) {
+        store.set(1.0f / gamma, 0, 0, 0);
+    }
+
     @Override
     protected void initFilter(AssetManager manager,
             RenderManager renderManager, ViewPort vp, int w, int h) {
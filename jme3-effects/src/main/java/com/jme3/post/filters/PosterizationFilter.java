@@ -33,6 +33,8 @@ package com.jme3.post.filters;
 
 import com.jme3.asset.AssetManager;
 import com.jme3.material.Material;
+import com.jme3.math.vector.Vector4f;
+import com.jme3.post.ColorTransform;
 import com.jme3.post.Filter;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
@@ -89,6 +91,16 @@ public class PosterizationFilter extends Filter {
         material.setFloat("Strength", strength);
     }
 
+    @Override
+    protected ColorTransform getColorTransform() {
+        return ColorTransform.Posterize;
+    }
+
+    @Override
+    protected void getColorTransformParams(Vector4f store) {
+        store.set(numColors, gamma, strength, 0);
+    }
+
     @Override
     protected Material getMaterial() {
         return material;
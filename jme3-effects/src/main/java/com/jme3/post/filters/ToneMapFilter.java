@@ -38,6 +38,8 @@ import com.jme3.export.JmeImporter;
 import com.jme3.export.OutputCapsule;
 import com.jme3.material.Material;
 import com.jme3.math.vector.Vector3f;
+import com.jme3.math.vector.Vector4f;
+import com.jme3.post.ColorTransform;
 import com.jme3.post.Filter;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
@@ -82,6 +84,16 @@ public class ToneMapFilter extends Filter {
         material.setVector3("WhitePoint", whitePoint);
     }
 
+    @Override
+    protected ColorTransform getColorTransform() {
+        return ColorTransform.FilmicToneMap;
+    }
+
+    @Override
+    protected void getColorTransformParams(Vector4f store) {
+        store.set(whitePoint.x, whitePoint.y, whitePoint.z, 0);
+    }
+
     @Override
     protected Material getMaterial() {
         return material;